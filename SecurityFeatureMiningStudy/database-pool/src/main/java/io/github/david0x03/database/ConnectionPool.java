@@ -0,0 +1,244 @@
+package io.github.david0x03.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+
+/**
+ * A small pool of database connections shared by the threads of a module.
+ * <p>
+ * Connections are opened on demand up to a maximum and lent to one thread at a time. A thread gets the connection
+ * it used last whenever it is idle, so the prepared statements cached by the connection are effectively cached per
+ * thread. Connections idle for a while are validated before they are lent, and a connection that fails is closed
+ * and replaced by a new one, so the pool recovers from a restarted or unreachable database.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ConnectionPool.class);
+
+    // Idle connections are validated before they are lent after this time
+    private static final long VALIDATION_INTERVAL_MILLIS = 30_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    // The work of a failed connection is repeated once on a new connection
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final String url;
+    private final Properties properties;
+    private final int maxConnections;
+
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ThreadLocal<PooledConnection> lastUsed = new ThreadLocal<>();
+
+    // The connections idle, in use or being opened
+    private int size = 0;
+    private boolean closed = false;
+
+    /**
+     * Work done with a connection of the pool.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+
+        /**
+         * @param connection The connection, only valid until the work is done.
+         * @return The result.
+         * @throws SQLException If a statement fails.
+         */
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * Creates a pool. No connection is opened until one is needed.
+     *
+     * @param url            The JDBC URL of the database.
+     * @param properties     The connection properties, including the user and the password.
+     * @param maxConnections The number of connections opened at most.
+     */
+    public ConnectionPool(String url, Properties properties, int maxConnections) {
+        this.url = url;
+        this.properties = properties;
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    /**
+     * Creates a pool for the database configured by the environment variables DB_URL, DB_USER and DB_PASSWORD.
+     * Batched inserts are sent as multi-row inserts.
+     *
+     * @param maxConnections The number of connections opened at most.
+     * @return The pool.
+     */
+    public static ConnectionPool fromEnvironment(int maxConnections) {
+        var properties = new Properties();
+        var user = System.getenv("DB_USER");
+        var password = System.getenv("DB_PASSWORD");
+        if (user != null) properties.setProperty("user", user);
+        if (password != null) properties.setProperty("password", password);
+        properties.setProperty("reWriteBatchedInserts", "true");
+
+        return new ConnectionPool(System.getenv("DB_URL"), properties, maxConnections);
+    }
+
+    /**
+     * Does some work with a connection of the pool, waiting for one if all are in use. If the connection fails
+     * during the work, it is replaced and the work is repeated once on the new connection.
+     *
+     * @param work The work, which must not keep the connection or its statements.
+     * @param <T>  The type of the result.
+     * @return The result of the work.
+     * @throws SQLException If the work fails or no connection can be opened.
+     */
+    public <T> T withConnection(SqlWork<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            var connection = borrow();
+            try {
+                var result = work.run(connection);
+                giveBack(connection);
+                return result;
+            } catch (SQLException e) {
+                if (!connection.isBroken()) {
+                    giveBack(connection);
+                    throw e;
+                }
+
+                discard(connection);
+                if (attempt >= MAX_ATTEMPTS) throw e;
+                logger.warn("Database connection failed, retrying on a new connection: " + e.getMessage());
+            } catch (RuntimeException | Error e) {
+                discard(connection);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Does some work in a transaction on a connection of the pool. The transaction is committed if the work
+     * succeeds and rolled back otherwise. If the connection fails, the work is repeated once in a new transaction.
+     *
+     * @param work The work, which must not keep the connection or its statements.
+     * @param <T>  The type of the result.
+     * @return The result of the work.
+     * @throws SQLException If the work fails or no connection can be opened.
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        return withConnection(connection -> {
+            var jdbc = connection.getConnection();
+            jdbc.setAutoCommit(false);
+            try {
+                var result = work.run(connection);
+                jdbc.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                if (!connection.isBroken()) jdbc.rollback();
+                throw e;
+            } finally {
+                if (!connection.isBroken()) jdbc.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Lends an idle connection or opens a new one. The connections are validated and opened outside the lock, so a
+     * slow or unreachable database doesn't block the threads returning their connections.
+     */
+    private PooledConnection borrow() throws SQLException {
+        while (true) {
+            var connection = takeIdleOrReserve();
+            if (connection != null) {
+                if (connection.getIdleMillis() < VALIDATION_INTERVAL_MILLIS || connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    lastUsed.set(connection);
+                    return connection;
+                }
+
+                logger.info("Replacing an invalid database connection");
+                discard(connection);
+                continue;
+            }
+
+            try {
+                connection = new PooledConnection(DriverManager.getConnection(url, properties));
+            } catch (SQLException | RuntimeException e) {
+                discard(null);
+                throw e;
+            }
+
+            lastUsed.set(connection);
+            return connection;
+        }
+    }
+
+    /**
+     * Takes an idle connection or, if there is none but the pool may grow, reserves the place of a new one.
+     * Waits if all connections are in use.
+     *
+     * @return The idle connection, or null if a new connection has to be opened
+     */
+    private synchronized PooledConnection takeIdleOrReserve() throws SQLException {
+        while (true) {
+            if (closed) throw new SQLException("The connection pool is closed");
+
+            var connection = takeIdle();
+            if (connection != null) return connection;
+
+            if (size < maxConnections) {
+                size++;
+                return null;
+            }
+
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+        }
+    }
+
+    /**
+     * @return The idle connection used last by the current thread, or else the connection idle for the shortest time
+     */
+    private PooledConnection takeIdle() {
+        var last = lastUsed.get();
+        if (last != null && idle.remove(last)) return last;
+
+        return idle.pollFirst();
+    }
+
+    private synchronized void giveBack(PooledConnection connection) {
+        if (closed) {
+            discard(connection);
+            return;
+        }
+
+        connection.markIdle();
+        idle.addFirst(connection);
+        notifyAll();
+    }
+
+    /**
+     * Closes a connection that is not idle and frees its place in the pool.
+     *
+     * @param connection The connection, or null to free the place reserved for a connection that failed to open.
+     */
+    private synchronized void discard(PooledConnection connection) {
+        if (connection != null) connection.close();
+        size--;
+        notifyAll();
+    }
+
+    /**
+     * Closes the idle connections. The connections in use are closed when their work is done.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        while (!idle.isEmpty()) discard(idle.pollFirst());
+    }
+}
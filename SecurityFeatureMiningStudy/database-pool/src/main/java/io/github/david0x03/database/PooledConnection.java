@@ -0,0 +1,120 @@
+package io.github.david0x03.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection of a {@link ConnectionPool} with a cache of its prepared statements. The statements are prepared
+ * once per connection and reused, so the driver can keep them prepared on the server, instead of preparing a new
+ * statement on every call.
+ */
+public final class PooledConnection {
+
+    private static final Logger logger = LogManager.getLogger(PooledConnection.class);
+
+    // The number of statements cached per connection, the least recently used one is closed beyond
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    // The timeout of the check whether a connection that threw an exception still works
+    private static final int BROKEN_CHECK_TIMEOUT_SECONDS = 2;
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= STATEMENT_CACHE_SIZE) return false;
+
+            closeStatement(eldest.getValue());
+            return true;
+        }
+    };
+
+    private long idleSince = System.currentTimeMillis();
+
+    PooledConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the prepared statement of an SQL string, preparing it on the first call. The parameters and the
+     * batch of a cached statement are cleared.
+     *
+     * @param sql The SQL string.
+     * @return The prepared statement, only valid until the work with the connection is done.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        var statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * @return The underlying connection, e.g. to control transactions or create arrays. It must not be closed.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Checks whether the connection is closed or doesn't respond anymore, e.g. after a statement threw an
+     * exception.
+     *
+     * @return True if the connection has to be replaced.
+     */
+    boolean isBroken() {
+        return !isValid(BROKEN_CHECK_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * @param timeoutSeconds The time to wait for the database to respond.
+     * @return True if the database responds on the connection.
+     */
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !connection.isClosed() && connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void markIdle() {
+        idleSince = System.currentTimeMillis();
+    }
+
+    long getIdleMillis() {
+        return System.currentTimeMillis() - idleSince;
+    }
+
+    void close() {
+        statements.values().forEach(PooledConnection::closeStatement);
+        statements.clear();
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close a database connection: " + e.getMessage());
+        }
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close a prepared statement: " + e.getMessage());
+        }
+    }
+}
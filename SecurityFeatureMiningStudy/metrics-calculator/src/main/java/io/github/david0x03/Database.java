@@ -1,7 +1,5 @@
 package io.github.david0x03;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -11,6 +9,7 @@ import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.github.david0x03.database.ConnectionPool;
 import io.github.david0x03.model.FeatureCounts;
 import io.github.david0x03.model.File;
 import io.github.david0x03.model.MinedRepository;
@@ -23,29 +22,17 @@ public class Database {
 
 	private static final Logger logger = LogManager.getLogger(Database.class);
 
-	private static final Connection db;
+	// The metrics are calculated on one thread, the second connection replaces a failed one without waiting
+	private static final int MAX_CONNECTIONS = 2;
 
-	static {
-		final var url = System.getenv("DB_URL");
-		final var user = System.getenv("DB_USER");
-		final var password = System.getenv("DB_PASSWORD");
+	private static final ConnectionPool pool = ConnectionPool.fromEnvironment(MAX_CONNECTIONS);
 
+	static {
 		try {
-			db = DriverManager.getConnection(url, user, password);
-
-			if (db == null) {
-				throw new RuntimeException("failed to connect to the database");
-			}
-
-			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-				try {
-					if (!db.isClosed()) {
-						db.close();
-					}
-				} catch (final SQLException e) {
-					logger.error("Failed to gracefully close the database connection.", e);
-				}
-			}));
+			// fail early if the database can't be reached
+			pool.withConnection(connection -> null);
+
+			Runtime.getRuntime().addShutdownHook(new Thread(pool::close));
 		} catch (final SQLException e) {
 			logger.error("Failed to establish a database connection.", e);
 			System.exit(1);
@@ -62,29 +49,28 @@ public class Database {
 	public static List<MinedRepository> getAllMinedRepos() {
 		final var sql = "SELECT * FROM mined_repositories;";
 
-		final var minedRepos = new ArrayList<MinedRepository>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
-
-			while (rs.next()) {
-				final var id = rs.getLong("id");
-				final var repoId = rs.getLong("repository_id");
-				final var javaVersion = rs.getString("java_version");
-				final var buildSuccess = rs.getBoolean("build_success");
-				final var note = rs.getString("note");
-
-				minedRepos.add(new MinedRepository(id, repoId, javaVersion, buildSuccess, note));
-			}
+			return pool.withConnection(connection -> {
+				final var minedRepos = new ArrayList<MinedRepository>();
+				final var rs = connection.prepare(sql).executeQuery();
+
+				while (rs.next()) {
+					final var id = rs.getLong("id");
+					final var repoId = rs.getLong("repository_id");
+					final var javaVersion = rs.getString("java_version");
+					final var buildSuccess = rs.getBoolean("build_success");
+					final var note = rs.getString("note");
+
+					minedRepos.add(new MinedRepository(id, repoId, javaVersion, buildSuccess, note));
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return minedRepos;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query repositories: ", e);
+			return new ArrayList<>();
 		}
-
-		return minedRepos;
 	}
 
 	/**
@@ -95,31 +81,30 @@ public class Database {
 	public static List<File> getFiles() {
 		final var sql = "SELECT * FROM files;";
 
-		final var files = new ArrayList<File>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
-
-			while (rs.next()) {
-				final var id = rs.getLong("id");
-				final var minedRepoId = rs.getLong("mined_repository_id");
-				final var path = rs.getString("path");
-				final var lines = rs.getInt("lines");
-				final var linesOfCode = rs.getInt("lines_of_code");
-				final var commentLines = rs.getInt("comment_lines");
-				final var missingBindings = rs.getInt("missing_bindings");
-
-				files.add(new File(id, minedRepoId, path, lines, linesOfCode, commentLines, missingBindings));
-			}
-
-			rs.close();
-			stmt.close();
+			return pool.withConnection(connection -> {
+				final var files = new ArrayList<File>();
+				final var rs = connection.prepare(sql).executeQuery();
+
+				while (rs.next()) {
+					final var id = rs.getLong("id");
+					final var minedRepoId = rs.getLong("mined_repository_id");
+					final var path = rs.getString("path");
+					final var lines = rs.getInt("lines");
+					final var linesOfCode = rs.getInt("lines_of_code");
+					final var commentLines = rs.getInt("comment_lines");
+					final var missingBindings = rs.getInt("missing_bindings");
+
+					files.add(new File(id, minedRepoId, path, lines, linesOfCode, commentLines, missingBindings));
+				}
+
+				rs.close();
+				return files;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query files: ", e);
+			return new ArrayList<>();
 		}
-
-		return files;
 	}
 
 	/**
@@ -135,26 +120,25 @@ public class Database {
 				    GROUP BY r.id;
 				""";
 
-		final var locCounts = new HashMap<Long, Integer>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
+			return pool.withConnection(connection -> {
+				final var locCounts = new HashMap<Long, Integer>();
+				final var rs = connection.prepare(sql).executeQuery();
 
-			while (rs.next()) {
-				final var fileId = rs.getLong("id");
-				final var locCount = rs.getInt("loc_count");
+				while (rs.next()) {
+					final var fileId = rs.getLong("id");
+					final var locCount = rs.getInt("loc_count");
 
-				locCounts.put(fileId, locCount);
-			}
+					locCounts.put(fileId, locCount);
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return locCounts;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query loc for repositories: ", e);
+			return new HashMap<>();
 		}
-
-		return locCounts;
 	}
 
 	/**
@@ -170,26 +154,25 @@ public class Database {
 				    GROUP BY r.id;
 				""";
 
-		final var commentLines = new HashMap<Long, Integer>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
+			return pool.withConnection(connection -> {
+				final var commentLines = new HashMap<Long, Integer>();
+				final var rs = connection.prepare(sql).executeQuery();
 
-			while (rs.next()) {
-				final var fileId = rs.getLong("id");
-				final var comments = rs.getInt("comment_lines");
+				while (rs.next()) {
+					final var fileId = rs.getLong("id");
+					final var comments = rs.getInt("comment_lines");
 
-				commentLines.put(fileId, comments);
-			}
+					commentLines.put(fileId, comments);
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return commentLines;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed comments for repositories: ", e);
+			return new HashMap<>();
 		}
-
-		return commentLines;
 	}
 
 	/**
@@ -206,29 +189,28 @@ public class Database {
 				    GROUP BY fi.mined_repository_id, fe.feature
 				""";
 
-		final var featureCounts = new HashMap<Long, List<FeatureCounts>>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
-
-			while (rs.next()) {
-				final var minedRepoId = rs.getLong("mined_repository_id");
-				final var feature = rs.getString("feature");
-				final var featureCount = rs.getInt("feature_count");
-
-				final var counts = featureCounts.getOrDefault(minedRepoId, new ArrayList<>());
-				counts.add(new FeatureCounts(feature, featureCount));
-				featureCounts.put(minedRepoId, counts);
-			}
+			return pool.withConnection(connection -> {
+				final var featureCounts = new HashMap<Long, List<FeatureCounts>>();
+				final var rs = connection.prepare(sql).executeQuery();
+
+				while (rs.next()) {
+					final var minedRepoId = rs.getLong("mined_repository_id");
+					final var feature = rs.getString("feature");
+					final var featureCount = rs.getInt("feature_count");
+
+					final var counts = featureCounts.getOrDefault(minedRepoId, new ArrayList<>());
+					counts.add(new FeatureCounts(feature, featureCount));
+					featureCounts.put(minedRepoId, counts);
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return featureCounts;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query feature counts for repositories: ", e);
+			return new HashMap<>();
 		}
-
-		return featureCounts;
 	}
 
 	/**
@@ -245,29 +227,28 @@ public class Database {
 				    GROUP BY fi.mined_repository_id, fi.id, fe.feature
 				""";
 
-		final var featureCounts = new HashMap<Long, List<FeatureCounts>>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
-
-			while (rs.next()) {
-				final var minedRepoId = rs.getLong("mined_repository_id");
-				final var feature = rs.getString("feature");
-				final var featureCount = rs.getInt("feature_count");
-
-				final var counts = featureCounts.getOrDefault(minedRepoId, new ArrayList<>());
-				counts.add(new FeatureCounts(feature, featureCount));
-				featureCounts.put(minedRepoId, counts);
-			}
+			return pool.withConnection(connection -> {
+				final var featureCounts = new HashMap<Long, List<FeatureCounts>>();
+				final var rs = connection.prepare(sql).executeQuery();
+
+				while (rs.next()) {
+					final var minedRepoId = rs.getLong("mined_repository_id");
+					final var feature = rs.getString("feature");
+					final var featureCount = rs.getInt("feature_count");
+
+					final var counts = featureCounts.getOrDefault(minedRepoId, new ArrayList<>());
+					counts.add(new FeatureCounts(feature, featureCount));
+					featureCounts.put(minedRepoId, counts);
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return featureCounts;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query feature counts for repositories and files: ", e);
+			return new HashMap<>();
 		}
-
-		return featureCounts;
 	}
 
 	/**
@@ -283,26 +264,25 @@ public class Database {
 				    GROUP BY fi.mined_repository_id
 				""";
 
-		final var fileCounts = new HashMap<Long, Integer>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
+			return pool.withConnection(connection -> {
+				final var fileCounts = new HashMap<Long, Integer>();
+				final var rs = connection.prepare(sql).executeQuery();
 
-			while (rs.next()) {
-				final var minedRepoId = rs.getLong("mined_repository_id");
-				final var fileCount = rs.getInt("file_count");
+				while (rs.next()) {
+					final var minedRepoId = rs.getLong("mined_repository_id");
+					final var fileCount = rs.getInt("file_count");
 
-				fileCounts.put(minedRepoId, fileCount);
-			}
+					fileCounts.put(minedRepoId, fileCount);
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return fileCounts;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query file counts for repositories: ", e);
+			return new HashMap<>();
 		}
-
-		return fileCounts;
 	}
 
 	/**
@@ -313,23 +293,22 @@ public class Database {
 	public static List<String> getDistinctFeatures() {
 		final var sql = "SELECT DISTINCT feature from features;";
 
-		final var features = new ArrayList<String>();
-
 		try {
-			final var stmt = db.createStatement();
-			final var rs = stmt.executeQuery(sql);
+			return pool.withConnection(connection -> {
+				final var features = new ArrayList<String>();
+				final var rs = connection.prepare(sql).executeQuery();
 
-			while (rs.next()) {
-				features.add(rs.getString("feature"));
-			}
+				while (rs.next()) {
+					features.add(rs.getString("feature"));
+				}
 
-			rs.close();
-			stmt.close();
+				rs.close();
+				return features;
+			});
 		} catch (final SQLException e) {
 			logger.error("Failed query distinct features: ", e);
+			return new ArrayList<>();
 		}
-
-		return features;
 	}
 
 }
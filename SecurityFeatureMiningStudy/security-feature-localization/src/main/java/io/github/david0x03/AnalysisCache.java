@@ -0,0 +1,377 @@
+package io.github.david0x03;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import io.github.david0x03.mappings.ApiMappings;
+import io.github.david0x03.project.JavaSource;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.eclipse.jdt.core.dom.Javadoc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent on-disk cache of the API calls and missing bindings extracted from single files.
+ * Entries are keyed by the content hash of a file, the compliance level, the API mappings, the class path and the
+ * declarations of the source path, so unchanged files don't have to be parsed again. As the bindings of a file can
+ * depend on any declaration of its source path, a changed declaration invalidates the entries of all files parsed
+ * with it, while an edit within a method body only invalidates the edited file.
+ */
+public class AnalysisCache {
+
+    private static final Logger logger = LogManager.getLogger(AnalysisCache.class);
+
+    private static final int VERSION = 1;
+
+    private final Path cachePath;
+    private final Path tmpPath;
+    private final Gson gson = new Gson();
+
+    // Entries loaded from disk and entries used during this run, only the latter are written back.
+    // Used entries are dropped from memory once they are flushed.
+    private final Map<String, Entry> loadedEntries;
+    private final Map<String, Entry> usedEntries = new ConcurrentHashMap<>();
+
+    // The declaration hashes of the files by their content hashes, all are kept until the cache is saved
+    private final Map<String, String> loadedDeclarations;
+    private final Map<String, String> usedDeclarations = new ConcurrentHashMap<>();
+
+    // The temporary cache file the flushed entries are written to, opened by the first flush
+    private JsonWriter writer = null;
+    private final Set<String> flushedKeys = new HashSet<>();
+    private boolean failed = false;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private AnalysisCache(Path cachePath, Map<String, Entry> loadedEntries, Map<String, String> loadedDeclarations) {
+        this.cachePath = cachePath;
+        this.tmpPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        this.loadedEntries = loadedEntries;
+        this.loadedDeclarations = loadedDeclarations;
+    }
+
+    /**
+     * Loads the cache from the given file. An empty cache is returned if the file doesn't exist,
+     * is invalid or was written by an incompatible version.
+     *
+     * @param cachePath The path of the cache file.
+     * @return The loaded cache.
+     */
+    public static AnalysisCache load(Path cachePath) {
+        if (!Files.isRegularFile(cachePath)) return new AnalysisCache(cachePath, new HashMap<>(), new HashMap<>());
+
+        try {
+            var cacheFile = new Gson().fromJson(Files.readString(cachePath), CacheFile.class);
+            if (cacheFile != null && cacheFile.version() == VERSION && cacheFile.entries() != null)
+                return new AnalysisCache(cachePath, cacheFile.entries(),
+                        cacheFile.declarations() != null ? cacheFile.declarations() : new HashMap<>());
+        } catch (IOException | JsonParseException e) {
+            logger.error("Failed to read the analysis cache, starting with an empty cache: ", e);
+        }
+
+        return new AnalysisCache(cachePath, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Computes the cache key of a file.
+     *
+     * @param filePath             The path of the file.
+     * @param complianceLevel      The Java compliance level the file is parsed with.
+     * @param mappingsFingerprint  The fingerprint of the API mappings, see {@link ApiMappings#getFingerprint()}.
+     * @param classpathFingerprint The fingerprint of the class path and the source path,
+     *                             see {@link #fingerprint(Collection)} and {@link #declarationFingerprint(Collection, Map)}.
+     * @return The cache key.
+     * @throws IOException If the file cannot be read.
+     */
+    public String getKey(Path filePath, String complianceLevel, String mappingsFingerprint, String classpathFingerprint) throws IOException {
+        var contentHash = sha256(Files.readAllBytes(filePath));
+        var key = contentHash + "|" + complianceLevel + "|" + mappingsFingerprint + "|" + classpathFingerprint;
+
+        return sha256(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retrieves a parsed file from the cache and counts the hit or miss.
+     *
+     * @param key         The cache key of the file.
+     * @param filePath    The path of the file.
+     * @param source      The source the file belongs to.
+     * @param apiMappings The API mappings used for feature extraction.
+     * @return The cached parsed file, or null if the file is not cached.
+     */
+    public ParsedFile get(String key, Path filePath, JavaSource source, ApiMappings apiMappings) {
+        // Overlapping sources can request the same entry again
+        var entry = usedEntries.get(key);
+        if (entry == null) {
+            entry = loadedEntries.get(key);
+            if (entry != null) usedEntries.put(key, entry);
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+
+        var missingBindings = entry.missingBindings().stream().map(mb -> new MissingBinding(
+                mb.type(), filePath, mb.startPosition(), mb.length(), mb.position(), mb.snippet()
+        )).toList();
+
+        return new ParsedFile(filePath, source, entry.apiCalls(), missingBindings, apiMappings);
+    }
+
+    /**
+     * Adds a parsed file to the cache.
+     *
+     * @param key The cache key of the file.
+     * @param pf  The parsed file.
+     */
+    public void put(String key, ParsedFile pf) {
+        var missingBindings = pf.getMissingBindings().stream().map(mb -> new CachedMissingBinding(
+                mb.type(), mb.startPosition(), mb.length(), mb.position(), mb.snippet()
+        )).toList();
+
+        usedEntries.put(key, new Entry(pf.getApiCalls(), missingBindings));
+    }
+
+    /**
+     * Writes the entries used since the last flush to a temporary cache file and drops them from memory, e.g. after
+     * each source of a streamed export. Must not be called while entries are requested or added.
+     */
+    public synchronized void flush() {
+        if (failed) {
+            usedEntries.clear();
+            return;
+        }
+
+        try {
+            if (writer == null) {
+                FileUtils.createParentDirectories(cachePath.toFile());
+
+                // Write to a temporary file first, so an interrupted run never leaves a truncated cache behind
+                writer = new JsonWriter(Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8));
+                writer.beginObject().name("version").value(VERSION).name("entries").beginObject();
+            }
+
+            for (var e : usedEntries.entrySet()) {
+                // Duplicate keys would make the cache file unreadable
+                if (!flushedKeys.add(e.getKey())) continue;
+
+                writer.name(e.getKey());
+                gson.toJson(e.getValue(), Entry.class, writer);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write the analysis cache: ", e);
+            failed = true;
+        }
+
+        usedEntries.clear();
+    }
+
+    /**
+     * Writes all entries used during this run to disk. Entries of files that were not analyzed are dropped.
+     */
+    public synchronized void save() {
+        flush();
+
+        try {
+            if (writer != null) {
+                if (!failed) {
+                    writer.endObject().name("declarations");
+                    gson.toJson(usedDeclarations, Map.class, writer);
+                    writer.endObject();
+                }
+                writer.close();
+                writer = null;
+            }
+
+            if (failed) Files.deleteIfExists(tmpPath);
+            else Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Failed to write the analysis cache: ", e);
+        }
+    }
+
+    /**
+     * @return The number of files found in the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of files not found in the cache
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Computes a fingerprint of a set of files from their paths, sizes and modification times.
+     *
+     * @param files The files to fingerprint, e.g. the class path.
+     * @return The fingerprint as a hex string.
+     */
+    public static String fingerprint(Collection<Path> files) {
+        var sb = new StringBuilder();
+
+        files.stream().map(Path::toString).sorted().forEach(file -> {
+            var path = Path.of(file);
+            sb.append(file).append('|');
+
+            try {
+                sb.append(Files.size(path)).append('|').append(Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException e) {
+                sb.append("missing");
+            }
+
+            sb.append('\n');
+        });
+
+        return sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes a fingerprint of the declarations in a set of Java files, i.e. their types, fields and method
+     * signatures, without method bodies and Javadoc. The bindings of a file only depend on the declarations of the
+     * other files, so an edit within a method body only changes the key of the edited file itself.
+     * Field initializers and initializer blocks are still part of the declarations.
+     * <p>
+     * The declarations of each file are cached by its content hash, so only new or edited files are parsed.
+     *
+     * @param files   The files to fingerprint, e.g. the Java files of a source path.
+     * @param options The compiler options the files are parsed with.
+     * @return The fingerprint as a hex string.
+     */
+    public String declarationFingerprint(Collection<String> files, Map<String, String> options) {
+        var contentKeys = new HashMap<String, String>();
+        var declarations = new HashMap<String, String>();
+        var filesToParse = new ArrayList<String>();
+
+        for (var file : files) {
+            try {
+                // The compliance level decides how the declarations are parsed
+                var contentKey = sha256(Files.readAllBytes(Path.of(file))) + "|" + options.get(JavaCore.COMPILER_SOURCE);
+                contentKeys.put(file, contentKey);
+
+                var declaration = usedDeclarations.get(contentKey);
+                if (declaration == null) declaration = loadedDeclarations.get(contentKey);
+
+                if (declaration != null) declarations.put(file, declaration);
+                else filesToParse.add(file);
+            } catch (IOException e) {
+                declarations.put(file, "missing");
+            }
+        }
+
+        if (!filesToParse.isEmpty()) declarations.putAll(parseDeclarations(filesToParse, options));
+
+        var sb = new StringBuilder();
+        files.stream().sorted().forEach(file -> {
+            var declaration = declarations.getOrDefault(file, "missing");
+            if (contentKeys.containsKey(file) && !declaration.equals("missing"))
+                usedDeclarations.put(contentKeys.get(file), declaration);
+
+            sb.append(file).append('|').append(declaration).append('\n');
+        });
+
+        return sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses files without method bodies and hashes their declarations without Javadoc.
+     *
+     * @return The declaration hashes of the parsed files.
+     */
+    private static Map<String, String> parseDeclarations(List<String> files, Map<String, String> options) {
+        var declarations = new HashMap<String, String>();
+
+        var parser = ASTParser.newParser(AST.getJLSLatest());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(false);
+        parser.setIgnoreMethodBodies(true);
+        parser.setCompilerOptions(new HashMap<>(options));
+        parser.setEnvironment(new String[0], new String[0], null, false);
+
+        parser.createASTs(files.toArray(String[]::new), null, new String[0], new FileASTRequestor() {
+            @Override
+            public void acceptAST(String source, CompilationUnit cu) {
+                // Comments other than Javadoc are not part of the AST
+                var javadocs = new ArrayList<Javadoc>();
+                cu.accept(new ASTVisitor(true) {
+                    @Override
+                    public boolean visit(Javadoc node) {
+                        javadocs.add(node);
+                        return false;
+                    }
+                });
+                javadocs.forEach(ASTNode::delete);
+
+                declarations.put(source, sha256(cu.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+        }, new NullProgressMonitor());
+
+        return declarations;
+    }
+
+    /**
+     * Computes the SHA-256 hash of the given bytes.
+     *
+     * @param bytes The bytes to hash.
+     * @return The hash as a hex string.
+     */
+    public static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * The serialized form of the cache file.
+     */
+    private record CacheFile(int version, Map<String, Entry> entries, Map<String, String> declarations) {
+    }
+
+    /**
+     * The cached results of a single file.
+     */
+    private record Entry(List<ApiCall> apiCalls, List<CachedMissingBinding> missingBindings) {
+    }
+
+    /**
+     * A missing binding without its file path, which is restored from the file the entry is requested for.
+     */
+    private record CachedMissingBinding(ApiCall.APICallType type, int startPosition, int length,
+                                        ApiCall.Position position, String snippet) {
+    }
+}
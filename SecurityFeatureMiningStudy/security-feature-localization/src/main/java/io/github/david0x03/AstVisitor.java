@@ -10,6 +10,8 @@ public class AstVisitor extends ASTVisitor {
 
     private final ParsedFile fd;
 
+    private int visitedNodes = 0;
+
     /**
      * Initializes the AST visitor with a parsed file for recording located nodes.
      *
@@ -19,6 +21,18 @@ public class AstVisitor extends ASTVisitor {
         this.fd = fd;
     }
 
+    @Override
+    public void preVisit(ASTNode node) {
+        visitedNodes++;
+    }
+
+    /**
+     * @return The number of AST nodes visited so far
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
     @Override
     public boolean visit(ClassInstanceCreation node) {
         var type = ApiCall.APICallType.ClassInstanceCreation;
@@ -136,7 +150,7 @@ public class AstVisitor extends ASTVisitor {
      * @param node The AST node that could not be resolved.
      */
     private void registerMissingBinding(ApiCall.APICallType type, ASTNode node) {
-        var missingBinding = new MissingBinding(type, node, fd.getFilePath());
+        var missingBinding = MissingBinding.fromNode(type, node, fd.getFilePath());
         fd.addMissingBinding(missingBinding);
     }
 }
\ No newline at end of file
@@ -0,0 +1,408 @@
+package io.github.david0x03;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipFile;
+
+/**
+ * Looks up the library types of a class path without a binding environment.
+ * <p>
+ * The jars of the class path are indexed by their entry names, the types of the JDK are loaded from the runtime
+ * the locator runs on. Only the header of a class file is read: its super types and the names and erased types of
+ * its fields and methods. Overloads are not distinguished, a method name whose overloads return different types
+ * has no known return type. Classes are read on first use and shared by all threads.
+ */
+public class ClassFileIndex implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ClassFileIndex.class);
+
+    private static final String OBJECT = "java.lang.Object";
+
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    // Sees the classes of the JDK, but not the libraries of the locator itself
+    private static final ClassLoader JDK_CLASSES = ClassLoader.getPlatformClassLoader();
+
+    private final Map<String, ZipFile> jarsByEntry = new HashMap<>();
+    private final List<ZipFile> jars = new ArrayList<>();
+
+    // The qualified names of the types of the jars and the types of each JDK package, listed on first use
+    private TreeSet<String> jarTypes = null;
+    private Map<String, List<String>> jdkPackages = null;
+    private final Map<String, List<String>> jdkPackageTypes = new HashMap<>();
+
+    // Empty if the class doesn't exist on the class path or can't be read
+    private final Map<String, Optional<ClassInfo>> classes = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes the entries of all jars of a class path. Unreadable jars are skipped.
+     *
+     * @param classpath The jars of the class path.
+     */
+    public ClassFileIndex(List<Path> classpath) {
+        for (var jarPath : classpath) {
+            try {
+                var jar = new ZipFile(jarPath.toFile());
+                jars.add(jar);
+
+                // The first jar containing a class wins, like on the class path
+                jar.stream().map(entry -> entry.getName())
+                        .filter(name -> name.endsWith(".class"))
+                        .forEach(name -> jarsByEntry.putIfAbsent(name, jar));
+            } catch (IOException e) {
+                logger.debug("Skipping unreadable jar: " + jarPath);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a type exists on the class path or in the JDK.
+     *
+     * @param qualifiedName The qualified name of the type, nested types separated by dots.
+     * @return True if the type exists.
+     */
+    public boolean exists(String qualifiedName) {
+        return getClass(qualifiedName) != null;
+    }
+
+    /**
+     * Reads the header of a type of the class path or the JDK.
+     *
+     * @param qualifiedName The qualified name of the type, nested types separated by dots.
+     * @return The type, or null if it doesn't exist.
+     */
+    public ClassInfo getClass(String qualifiedName) {
+        return classes.computeIfAbsent(qualifiedName, name -> Optional.ofNullable(readClass(name))).orElse(null);
+    }
+
+    /**
+     * Finds the type declaring a method of a type, searching the super classes before the interfaces.
+     *
+     * @param qualifiedName The qualified name of the type the method is called on.
+     * @param methodName    The name of the method.
+     * @return The declaring type and the return type, {@link Member#NONE} if no type of the hierarchy declares the
+     * method, or null if a type of the hierarchy is unknown.
+     */
+    public Member findMethod(String qualifiedName, String methodName) {
+        return findMember(qualifiedName, methodName, true);
+    }
+
+    /**
+     * Finds the type declaring a field of a type, searching the super classes before the interfaces.
+     *
+     * @param qualifiedName The qualified name of the type the field is accessed on.
+     * @param fieldName     The name of the field.
+     * @return The declaring type and the type of the field, {@link Member#NONE} if no type of the hierarchy declares
+     * the field, or null if a type of the hierarchy is unknown.
+     */
+    public Member findField(String qualifiedName, String fieldName) {
+        return findMember(qualifiedName, fieldName, false);
+    }
+
+    /**
+     * Lists the types of the class path and the JDK within a namespace, e.g. the types of a package and its sub
+     * packages, or a type and its nested types.
+     *
+     * @param namespace The qualified name of a package or type.
+     * @return The qualified names of the types, nested types separated by dots.
+     */
+    public synchronized List<String> findTypes(String namespace) {
+        if (jarTypes == null) {
+            jarTypes = new TreeSet<>();
+            for (var entryName : jarsByEntry.keySet()) jarTypes.add(toTypeName(entryName.substring(0, entryName.length() - ".class".length())));
+        }
+
+        var types = new ArrayList<String>();
+        if (jarTypes.contains(namespace)) types.add(namespace);
+        types.addAll(jarTypes.subSet(namespace + ".", namespace + "/"));
+
+        // The package of a type, or the package and its sub packages
+        getJdkPackages().forEach((packageName, modules) -> {
+            if (!isWithin(packageName, namespace) && !isWithin(namespace, packageName)) return;
+
+            for (var type : jdkPackageTypes.computeIfAbsent(packageName, name -> listJdkTypes(name, modules))) {
+                if (isWithin(type, namespace)) types.add(type);
+            }
+        });
+
+        return types;
+    }
+
+    private static boolean isWithin(String name, String namespace) {
+        return name.equals(namespace) || name.startsWith(namespace + ".");
+    }
+
+    /**
+     * @return The packages of the JDK mapped to the modules containing them, empty if the runtime image can't be read
+     */
+    private Map<String, List<String>> getJdkPackages() {
+        if (jdkPackages != null) return jdkPackages;
+
+        jdkPackages = new HashMap<>();
+        try (var packages = Files.list(FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/packages"))) {
+            for (var packagePath : (Iterable<Path>) packages::iterator) {
+                try (var modules = Files.list(packagePath)) {
+                    jdkPackages.put(packagePath.getFileName().toString(), modules.map(module -> module.getFileName().toString()).toList());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Failed to list the packages of the JDK: " + e);
+        }
+
+        return jdkPackages;
+    }
+
+    private static List<String> listJdkTypes(String packageName, List<String> modules) {
+        var types = new ArrayList<String>();
+
+        for (var module : modules) {
+            var directory = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules", module, packageName.replace('.', '/'));
+
+            try (var files = Files.list(directory)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(".class") && !name.contains("-"))
+                        .forEach(name -> types.add(packageName + "." + toTypeName(name.substring(0, name.length() - ".class".length()))));
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Failed to list the types of " + directory + ": " + e);
+            }
+        }
+
+        return types;
+    }
+
+    private Member findMember(String qualifiedName, String name, boolean method) {
+        var queue = new ArrayDeque<String>();
+        var visited = new HashSet<String>();
+        queue.add(qualifiedName);
+
+        while (!queue.isEmpty()) {
+            var typeName = queue.poll();
+            if (!visited.add(typeName)) continue;
+
+            var info = getClass(typeName);
+            if (info == null) return null;
+
+            var members = method ? info.methods() : info.fields();
+            if (members.containsKey(name)) return new Member(info.name(), members.get(name));
+
+            // Super classes first, then the interfaces, and finally the methods of Object for interfaces
+            if (info.superName() != null) queue.addFirst(info.superName());
+            queue.addAll(info.interfaces());
+            if (method && info.superName() == null && !typeName.equals(OBJECT)) queue.add(OBJECT);
+        }
+
+        return Member.NONE;
+    }
+
+    /**
+     * Closes the jars of the class path.
+     */
+    @Override
+    public void close() {
+        for (var jar : jars) {
+            try {
+                jar.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close the jar: " + jar.getName());
+            }
+        }
+    }
+
+    /**
+     * Reads a class, trying the candidates for nested types from the innermost one, e.g. a/b/C$D before a/b$C$D.
+     */
+    private ClassInfo readClass(String qualifiedName) {
+        var entryName = qualifiedName.replace('.', '/');
+
+        while (true) {
+            var info = readClassFile(entryName + ".class");
+            if (info != null) return info;
+
+            var separator = entryName.lastIndexOf('/');
+            if (separator < 0) return null;
+            entryName = entryName.substring(0, separator) + "$" + entryName.substring(separator + 1);
+        }
+    }
+
+    private ClassInfo readClassFile(String entryName) {
+        var jar = jarsByEntry.get(entryName);
+
+        try (var in = jar != null ? jar.getInputStream(jar.getEntry(entryName)) : JDK_CLASSES.getResourceAsStream(entryName)) {
+            return in == null ? null : parse(in);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Failed to read the class file " + entryName + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses the header of a class file, see chapter 4 of the JVM specification.
+     */
+    private static ClassInfo parse(InputStream stream) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(stream.readAllBytes()));
+        if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file");
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        // Only the UTF-8 entries and the class entries pointing to them are needed
+        var count = in.readUnsignedShort();
+        var utf8 = new String[count];
+        var classIndices = new int[count];
+        for (int i = 1; i < count; i++) {
+            var tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();
+                case 7 -> classIndices[i] = in.readUnsignedShort();
+                case 8, 16, 19, 20 -> in.skipBytes(2);
+                case 15 -> in.skipBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                case 5, 6 -> {
+                    in.skipBytes(8);
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        var isInterface = (in.readUnsignedShort() & 0x0200) != 0;
+        var name = toTypeName(utf8[classIndices[in.readUnsignedShort()]]);
+        var superIndex = in.readUnsignedShort();
+        var superName = superIndex == 0 || isInterface ? null : toTypeName(utf8[classIndices[superIndex]]);
+
+        var interfaces = new ArrayList<String>();
+        var interfaceCount = in.readUnsignedShort();
+        for (int i = 0; i < interfaceCount; i++) interfaces.add(toTypeName(utf8[classIndices[in.readUnsignedShort()]]));
+
+        var fields = readMembers(in, utf8, false);
+        var methods = readMembers(in, utf8, true);
+
+        return new ClassInfo(name, superName, interfaces, fields, methods);
+    }
+
+    /**
+     * @return The names of the fields or methods mapped to their type or return type, null for conflicting overloads
+     * and type variables
+     */
+    private static Map<String, String> readMembers(DataInputStream in, String[] utf8, boolean methods) throws IOException {
+        var members = new HashMap<String, String>();
+        var count = in.readUnsignedShort();
+
+        for (int i = 0; i < count; i++) {
+            var access = in.readUnsignedShort();
+            var name = utf8[in.readUnsignedShort()];
+            var descriptor = utf8[in.readUnsignedShort()];
+            var signature = readSignature(in, utf8);
+
+            // Bridge methods of covariant overrides would make the return type ambiguous
+            if (name.startsWith("<") || name.contains("$")) continue;
+            if ((access & ACC_SYNTHETIC) != 0 || methods && (access & ACC_BRIDGE) != 0) continue;
+
+            // A type variable is only known by its erasure, which is not the type of the actual value
+            var type = toDescriptorType(methods ? descriptor.substring(descriptor.indexOf(')') + 1) : descriptor);
+            if (signature != null && (methods ? signature.substring(signature.lastIndexOf(')') + 1) : signature).startsWith("T"))
+                type = null;
+
+            if (members.containsKey(name) && !Objects.equals(type, members.get(name))) members.put(name, null);
+            else members.putIfAbsent(name, type);
+        }
+
+        return members;
+    }
+
+    /**
+     * Skips the attributes of a field or method.
+     *
+     * @return The generic signature of the member, or null if it has none
+     */
+    private static String readSignature(DataInputStream in, String[] utf8) throws IOException {
+        String signature = null;
+
+        var count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            var name = utf8[in.readUnsignedShort()];
+            var length = in.readInt();
+
+            if (name.equals("Signature") && length == 2) signature = utf8[in.readUnsignedShort()];
+            else in.skipBytes(length);
+        }
+
+        return signature;
+    }
+
+    /**
+     * @return The qualified name of an internal class name, e.g. "java/util/Map$Entry" -> "java.util.Map.Entry"
+     */
+    private static String toTypeName(String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+
+    /**
+     * @return The qualified name of a field descriptor, e.g. "Ljava/lang/String;" -> "java.lang.String"
+     */
+    private static String toDescriptorType(String descriptor) {
+        var dimensions = 0;
+        while (descriptor.charAt(dimensions) == '[') dimensions++;
+
+        var element = switch (descriptor.charAt(dimensions)) {
+            case 'L' -> toTypeName(descriptor.substring(dimensions + 1, descriptor.length() - 1));
+            case 'Z' -> "boolean";
+            case 'B' -> "byte";
+            case 'C' -> "char";
+            case 'S' -> "short";
+            case 'I' -> "int";
+            case 'J' -> "long";
+            case 'F' -> "float";
+            case 'D' -> "double";
+            default -> "void";
+        };
+
+        return element + "[]".repeat(dimensions);
+    }
+
+    /**
+     * The header of a class file.
+     *
+     * @param name       The qualified name of the type.
+     * @param superName  The qualified name of the super class, null for Object and interfaces.
+     * @param interfaces The qualified names of the implemented interfaces.
+     * @param fields     The fields mapped to their type.
+     * @param methods    The methods mapped to their return type, null if the overloads return different types.
+     */
+    public record ClassInfo(String name, String superName, List<String> interfaces, Map<String, String> fields,
+                            Map<String, String> methods) {
+    }
+
+    /**
+     * A field or method found in a type or one of its super types.
+     *
+     * @param declaringClass The qualified name of the declaring type.
+     * @param type           The type of the field or the return type of the method, null if unknown.
+     */
+    public record Member(String declaringClass, String type) {
+
+        /**
+         * A member that is declared by no type of a hierarchy.
+         */
+        public static final Member NONE = new Member(null, null);
+    }
+}
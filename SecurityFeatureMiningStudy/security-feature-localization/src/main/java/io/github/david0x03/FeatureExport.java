@@ -0,0 +1,125 @@
+package io.github.david0x03;
+
+import com.google.gson.stream.JsonWriter;
+import io.github.david0x03.project.JavaProject;
+import io.github.david0x03.project.JavaSource;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the located security features of a project to a JSON file.
+ * The files are written source by source, so they can be streamed while the sources are parsed.
+ * Writing files is thread-safe, the sources have to be started and ended by a single thread.
+ * <p>
+ * The export of a previous run is deleted when the export is created, and the new export is written to a temporary
+ * file that is moved to the export path once it is completed. An export closed without being completed, e.g. after
+ * a failure, deletes the temporary file, so no truncated or outdated export is left.
+ */
+public class FeatureExport implements Closeable {
+
+    private final JavaProject project;
+    private final Path exportPath;
+    private final Path tmpPath;
+    private final BufferedWriter writer;
+    private final JsonWriter jsonWriter;
+    private boolean completed = false;
+
+    /**
+     * Creates the export file and writes the project details.
+     *
+     * @param project      The Java project being analyzed.
+     * @param exportPath   The path of the JSON file.
+     * @param javaVersion  The detected Java version, or null if it couldn't be identified.
+     * @param buildSuccess Whether the project was built successfully.
+     * @throws IOException If the JSON file cannot be created or written.
+     */
+    public FeatureExport(JavaProject project, Path exportPath, String javaVersion, boolean buildSuccess) throws IOException {
+        this.project = project;
+        this.exportPath = exportPath;
+        this.tmpPath = exportPath.resolveSibling(exportPath.getFileName() + ".tmp");
+
+        FileUtils.createParentDirectories(exportPath.toFile());
+        Files.deleteIfExists(exportPath);
+
+        writer = new BufferedWriter(new FileWriter(tmpPath.toFile()));
+        jsonWriter = new JsonWriter(writer);
+        jsonWriter.setIndent("  ");
+
+        jsonWriter.beginObject();
+        jsonWriter.name("javaVersion").value(javaVersion);
+        jsonWriter.name("buildSuccess").value(buildSuccess);
+
+        jsonWriter.name("sources").beginArray();
+    }
+
+    /**
+     * Starts a new source, all following files are written as part of it.
+     *
+     * @param source The source to start.
+     * @throws IOException If an error occurs during writing.
+     */
+    public synchronized void beginSource(JavaSource source) throws IOException {
+        jsonWriter.beginObject();
+        jsonWriter.name("path").value(source.getRelativeSourcePath().toString());
+        jsonWriter.name("files").beginArray();
+    }
+
+    /**
+     * Writes a parsed file to the current source.
+     *
+     * @param pf The parsed file to write.
+     * @throws IOException If an error occurs during writing.
+     */
+    public synchronized void writeFile(ParsedFile pf) throws IOException {
+        pf.writeJson(jsonWriter, project);
+    }
+
+    /**
+     * Ends the current source.
+     *
+     * @throws IOException If an error occurs during writing.
+     */
+    public synchronized void endSource() throws IOException {
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+        jsonWriter.flush();
+    }
+
+    /**
+     * Completes the JSON document and moves it to the export path.
+     *
+     * @throws IOException If an error occurs during writing.
+     */
+    public synchronized void complete() throws IOException {
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+        jsonWriter.close();
+
+        Files.move(tmpPath, exportPath, StandardCopyOption.REPLACE_EXISTING);
+        completed = true;
+    }
+
+    /**
+     * Closes the file. If the export was not completed, the temporary file is deleted.
+     *
+     * @throws IOException If the file cannot be closed or deleted.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (completed) return;
+
+        // The JSON writer refuses to close an incomplete document
+        try {
+            writer.close();
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+}
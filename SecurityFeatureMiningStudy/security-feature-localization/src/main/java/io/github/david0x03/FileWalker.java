@@ -0,0 +1,302 @@
+package io.github.david0x03;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Collects the files below a directory, splitting large trees across a fork-join pool.
+ * <p>
+ * Each directory is listed by a task, which forks its subdirectories while the pool has idle workers and walks
+ * them sequentially with {@link Files#walkFileTree} otherwise. The results are joined in the order the entries were
+ * listed, so the files are returned in the same depth-first order as a sequential walk.
+ * Directories matching a prune rule are skipped with their whole subtree, symbolic links are followed unless they
+ * lead back to a directory that is currently visited, and unreadable directories are skipped.
+ * The walked directories can be returned as well, each before the entries it contains.
+ */
+public class FileWalker {
+
+    private static final Logger logger = LogManager.getLogger(FileWalker.class);
+
+    /**
+     * Version control and package manager directories, which never contain sources of the project.
+     */
+    public static final Set<String> VCS_AND_PACKAGE_DIRS = Set.of(".git", ".svn", ".hg", "node_modules");
+
+    // Subdirectories are only forked while fewer tasks than this are queued by the current worker
+    private static final int MAX_SURPLUS_TASKS = 3;
+
+    private final List<Predicate<Path>> pruneRules = new ArrayList<>();
+    private Predicate<String> fileNameFilter = fileName -> true;
+    private boolean followLinks = true;
+
+    /**
+     * A file or directory found by a walk.
+     *
+     * @param path      The path of the file or directory, below the walked root.
+     * @param directory Whether the entry is a directory.
+     */
+    public record Entry(Path path, boolean directory) {
+    }
+
+    /**
+     * @param suffix Only files whose name ends with this suffix are collected, e.g. ".java".
+     * @return This walker.
+     */
+    public FileWalker suffix(String suffix) {
+        Objects.requireNonNull(suffix);
+        return filter(fileName -> fileName.endsWith(suffix));
+    }
+
+    /**
+     * @param fileNameFilter Only files whose name is accepted by the filter are collected.
+     * @return This walker.
+     */
+    public FileWalker filter(Predicate<String> fileNameFilter) {
+        this.fileNameFilter = Objects.requireNonNull(fileNameFilter);
+        return this;
+    }
+
+    /**
+     * @param rule Directories for which the rule returns true are skipped together with their contents.
+     * @return This walker.
+     */
+    public FileWalker prune(Predicate<Path> rule) {
+        pruneRules.add(rule);
+        return this;
+    }
+
+    /**
+     * @param names Directories with one of these names are skipped together with their contents.
+     * @return This walker.
+     */
+    public FileWalker pruneNames(Collection<String> names) {
+        var nameSet = Set.copyOf(names);
+        return prune(dir -> dir.getFileName() != null && nameSet.contains(dir.getFileName().toString()));
+    }
+
+    /**
+     * @param followLinks Whether symbolic links are followed, true by default.
+     * @return This walker.
+     */
+    public FileWalker followLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+        return this;
+    }
+
+    /**
+     * Collects all matching regular files below a directory.
+     *
+     * @param root The directory to walk.
+     * @return The paths of the matching files in depth-first order, empty if the directory cannot be read.
+     */
+    public List<Path> walk(Path root) {
+        return walk(root, false).stream().map(Entry::path).toList();
+    }
+
+    /**
+     * Collects all matching regular files and all walked directories below a directory. Each directory precedes
+     * the entries it contains, so the entries below a directory follow it without interruption.
+     *
+     * @param root The directory to walk.
+     * @return The matching files and the walked directories in depth-first order, empty if the directory cannot
+     * be read.
+     */
+    public List<Entry> walkEntries(Path root) {
+        return walk(root, true);
+    }
+
+    private List<Entry> walk(Path root, boolean includeDirectories) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(root, BasicFileAttributes.class, getLinkOptions());
+        } catch (IOException e) {
+            logger.error("Failed to access the directory: " + root, e);
+            return List.of();
+        }
+
+        if (!attrs.isDirectory()) return attrs.isRegularFile() && matches(root) ? List.of(new Entry(root, false)) : List.of();
+
+        var task = new DirectoryTask(root, new Ancestors(getFileKey(root, attrs), null), includeDirectories);
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    private boolean matches(Path file) {
+        var fileName = file.getFileName();
+        return fileName != null && fileNameFilter.test(fileName.toString());
+    }
+
+    private boolean isPruned(Path dir) {
+        for (var rule : pruneRules) {
+            if (rule.test(dir)) return true;
+        }
+
+        return false;
+    }
+
+    private LinkOption[] getLinkOptions() {
+        return followLinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+    }
+
+    /**
+     * @return A key identifying the directory independent of the path it was reached by
+     */
+    private static Object getFileKey(Path dir, BasicFileAttributes attrs) {
+        if (attrs.fileKey() != null) return attrs.fileKey();
+
+        try {
+            return dir.toRealPath();
+        } catch (IOException e) {
+            return dir.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * The keys of the directories from the root to the currently visited one, used to detect symbolic link loops.
+     */
+    private record Ancestors(Object key, Ancestors parent) {
+
+        private boolean contains(Object other) {
+            for (var ancestors = this; ancestors != null; ancestors = ancestors.parent) {
+                if (ancestors.key.equals(other)) return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Lists a single directory and forks or walks its subdirectories.
+     */
+    private class DirectoryTask extends RecursiveTask<List<Entry>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final Ancestors ancestors;
+        private final boolean includeDirectories;
+
+        private DirectoryTask(Path dir, Ancestors ancestors, boolean includeDirectories) {
+            this.dir = dir;
+            this.ancestors = ancestors;
+            this.includeDirectories = includeDirectories;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            // The entries listed or walked here, and the forked tasks with the number of entries preceding them
+            var entries = new ArrayList<Entry>();
+            var subtasks = new ArrayList<DirectoryTask>();
+            var subtaskPositions = new ArrayList<Integer>();
+
+            try (var stream = Files.newDirectoryStream(dir)) {
+                for (var entry : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, getLinkOptions());
+                    } catch (IOException e) {
+                        // Broken symbolic links
+                        continue;
+                    }
+
+                    if (attrs.isDirectory()) {
+                        if (isPruned(entry)) continue;
+
+                        var key = getFileKey(entry, attrs);
+                        if (ancestors.contains(key)) {
+                            logger.debug("Skipping symbolic link loop: " + entry);
+                            continue;
+                        }
+
+                        if (includeDirectories) entries.add(new Entry(entry, true));
+
+                        var task = new DirectoryTask(entry, new Ancestors(key, ancestors), includeDirectories);
+                        if (getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                            task.fork();
+                            subtasks.add(task);
+                            subtaskPositions.add(entries.size());
+                        } else {
+                            entries.addAll(task.walkSequentially());
+                        }
+                    } else if (attrs.isRegularFile() && matches(entry)) {
+                        entries.add(new Entry(entry, false));
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Skipping unreadable directory: " + dir);
+            }
+
+            if (subtasks.isEmpty()) return entries;
+
+            // Insert the entries of each forked task where its directory was listed
+            var joined = new ArrayList<Entry>();
+            var from = 0;
+            for (int i = 0; i < subtasks.size(); i++) {
+                var position = subtaskPositions.get(i);
+                joined.addAll(entries.subList(from, position));
+                joined.addAll(subtasks.get(i).join());
+                from = position;
+            }
+            joined.addAll(entries.subList(from, entries.size()));
+
+            return joined;
+        }
+
+        private List<Entry> walkSequentially() {
+            var entries = new ArrayList<Entry>();
+            var options = followLinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+
+            try {
+                Files.walkFileTree(dir, options, Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) {
+                        if (subDir.equals(dir)) return FileVisitResult.CONTINUE;
+                        if (isPruned(subDir)) return FileVisitResult.SKIP_SUBTREE;
+
+                        // Loops within the walk are detected by walkFileTree, loops to a directory above it are not
+                        if (ancestors.contains(getFileKey(subDir, attrs))) {
+                            logger.debug("Skipping symbolic link loop: " + subDir);
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+
+                        if (includeDirectories) entries.add(new Entry(subDir, true));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && matches(file)) entries.add(new Entry(file, false));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        // Symbolic link loops and unreadable directories
+                        logger.debug("Skipping " + file + ": " + exc);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                logger.debug("Skipping unreadable directory: " + dir);
+            }
+
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package io.github.david0x03;
+
+import io.github.david0x03.mappings.ApiMappings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cheap lexical pre-pass that determines which files can possibly contain a mapped API call,
+ * so that all other files don't have to be parsed with binding resolution.
+ * <p>
+ * A file is a candidate if one of its imports or fully qualified references can lead to a mapped namespace,
+ * or if one of its identifiers does so within a wildcard import, java.lang or its own package.
+ * Files referring to a type declared in a candidate file are candidates as well, which covers inherited
+ * members and values passed through the project's own types. Mapped types reached only through
+ * unmapped libraries, without naming them in the file, are not detected.
+ */
+public class LexicalPrefilter {
+
+    private static final Logger logger = LogManager.getLogger(LexicalPrefilter.class);
+
+    private final ApiMappings apiMappings;
+
+    /**
+     * Initializes the prefilter with the API mappings it checks the files against.
+     *
+     * @param apiMappings The API mappings used for feature extraction.
+     */
+    public LexicalPrefilter(ApiMappings apiMappings) {
+        this.apiMappings = apiMappings;
+    }
+
+    /**
+     * Selects the files that can contain a mapped API call.
+     * All files of a project should be passed at once, so references between them are taken into account.
+     *
+     * @param files The paths of the Java files.
+     * @return The subset of the files that have to be parsed.
+     */
+    public Set<String> selectCandidates(Collection<String> files) {
+        var scannedFiles = new HashMap<String, ScannedFile>();
+        for (var file : files) {
+            try {
+                scannedFiles.put(file, ScannedFile.scan(Files.readString(Path.of(file))));
+            } catch (IOException e) {
+                // Unreadable files are left to the parser
+                logger.error("Failed to read the file: ", e);
+                scannedFiles.put(file, null);
+            }
+        }
+
+        var candidates = new HashSet<String>();
+        var taintedTypes = new ArrayDeque<String>();
+
+        for (var entry : scannedFiles.entrySet()) {
+            if (entry.getValue() == null || referencesMappedApi(entry.getValue())) {
+                candidates.add(entry.getKey());
+                if (entry.getValue() != null) taintedTypes.addAll(entry.getValue().declaredTypes());
+            }
+        }
+
+        // Index the files by the project types they mention
+        var projectTypes = new HashSet<String>();
+        scannedFiles.values().stream().filter(sf -> sf != null).forEach(sf -> projectTypes.addAll(sf.declaredTypes()));
+
+        var filesByType = new HashMap<String, List<String>>();
+        for (var entry : scannedFiles.entrySet()) {
+            if (entry.getValue() == null) continue;
+
+            for (var identifier : entry.getValue().identifiers()) {
+                if (projectTypes.contains(identifier))
+                    filesByType.computeIfAbsent(identifier, t -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        // Files mentioning a type declared in a candidate file are candidates as well
+        var visitedTypes = new HashSet<String>();
+        while (!taintedTypes.isEmpty()) {
+            var type = taintedTypes.poll();
+            if (!visitedTypes.add(type)) continue;
+
+            for (var file : filesByType.getOrDefault(type, List.of())) {
+                if (candidates.add(file)) taintedTypes.addAll(scannedFiles.get(file).declaredTypes());
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Checks whether the names in a scanned file can lead to a mapped namespace.
+     *
+     * @param file The scanned file.
+     * @return True if the file references a possibly mapped API, otherwise false.
+     */
+    private boolean referencesMappedApi(ScannedFile file) {
+        for (var name : file.qualifiedNames()) {
+            if (apiMappings.couldMatch(name)) return true;
+        }
+
+        // Simple names can refer to any type of an on-demand imported package
+        for (var pkg : file.onDemandPackages()) {
+            var prefix = pkg.isEmpty() ? "" : pkg + ".";
+            for (var identifier : file.identifiers()) {
+                if (apiMappings.couldMatch(prefix + identifier)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The names found in a single file.
+     *
+     * @param qualifiedNames   Single imports and dotted names in the code.
+     * @param onDemandPackages Wildcard imports, java.lang and the package of the file.
+     * @param identifiers      All identifiers of the file.
+     * @param declaredTypes    The names of the types declared in the file.
+     */
+    private record ScannedFile(Set<String> qualifiedNames, Set<String> onDemandPackages, Set<String> identifiers,
+                               Set<String> declaredTypes) {
+
+        /**
+         * Scans the source code of a file, skipping comments, string and character literals.
+         *
+         * @param code The source code.
+         * @return The names found in the file.
+         */
+        private static ScannedFile scan(String code) {
+            var tokens = tokenize(code);
+
+            var qualifiedNames = new HashSet<String>();
+            var onDemandPackages = new HashSet<String>();
+            var identifiers = new HashSet<String>();
+            var declaredTypes = new HashSet<String>();
+
+            onDemandPackages.add("java.lang");
+            var hasPackage = false;
+
+            for (int i = 0; i < tokens.size(); i++) {
+                var token = tokens.get(i);
+
+                switch (token) {
+                    case "package", "import" -> {
+                        var start = i + 1;
+                        if (token.equals("import") && start < tokens.size() && tokens.get(start).equals("static")) start++;
+
+                        // Read the dotted name up to the semicolon
+                        var name = new StringBuilder();
+                        var onDemand = false;
+                        var j = start;
+                        for (; j < tokens.size() && !tokens.get(j).equals(";"); j++) {
+                            if (tokens.get(j).equals("*")) onDemand = true;
+                            else name.append(tokens.get(j));
+                        }
+
+                        var qualifiedName = name.toString().replaceAll("\\.$", "");
+                        if (token.equals("package")) {
+                            onDemandPackages.add(qualifiedName);
+                            hasPackage = true;
+                        } else if (onDemand) {
+                            onDemandPackages.add(qualifiedName);
+                        } else {
+                            qualifiedNames.add(qualifiedName);
+                        }
+
+                        i = j;
+                    }
+                    case "class", "interface", "enum", "record" -> {
+                        if (i + 1 < tokens.size() && isIdentifier(tokens.get(i + 1))) declaredTypes.add(tokens.get(i + 1));
+                    }
+                    default -> {
+                        if (!isIdentifier(token)) continue;
+                        identifiers.add(token);
+
+                        // Collect maximal dotted names, e.g. javax.crypto.Cipher.getInstance
+                        if (i > 0 && tokens.get(i - 1).equals(".")) continue;
+
+                        var name = new StringBuilder(token);
+                        var j = i;
+                        while (j + 2 < tokens.size() && tokens.get(j + 1).equals(".") && isIdentifier(tokens.get(j + 2))) {
+                            name.append('.').append(tokens.get(j + 2));
+                            j += 2;
+                        }
+
+                        if (j > i) qualifiedNames.add(name.toString());
+                    }
+                }
+            }
+
+            // Files without a package declaration belong to the default package
+            if (!hasPackage) onDemandPackages.add("");
+
+            return new ScannedFile(qualifiedNames, onDemandPackages, identifiers, declaredTypes);
+        }
+
+        /**
+         * Splits the source code into identifiers and the separators '.', ';' and '*'.
+         * Every other symbol, number or literal is represented by "#".
+         *
+         * @param code The source code.
+         * @return The list of tokens.
+         */
+        private static List<String> tokenize(String code) {
+            var tokens = new ArrayList<String>();
+            var n = code.length();
+            var i = 0;
+
+            while (i < n) {
+                var c = code.charAt(i);
+
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (code.startsWith("//", i)) {
+                    var end = code.indexOf('\n', i);
+                    i = end < 0 ? n : end + 1;
+                } else if (code.startsWith("/*", i)) {
+                    var end = code.indexOf("*/", i + 2);
+                    i = end < 0 ? n : end + 2;
+                } else if (code.startsWith("\"\"\"", i)) {
+                    // Text block
+                    var end = i + 3;
+                    while (end < n && !code.startsWith("\"\"\"", end)) end += code.charAt(end) == '\\' ? 2 : 1;
+                    i = Math.min(n, end + 3);
+                    tokens.add("#");
+                } else if (c == '"' || c == '\'') {
+                    var end = i + 1;
+                    while (end < n && code.charAt(end) != c && code.charAt(end) != '\n')
+                        end += code.charAt(end) == '\\' ? 2 : 1;
+                    i = Math.min(n, end + 1);
+                    tokens.add("#");
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    var end = i + 1;
+                    while (end < n && Character.isJavaIdentifierPart(code.charAt(end))) end++;
+                    tokens.add(code.substring(i, end));
+                    i = end;
+                } else if (Character.isDigit(c)) {
+                    // Numbers, including decimals like 1.5, must not be read as dotted names
+                    var end = i + 1;
+                    while (end < n && (Character.isLetterOrDigit(code.charAt(end)) || code.charAt(end) == '.' || code.charAt(end) == '_'))
+                        end++;
+                    i = end;
+                    tokens.add("#");
+                } else {
+                    tokens.add(c == '.' || c == ';' || c == '*' ? String.valueOf(c) : "#");
+                    i++;
+                }
+            }
+
+            return tokens;
+        }
+
+        private static boolean isIdentifier(String token) {
+            return Character.isJavaIdentifierStart(token.charAt(0));
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package io.github.david0x03;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects timings and counters of a single call to {@link SecurityFeatureLocator#locateFeatures(String, boolean)}.
+ * <p>
+ * Each phase records its wall and CPU time summed over all threads working on it, so the times of the
+ * parallel phases "parse" and "visit" can exceed the total wall time of the run.
+ * The counters can be updated concurrently.
+ */
+public class LocatorMetrics {
+
+    public static final String PHASE_LOAD = "load";
+    public static final String PHASE_JAVA_VERSION = "javaVersion";
+    public static final String PHASE_BUILD = "build";
+    public static final String PHASE_PREFILTER = "prefilter";
+    public static final String PHASE_CLASSPATH = "classpath";
+    public static final String PHASE_BUILD_CACHE = "buildCache";
+    public static final String PHASE_CACHE = "cache";
+    public static final String PHASE_TYPE_INDEX = "typeIndex";
+    public static final String PHASE_PARSE = "parse";
+    public static final String PHASE_VISIT = "visit";
+    public static final String PHASE_EXPORT = "export";
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+    private final AtomicInteger filesParsed = new AtomicInteger();
+    private final AtomicInteger filesCached = new AtomicInteger();
+    private final AtomicInteger filesSkipped = new AtomicInteger();
+    private final AtomicInteger filesDecided = new AtomicInteger();
+    private final AtomicInteger filesUndecided = new AtomicInteger();
+    private final AtomicLong nodesVisited = new AtomicLong();
+    private final AtomicLong mappingLookups = new AtomicLong();
+    private final AtomicLong apiCalls = new AtomicLong();
+    private final AtomicLong missingBindings = new AtomicLong();
+
+    private long totalWallNanos;
+    private long peakHeapBytes;
+
+    /**
+     * Starts measuring a phase on the current thread. The measurement is added to the phase when the
+     * returned timer is closed, a phase can be measured multiple times.
+     *
+     * @param phase The name of the phase.
+     * @return The running timer.
+     */
+    public Timer startPhase(String phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Adds a measurement to a phase.
+     *
+     * @param phase     The name of the phase.
+     * @param wallNanos The elapsed wall time in nanoseconds.
+     * @param cpuNanos  The consumed CPU time in nanoseconds.
+     */
+    public synchronized void addPhaseTime(String phase, long wallNanos, long cpuNanos) {
+        var p = phases.computeIfAbsent(phase, k -> new Phase());
+        p.wallNanos += wallNanos;
+        p.cpuNanos += cpuNanos;
+    }
+
+    /**
+     * Counts a file that was parsed and visited during this run.
+     *
+     * @param pf The parsed file.
+     */
+    public void recordParsedFile(ParsedFile pf) {
+        filesParsed.incrementAndGet();
+        nodesVisited.addAndGet(pf.getVisitedNodes());
+        mappingLookups.addAndGet(pf.getMappingLookups());
+    }
+
+    /**
+     * Counts a file that was visited without bindings in the fast mode.
+     *
+     * @param pf The parsed file, which is parsed again with bindings if it is undecided.
+     */
+    public void recordSyntacticFile(ParsedFile pf) {
+        if (pf.isDecided()) filesDecided.incrementAndGet();
+        else filesUndecided.incrementAndGet();
+
+        nodesVisited.addAndGet(pf.getVisitedNodes());
+        mappingLookups.addAndGet(pf.getMappingLookups());
+    }
+
+    /**
+     * Counts a file that was taken from the analysis cache.
+     */
+    public void recordCachedFile() {
+        filesCached.incrementAndGet();
+    }
+
+    /**
+     * Counts a file that was skipped by the lexical prefilter.
+     */
+    public void recordSkippedFile() {
+        filesSkipped.incrementAndGet();
+    }
+
+    /**
+     * Counts the API calls and missing bindings of a file, independent of how it was processed.
+     *
+     * @param pf The file as it is reported.
+     */
+    public void recordResult(ParsedFile pf) {
+        apiCalls.addAndGet(pf.getApiCalls().size());
+        missingBindings.addAndGet(pf.getMissingBindings().size());
+    }
+
+    /**
+     * Completes the metrics with the totals of the run.
+     *
+     * @param totalWallNanos The wall time of the whole run in nanoseconds.
+     * @param peakHeapBytes  The peak heap usage of the process while the run was active in bytes, see
+     *                       {@link Utils#beginPeakHeapTracking()}.
+     */
+    public synchronized void finish(long totalWallNanos, long peakHeapBytes) {
+        this.totalWallNanos = totalWallNanos;
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    /**
+     * @return The wall time of a phase in milliseconds, 0 if it was not measured
+     */
+    public synchronized long getWallMillis(String phase) {
+        var p = phases.get(phase);
+        return p == null ? 0 : p.wallNanos / 1_000_000;
+    }
+
+    /**
+     * @return The CPU time of a phase in milliseconds, 0 if it was not measured
+     */
+    public synchronized long getCpuMillis(String phase) {
+        var p = phases.get(phase);
+        return p == null ? 0 : p.cpuNanos / 1_000_000;
+    }
+
+    /**
+     * @return The wall time of the whole run in milliseconds
+     */
+    public synchronized long getTotalWallMillis() {
+        return totalWallNanos / 1_000_000;
+    }
+
+    /**
+     * @return The peak heap usage of the process while the run was active in bytes, including overlapping runs
+     */
+    public synchronized long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * @return The number of files parsed with bindings
+     */
+    public int getFilesParsed() {
+        return filesParsed.get();
+    }
+
+    /**
+     * @return The number of files taken from the analysis cache
+     */
+    public int getFilesCached() {
+        return filesCached.get();
+    }
+
+    /**
+     * @return The number of files skipped by the lexical prefilter
+     */
+    public int getFilesSkipped() {
+        return filesSkipped.get();
+    }
+
+    /**
+     * @return The number of files resolved without bindings in the fast mode
+     */
+    public int getFilesDecided() {
+        return filesDecided.get();
+    }
+
+    /**
+     * @return The number of files the fast mode could not decide, which were parsed with bindings
+     */
+    public int getFilesUndecided() {
+        return filesUndecided.get();
+    }
+
+    /**
+     * @return The number of AST nodes visited in the parsed files
+     */
+    public long getNodesVisited() {
+        return nodesVisited.get();
+    }
+
+    /**
+     * @return The number of API names looked up in the mappings
+     */
+    public long getMappingLookups() {
+        return mappingLookups.get();
+    }
+
+    /**
+     * @return The number of API calls found, i.e. the lookups that matched a mapping
+     */
+    public long getApiCalls() {
+        return apiCalls.get();
+    }
+
+    /**
+     * @return The number of missing bindings
+     */
+    public long getMissingBindings() {
+        return missingBindings.get();
+    }
+
+    /**
+     * Serializes the metrics, e.g. to store them alongside the mined repository.
+     *
+     * @return The metrics as a JSON string.
+     */
+    public synchronized String toJson() {
+        var json = new JsonObject();
+        json.addProperty("totalWallMillis", getTotalWallMillis());
+        json.addProperty("peakHeapBytes", peakHeapBytes);
+
+        var phasesJson = new JsonObject();
+        phases.forEach((name, p) -> {
+            var phaseJson = new JsonObject();
+            phaseJson.addProperty("wallMillis", p.wallNanos / 1_000_000);
+            phaseJson.addProperty("cpuMillis", p.cpuNanos / 1_000_000);
+            phasesJson.add(name, phaseJson);
+        });
+        json.add("phases", phasesJson);
+
+        var counters = new JsonObject();
+        counters.addProperty("filesParsed", getFilesParsed());
+        counters.addProperty("filesCached", getFilesCached());
+        counters.addProperty("filesSkipped", getFilesSkipped());
+        counters.addProperty("filesDecided", getFilesDecided());
+        counters.addProperty("filesUndecided", getFilesUndecided());
+        counters.addProperty("nodesVisited", getNodesVisited());
+        counters.addProperty("mappingLookups", getMappingLookups());
+        counters.addProperty("apiCalls", getApiCalls());
+        counters.addProperty("missingBindings", getMissingBindings());
+        json.add("counters", counters);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * Writes the metrics to a JSON file.
+     *
+     * @param path The path of the JSON file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeJson(Path path) throws IOException {
+        FileUtils.createParentDirectories(path.toFile());
+        Files.writeString(path, toJson());
+    }
+
+    /**
+     * @return The CPU time consumed by the current thread in nanoseconds, 0 if not supported by the JVM
+     */
+    public static long currentThreadCpuTime() {
+        var threadBean = ManagementFactory.getThreadMXBean();
+        if (!threadBean.isCurrentThreadCpuTimeSupported()) return 0;
+
+        var cpuTime = threadBean.getCurrentThreadCpuTime();
+        return Math.max(0, cpuTime);
+    }
+
+    /**
+     * Measures a phase on the thread that started it.
+     */
+    public class Timer implements AutoCloseable {
+        private final String phase;
+        private final long startWall = System.nanoTime();
+        private final long startCpu = currentThreadCpuTime();
+
+        private Timer(String phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * Stops the timer and adds the measurement to its phase.
+         */
+        @Override
+        public void close() {
+            addPhaseTime(phase, System.nanoTime() - startWall, currentThreadCpuTime() - startCpu);
+        }
+    }
+
+    private static class Phase {
+        private long wallNanos;
+        private long cpuNanos;
+    }
+}
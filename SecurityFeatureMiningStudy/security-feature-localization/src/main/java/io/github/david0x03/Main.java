@@ -1,6 +1,7 @@
 package io.github.david0x03;
 
 import io.github.david0x03.cli.CliAnnotate;
+import io.github.david0x03.cli.CliCompare;
 import io.github.david0x03.cli.CliLocate;
 import picocli.CommandLine;
 
@@ -9,7 +10,7 @@ import picocli.CommandLine;
         description = "TODO",
         mixinStandardHelpOptions = true,
         version = "SecurityFeatureLocator 1.0.0",
-        subcommands = {CliLocate.class, CliAnnotate.class}
+        subcommands = {CliLocate.class, CliAnnotate.class, CliCompare.class}
 )
 
 public class Main {
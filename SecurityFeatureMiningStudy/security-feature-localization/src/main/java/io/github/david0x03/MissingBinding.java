@@ -7,19 +7,44 @@ import java.nio.file.Path;
 /**
  * Represents a missing binding in the source code.
  * This occurs when an API call's binding cannot be resolved during AST traversal.
+ * Only a compact description of the node is kept, so the AST and its binding environment can be released.
  *
- * @param type     The type of API call for which the binding could not be identified.
- * @param node     The AST node where binding resolution failed.
- * @param filePath The path of the file containing the unresolved node.
+ * @param type          The type of API call for which the binding could not be identified.
+ * @param filePath      The path of the file containing the unresolved node.
+ * @param startPosition The character index where the unresolved node starts.
+ * @param length        The length of the unresolved node in characters.
+ * @param position      The line and column where the unresolved node starts.
+ * @param snippet       A shortened source representation of the unresolved node.
  */
-public record MissingBinding(ApiCall.APICallType type, ASTNode node, Path filePath) {
+public record MissingBinding(ApiCall.APICallType type, Path filePath, int startPosition, int length,
+                             ApiCall.Position position, String snippet) {
+
+    private static final int MAX_SNIPPET_LENGTH = 120;
+
+    /**
+     * Creates a missing binding from the AST node where binding resolution failed.
+     *
+     * @param type     The type of API call for which the binding could not be identified.
+     * @param node     The AST node where binding resolution failed.
+     * @param filePath The path of the file containing the unresolved node.
+     * @return The missing binding without any reference to the AST.
+     */
+    public static MissingBinding fromNode(ApiCall.APICallType type, ASTNode node, Path filePath) {
+        var position = ApiCall.Position.fromIndex(node, node.getStartPosition());
+
+        // Shorten the snippet, the flattened node can contain whole anonymous class bodies
+        var snippet = node.toString();
+        if (snippet.length() > MAX_SNIPPET_LENGTH)
+            snippet = snippet.substring(0, MAX_SNIPPET_LENGTH) + "...";
+
+        return new MissingBinding(type, filePath, node.getStartPosition(), node.getLength(), position, snippet);
+    }
+
     @Override
     public String toString() {
-        var pos = ApiCall.Position.fromIndex(node, node.getStartPosition());
-
         var s = "Missing binding (" + type.name() + ")\n";
-        s += ("\t" + filePath + " (" + pos + ")\n");
-        s += "\t" + node.toString().replace("\n", "\n\t");
+        s += ("\t" + filePath + " (" + position + ")\n");
+        s += "\t" + snippet.replace("\n", "\n\t");
 
         return s;
     }
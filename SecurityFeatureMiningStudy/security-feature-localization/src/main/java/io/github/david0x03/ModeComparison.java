@@ -0,0 +1,236 @@
+package io.github.david0x03;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.github.david0x03.project.JavaProject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the results of the fast mode to the results of the full mode with bindings on the same project.
+ * <p>
+ * The full mode is the reference. The API calls of each file are compared by their line and qualified name, the
+ * features by their line and name. Matches are counted as multisets, so a call reported twice on a line has to be
+ * reported twice by both modes.
+ */
+public class ModeComparison {
+
+    // The number of differences listed in the JSON file
+    private static final int MAX_LISTED_DIFFERENCES = 100;
+
+    private final LocatorMetrics fullMetrics;
+    private final LocatorMetrics fastMetrics;
+
+    private int files = 0;
+    private int filesDiffering = 0;
+
+    private int apiCallsFull = 0;
+    private int apiCallsFast = 0;
+    private int apiCallsMatching = 0;
+
+    private int featuresFull = 0;
+    private int featuresFast = 0;
+    private int featuresMatching = 0;
+
+    private final List<String> differences = new ArrayList<>();
+
+    private ModeComparison(JavaProject full, JavaProject fast) {
+        this.fullMetrics = full.getMetrics();
+        this.fastMetrics = fast.getMetrics();
+
+        var fastFiles = new HashMap<String, ParsedFile>();
+        for (var pf : fast.getParsedFiles()) fastFiles.put(getKey(pf), pf);
+
+        var seen = new HashSet<String>();
+        for (var pf : full.getParsedFiles()) {
+            var key = getKey(pf);
+            if (!seen.add(key)) continue;
+
+            compareFile(key, pf, fastFiles.get(key));
+        }
+
+        // Files only located by the fast mode
+        for (var entry : fastFiles.entrySet()) {
+            if (!seen.contains(entry.getKey())) compareFile(entry.getKey(), null, entry.getValue());
+        }
+    }
+
+    /**
+     * Locates the features of a project in the full and in the fast mode, without the analysis cache, and compares
+     * the results.
+     *
+     * @param locator    The locator, configured for the full mode.
+     * @param projectDir The path to the project directory.
+     * @return The comparison of both modes.
+     * @throws Exception If the project cannot be loaded or processed.
+     */
+    public static ModeComparison run(SecurityFeatureLocator locator, String projectDir) throws Exception {
+        locator.setCacheEnabled(false);
+
+        locator.setFastModeEnabled(false);
+        var full = locator.locateFeatures(projectDir, false);
+
+        locator.setFastModeEnabled(true);
+        var fast = locator.locateFeatures(projectDir, false);
+
+        return new ModeComparison(full, fast);
+    }
+
+    private void compareFile(String key, ParsedFile full, ParsedFile fast) {
+        files++;
+
+        var fullCalls = countApiCalls(full, false);
+        var fastCalls = countApiCalls(fast, false);
+        var fullFeatures = countApiCalls(full, true);
+        var fastFeatures = countApiCalls(fast, true);
+
+        apiCallsFull += size(fullCalls);
+        apiCallsFast += size(fastCalls);
+        apiCallsMatching += countMatching(fullCalls, fastCalls);
+        featuresFull += size(fullFeatures);
+        featuresFast += size(fastFeatures);
+        featuresMatching += countMatching(fullFeatures, fastFeatures);
+
+        if (fullCalls.equals(fastCalls) && fullFeatures.equals(fastFeatures)) return;
+        filesDiffering++;
+
+        // Missing and additional API calls of the fast mode
+        fullCalls.forEach((call, count) -> {
+            for (int i = fastCalls.getOrDefault(call, 0); i < count; i++) addDifference("- " + key + ":" + call);
+        });
+        fastCalls.forEach((call, count) -> {
+            for (int i = fullCalls.getOrDefault(call, 0); i < count; i++) addDifference("+ " + key + ":" + call);
+        });
+    }
+
+    private void addDifference(String difference) {
+        if (differences.size() < MAX_LISTED_DIFFERENCES) differences.add(difference);
+    }
+
+    /**
+     * @return The API calls of a file as "line api" or, for the features, as "line feature" mapped to their number
+     */
+    private static Map<String, Integer> countApiCalls(ParsedFile pf, boolean features) {
+        var counts = new HashMap<String, Integer>();
+        if (pf == null) return counts;
+
+        for (var apiCall : pf.getApiCalls()) {
+            if (!features) {
+                counts.merge(apiCall.start.line() + " " + apiCall.qualifiedName, 1, Integer::sum);
+                continue;
+            }
+
+            for (var feature : apiCall.getFeatures()) counts.merge(apiCall.start.line() + " " + feature, 1, Integer::sum);
+        }
+
+        return counts;
+    }
+
+    private static int countMatching(Map<String, Integer> full, Map<String, Integer> fast) {
+        var matching = 0;
+        for (var entry : full.entrySet()) matching += Math.min(entry.getValue(), fast.getOrDefault(entry.getKey(), 0));
+
+        return matching;
+    }
+
+    private static int size(Map<String, Integer> counts) {
+        return counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @return The file identified by its source and its path, as a file can be part of multiple sources
+     */
+    private static String getKey(ParsedFile pf) {
+        return pf.getSource().getRelativeSourcePath() + "|" + pf.getSource().getSourcePath().relativize(pf.getFilePath().toAbsolutePath());
+    }
+
+    /**
+     * @return The share of the API calls of the fast mode also found by the full mode, 1 if there are none
+     */
+    public double getPrecision() {
+        return apiCallsFast == 0 ? 1 : (double) apiCallsMatching / apiCallsFast;
+    }
+
+    /**
+     * @return The share of the API calls of the full mode also found by the fast mode, 1 if there are none
+     */
+    public double getRecall() {
+        return apiCallsFull == 0 ? 1 : (double) apiCallsMatching / apiCallsFull;
+    }
+
+    /**
+     * @return The number of files with different API calls or features
+     */
+    public int getFilesDiffering() {
+        return filesDiffering;
+    }
+
+    /**
+     * Summarizes the comparison in one line for the log.
+     *
+     * @return The summary.
+     */
+    public String getSummary() {
+        return String.format("Fast mode: precision %.4f, recall %.4f, %d of %d file(s) differ, %d of %d file(s) resolved without bindings, %d ms instead of %d ms",
+                getPrecision(), getRecall(), filesDiffering, files, fastMetrics.getFilesDecided(),
+                fastMetrics.getFilesDecided() + fastMetrics.getFilesUndecided(), fastMetrics.getTotalWallMillis(),
+                fullMetrics.getTotalWallMillis());
+    }
+
+    /**
+     * Serializes the comparison including the metrics of both runs.
+     *
+     * @return The comparison as a JSON string.
+     */
+    public String toJson() {
+        var json = new JsonObject();
+        json.addProperty("files", files);
+        json.addProperty("filesDiffering", filesDiffering);
+
+        var apiCalls = new JsonObject();
+        apiCalls.addProperty("full", apiCallsFull);
+        apiCalls.addProperty("fast", apiCallsFast);
+        apiCalls.addProperty("matching", apiCallsMatching);
+        apiCalls.addProperty("precision", getPrecision());
+        apiCalls.addProperty("recall", getRecall());
+        json.add("apiCalls", apiCalls);
+
+        var features = new JsonObject();
+        features.addProperty("full", featuresFull);
+        features.addProperty("fast", featuresFast);
+        features.addProperty("matching", featuresMatching);
+        features.addProperty("precision", featuresFast == 0 ? 1 : (double) featuresMatching / featuresFast);
+        features.addProperty("recall", featuresFull == 0 ? 1 : (double) featuresMatching / featuresFull);
+        json.add("features", features);
+
+        var gson = new GsonBuilder().setPrettyPrinting().create();
+        json.add("fullMetrics", gson.fromJson(fullMetrics.toJson(), JsonObject.class));
+        json.add("fastMetrics", gson.fromJson(fastMetrics.toJson(), JsonObject.class));
+
+        var differencesJson = new JsonArray();
+        differences.forEach(differencesJson::add);
+        json.add("differences", differencesJson);
+
+        return gson.toJson(json);
+    }
+
+    /**
+     * Writes the comparison to a JSON file.
+     *
+     * @param path The path of the JSON file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeJson(Path path) throws IOException {
+        FileUtils.createParentDirectories(path.toFile());
+        Files.writeString(path, toJson());
+    }
+}
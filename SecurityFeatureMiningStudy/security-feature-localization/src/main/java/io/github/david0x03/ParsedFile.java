@@ -17,6 +17,7 @@ import com.google.gson.stream.JsonWriter;
 
 import io.github.david0x03.mappings.ApiMappings;
 import io.github.david0x03.project.JavaProject;
+import io.github.david0x03.project.JavaSource;
 
 /**
  * Represents a parsed file where all security features have been extracted.
@@ -28,24 +29,78 @@ public class ParsedFile {
 	private static final Logger logger = LogManager.getLogger(ParsedFile.class);
 
 	private final Path filePath;
+	private final JavaSource source;
 	private final ApiMappings apiMappings;
 
 	private final List<ApiCall> apiCalls = new ArrayList<>();
 	private final List<MissingBinding> missingBindings = new ArrayList<>();
 
+	// Statistics of the extraction, only counted for files visited during this run
+	private int visitedNodes = 0;
+	private int mappingLookups = 0;
+
+	// False if the file was visited without bindings and a node could not be decided
+	private boolean decided = true;
+
 	/**
 	 * Constructs a ParsedFile object by parsing the specified file and extracting
 	 * features.
 	 *
 	 * @param filePath    The path of the file being parsed.
+	 * @param source      The source the file belongs to.
 	 * @param cu          The compilation unit of the file.
 	 * @param apiMappings The API mappings used for feature extraction.
 	 */
-	public ParsedFile(final Path filePath, final CompilationUnit cu, final ApiMappings apiMappings) {
+	public ParsedFile(final Path filePath, final JavaSource source, final CompilationUnit cu, final ApiMappings apiMappings) {
 		this.apiMappings = apiMappings;
 		this.filePath = filePath;
+		this.source = source;
 
-		cu.accept(new AstVisitor(this));
+		final var visitor = new AstVisitor(this);
+		cu.accept(visitor);
+		this.visitedNodes = visitor.getVisitedNodes();
+	}
+
+	/**
+	 * Constructs a ParsedFile object from a compilation unit parsed without bindings,
+	 * resolving the qualified names syntactically, see {@link SyntacticVisitor}.
+	 *
+	 * @param filePath    The path of the file being parsed.
+	 * @param source      The source the file belongs to.
+	 * @param cu          The compilation unit of the file, parsed without bindings.
+	 * @param apiMappings The API mappings used for feature extraction.
+	 * @param typeIndex   The types of the project and its class path.
+	 */
+	public ParsedFile(final Path filePath, final JavaSource source, final CompilationUnit cu, final ApiMappings apiMappings,
+			final TypeIndex typeIndex) {
+		this.apiMappings = apiMappings;
+		this.filePath = filePath;
+		this.source = source;
+
+		final var visitor = new SyntacticVisitor(this, apiMappings, typeIndex);
+		cu.accept(visitor);
+		this.visitedNodes = visitor.getVisitedNodes();
+		this.decided = !visitor.isUndecided();
+	}
+
+	/**
+	 * Constructs a ParsedFile object from previously extracted API calls and
+	 * missing bindings, e.g. from the {@link AnalysisCache}.
+	 *
+	 * @param filePath        The path of the parsed file.
+	 * @param source          The source the file belongs to.
+	 * @param apiCalls        The API calls extracted from the file.
+	 * @param missingBindings The missing bindings recorded for the file.
+	 * @param apiMappings     The API mappings used for feature extraction.
+	 */
+	public ParsedFile(final Path filePath, final JavaSource source, final List<ApiCall> apiCalls,
+			final List<MissingBinding> missingBindings, final ApiMappings apiMappings) {
+		this.apiMappings = apiMappings;
+		this.filePath = filePath;
+		this.source = source;
+
+		this.apiCalls.addAll(apiCalls);
+		this.missingBindings.addAll(missingBindings);
 	}
 
 	/**
@@ -56,15 +111,11 @@ public class ParsedFile {
 	 * @param apiCallType   The type of the API call.
 	 */
 	public void addApiCall(final ASTNode node, final String qualifiedName, final ApiCall.APICallType apiCallType) {
-		var cleanQualifiedName = qualifiedName;
-
 		// Removes any generics from the qualified name
 		// Example: namespace.print<T> -> namespace.print
-		final var genericsRegex = "<[^<>]*>";
-		while (cleanQualifiedName.matches(".*<[^<>]*>.*")) {
-			cleanQualifiedName = cleanQualifiedName.replaceAll(genericsRegex, "");
-		}
+		final var cleanQualifiedName = Utils.stripGenerics(qualifiedName);
 
+		this.mappingLookups++;
 		final var features = this.apiMappings.getCategories(cleanQualifiedName);
 		if (features == null) {
 			return;
@@ -203,6 +254,43 @@ public class ParsedFile {
 		return this.filePath.toAbsolutePath();
 	}
 
+	/**
+	 * Retrieves the number of AST nodes visited to extract the features.
+	 *
+	 * @return The number of visited nodes, 0 if the file was not visited.
+	 */
+	public int getVisitedNodes() {
+		return this.visitedNodes;
+	}
+
+	/**
+	 * Retrieves the number of API names looked up in the mappings.
+	 *
+	 * @return The number of lookups, 0 if the file was not visited.
+	 */
+	public int getMappingLookups() {
+		return this.mappingLookups;
+	}
+
+	/**
+	 * Checks whether all nodes of the file could be resolved. Only files visited
+	 * without bindings can be undecided, their results are incomplete.
+	 *
+	 * @return True if the results of the file are complete.
+	 */
+	public boolean isDecided() {
+		return this.decided;
+	}
+
+	/**
+	 * Retrieves the source the parsed file belongs to.
+	 *
+	 * @return The Java source.
+	 */
+	public JavaSource getSource() {
+		return this.source;
+	}
+
 	/**
 	 * Writes the parsed file details to a JSON writer.
 	 *
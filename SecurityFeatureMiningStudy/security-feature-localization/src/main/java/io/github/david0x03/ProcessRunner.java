@@ -0,0 +1,282 @@
+package io.github.david0x03;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs external commands like Maven, Gradle or Git with a deadline.
+ * <p>
+ * If the deadline passes or the waiting thread is interrupted, e.g. because the analysis of a repository was
+ * cancelled, the process and all of its descendants are terminated, so no orphaned build processes keep running.
+ * The output is streamed line by line to an optional consumer, only its tail is kept in memory.
+ * The exit code, wall time and peak resident memory of the process tree are recorded for every command.
+ */
+public class ProcessRunner {
+
+    private static final Logger logger = LogManager.getLogger(ProcessRunner.class);
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(10);
+    private static final int DEFAULT_MAX_OUTPUT_CHARS = 64 * 1024;
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 250;
+    private static final long TERMINATION_GRACE_MILLIS = 5_000;
+
+    // Processes still running, terminated when the JVM exits
+    private static final Set<Process> runningProcesses = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> runningProcesses.forEach(ProcessRunner::destroyTree)));
+    }
+
+    private final List<String> command;
+    private final Map<String, String> environment = new HashMap<>();
+    private Path directory = null;
+    private Duration timeout = DEFAULT_TIMEOUT;
+    private int maxOutputChars = DEFAULT_MAX_OUTPUT_CHARS;
+    private Consumer<String> lineConsumer = null;
+
+    /**
+     * Creates a runner for a single command.
+     *
+     * @param command The command and its arguments.
+     */
+    public ProcessRunner(List<String> command) {
+        this.command = List.copyOf(command);
+    }
+
+    /**
+     * @param directory The working directory of the command.
+     * @return This runner.
+     */
+    public ProcessRunner directory(Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * @param name  The name of an environment variable set for the command.
+     * @param value The value of the environment variable.
+     * @return This runner.
+     */
+    public ProcessRunner environment(String name, String value) {
+        environment.put(name, value);
+        return this;
+    }
+
+    /**
+     * @param timeout The deadline of the command, after which the process tree is terminated.
+     * @return This runner.
+     */
+    public ProcessRunner timeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @param maxOutputChars The number of characters kept from the end of the output.
+     * @return This runner.
+     */
+    public ProcessRunner maxOutputChars(int maxOutputChars) {
+        this.maxOutputChars = maxOutputChars;
+        return this;
+    }
+
+    /**
+     * @param lineConsumer Receives every line of the standard and error output, called from a separate thread.
+     * @return This runner.
+     */
+    public ProcessRunner onLine(Consumer<String> lineConsumer) {
+        this.lineConsumer = lineConsumer;
+        return this;
+    }
+
+    /**
+     * Runs the command and waits until it exits, the deadline passes or the current thread is interrupted.
+     *
+     * @return The result of the command.
+     * @throws IOException          If the process cannot be started.
+     * @throws InterruptedException If the current thread was interrupted, the process tree has been terminated.
+     */
+    public Result run() throws IOException, InterruptedException {
+        var processBuilder = new ProcessBuilder(command);
+        if (directory != null) processBuilder.directory(directory.toFile());
+        processBuilder.environment().putAll(environment);
+        processBuilder.redirectErrorStream(true);
+
+        var start = System.nanoTime();
+        var process = processBuilder.start();
+        runningProcesses.add(process);
+
+        var output = new OutputTail(maxOutputChars);
+        var reader = new Thread(() -> readOutput(process, output), "process-output-" + process.pid());
+        reader.setDaemon(true);
+        reader.start();
+
+        var peakRssBytes = -1L;
+        var timedOut = false;
+
+        try {
+            var deadline = start + timeout.toNanos();
+
+            while (true) {
+                peakRssBytes = Math.max(peakRssBytes, getTreeRssBytes(process));
+
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timedOut = true;
+                    break;
+                }
+
+                if (process.waitFor(Math.min(SAMPLE_INTERVAL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining) + 1), TimeUnit.MILLISECONDS))
+                    break;
+            }
+        } finally {
+            // Also reached when interrupted, so the process tree never outlives the caller
+            if (process.isAlive()) destroyTree(process);
+            runningProcesses.remove(process);
+        }
+
+        reader.join(TERMINATION_GRACE_MILLIS);
+
+        var result = new Result(command, timedOut ? -1 : process.exitValue(), timedOut,
+                (System.nanoTime() - start) / 1_000_000, peakRssBytes, output.toString());
+
+        if (timedOut) logger.error("Command timed out after " + timeout.toSeconds() + " s: " + result);
+        else logger.info("Command finished: " + result);
+
+        return result;
+    }
+
+    private void readOutput(Process process, OutputTail output) {
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line);
+                if (lineConsumer != null) lineConsumer.accept(line);
+            }
+        } catch (IOException e) {
+            // The stream is closed when the process is terminated
+        }
+    }
+
+    /**
+     * Terminates a process and all of its descendants, forcibly if they don't exit within a grace period.
+     *
+     * @param process The root of the process tree.
+     */
+    private static void destroyTree(Process process) {
+        // Collect the descendants first, as they are re-parented once their parent exits
+        var tree = new ArrayList<>(process.descendants().toList());
+        tree.add(process.toHandle());
+
+        tree.forEach(ProcessHandle::destroy);
+
+        var deadline = System.currentTimeMillis() + TERMINATION_GRACE_MILLIS;
+        for (var handle : tree) {
+            var remaining = deadline - System.currentTimeMillis();
+            try {
+                if (remaining > 0) handle.onExit().get(remaining, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                // Terminated forcibly below
+            }
+
+            if (handle.isAlive()) handle.destroyForcibly();
+        }
+    }
+
+    /**
+     * Sums the resident memory of a process and its descendants. Only supported on Linux.
+     *
+     * @return The resident memory in bytes, or -1 if it cannot be determined.
+     */
+    private static long getTreeRssBytes(Process process) {
+        var procPath = Path.of("/proc");
+        if (!Files.isDirectory(procPath)) return -1;
+
+        var handles = new ArrayList<ProcessHandle>();
+        handles.add(process.toHandle());
+        process.descendants().forEach(handles::add);
+
+        var total = 0L;
+        for (var handle : handles) {
+            try {
+                for (var line : Files.readAllLines(procPath.resolve(handle.pid() + "/status"))) {
+                    if (!line.startsWith("VmRSS:")) continue;
+
+                    // e.g. "VmRSS:     1234 kB"
+                    total += Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                    break;
+                }
+            } catch (IOException | NumberFormatException e) {
+                // The process exited in the meantime
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * The result of a command.
+     *
+     * @param command      The command and its arguments.
+     * @param exitCode     The exit code, -1 if the command timed out.
+     * @param timedOut     Whether the process tree was terminated because the deadline passed.
+     * @param wallMillis   The wall time in milliseconds.
+     * @param peakRssBytes The peak resident memory of the process tree in bytes, -1 if not supported.
+     * @param outputTail   The end of the merged standard and error output.
+     */
+    public record Result(List<String> command, int exitCode, boolean timedOut, long wallMillis, long peakRssBytes,
+                         String outputTail) {
+
+        /**
+         * @return True if the command exited with 0 before the deadline
+         */
+        public boolean isSuccess() {
+            return !timedOut && exitCode == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", command) + " (exit code: " + exitCode + ", wall time: " + wallMillis + " ms, peak RSS: "
+                    + (peakRssBytes < 0 ? "unknown" : peakRssBytes / (1024 * 1024) + " MB") + ")";
+        }
+    }
+
+    /**
+     * Keeps the last characters of the output.
+     */
+    private static class OutputTail {
+        private final int maxChars;
+        private final StringBuilder sb = new StringBuilder();
+
+        private OutputTail(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        private synchronized void append(String line) {
+            sb.append(line).append('\n');
+            if (sb.length() > 2 * maxChars) sb.delete(0, sb.length() - maxChars);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return sb.length() > maxChars ? sb.substring(sb.length() - maxChars) : sb.toString();
+        }
+    }
+}
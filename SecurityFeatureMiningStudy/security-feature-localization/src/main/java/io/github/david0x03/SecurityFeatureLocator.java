@@ -1,10 +1,12 @@
 package io.github.david0x03;
 
-import com.google.gson.stream.JsonWriter;
 import io.github.david0x03.mappings.ApiMappings;
+import io.github.david0x03.project.BuildCache;
+import io.github.david0x03.project.GradleDaemonPool;
+import io.github.david0x03.project.GradleProject;
 import io.github.david0x03.project.JavaProject;
 import io.github.david0x03.project.JavaSource;
-import org.apache.commons.io.FileUtils;
+import io.github.david0x03.project.ProjectIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -14,14 +16,29 @@ import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.FileASTRequestor;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Responsible for locating security features in Java projects by parsing source files and analyzing
@@ -31,8 +48,29 @@ public class SecurityFeatureLocator {
 
     private final Logger logger = LogManager.getLogger(SecurityFeatureLocator.class);
 
+    /*
+     * Rough ratio between the heap used by JDT while parsing with bindings and the size of the parsed sources.
+     * Automatic batches are sized so that a batch of all parallel parsers of a source fits into the free heap.
+     */
+    private static final int AUTO_BATCH_HEAP_FACTOR = 64;
+
     private final ApiMappings apiMappings;
 
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean cacheEnabled = false;
+    private boolean forceRebuild = false;
+    private boolean streamingExport = false;
+    private boolean prefilterEnabled = false;
+    private boolean fastModeEnabled = false;
+
+    // Warm Gradle daemons shared by the projects located in batch mode
+    private GradleDaemonPool gradleDaemonPool = null;
+
+    // Limits of the batches fed to the parsers, 0 for no limit
+    private int batchFiles = 0;
+    private long batchBytes = 0;
+    private boolean autoBatching = false;
+
     /**
      * Initializes the SecurityFeatureLocator with API mappings.
      *
@@ -51,6 +89,106 @@ public class SecurityFeatureLocator {
         this.apiMappings = apiMappings;
     }
 
+    /**
+     * Sets the number of parsers used in parallel to extract the features of a single source.
+     *
+     * @param parallelism The number of parallel parsers, 1 parses all files sequentially.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Enables the persistent caches, stored as "result/analysis-cache.json" and "result/build-cache.json" in the
+     * project directory. Files whose content, compliance level, mappings, class path and source path did not change
+     * are not parsed again, and projects whose build files did not change are not built again.
+     *
+     * @param cacheEnabled Whether the analysis and build caches are used.
+     * @see BuildCache
+     */
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    /**
+     * Ignores the build cache and builds the project again. The new build results are still cached.
+     *
+     * @param forceRebuild Whether the project is always built.
+     */
+    public void setForceRebuild(boolean forceRebuild) {
+        this.forceRebuild = forceRebuild;
+    }
+
+    /**
+     * Enables the streaming export. Each parsed file is written to the JSON export as soon as it is parsed
+     * and is then dropped, so the memory usage does not depend on the project size. The analysis cache entries
+     * of this run are written to disk after each source, but the entries of the previous run are loaded at once.
+     * The files of a source are written in the order they finish parsing, and the parsed files are not
+     * available from the returned project. If writing the export fails, the run fails and no export is left.
+     *
+     * @param streamingExport Whether the JSON export is streamed while parsing.
+     */
+    public void setStreamingExport(boolean streamingExport) {
+        this.streamingExport = streamingExport;
+    }
+
+    /**
+     * Enables the lexical prefilter. Files that cannot contain a mapped API call according to their imports
+     * and references are not parsed, they are reported without API calls and missing bindings.
+     *
+     * @param prefilterEnabled Whether the lexical prefilter is used.
+     * @see LexicalPrefilter
+     */
+    public void setPrefilterEnabled(boolean prefilterEnabled) {
+        this.prefilterEnabled = prefilterEnabled;
+    }
+
+    /**
+     * Enables the fast mode. Files are first parsed without bindings and their qualified names are resolved from the
+     * imports, the package and the declarations of the project and its class path. Only files with nodes that can't
+     * be decided this way are parsed with bindings. The results can differ from the ones with bindings, e.g. for
+     * overloaded methods, and files resolved without bindings report no missing bindings.
+     *
+     * @param fastModeEnabled Whether the fast mode is used.
+     * @see SyntacticVisitor
+     */
+    public void setFastModeEnabled(boolean fastModeEnabled) {
+        this.fastModeEnabled = fastModeEnabled;
+    }
+
+    /**
+     * Limits the number of files passed to the parsers at once. The lookup environment of JDT grows with each batch
+     * and is released after it, which bounds the memory usage for huge sources. Bindings are still resolved
+     * through the class path and the source path.
+     *
+     * @param batchFiles The maximum number of files per batch, 0 for no limit.
+     * @param batchBytes The maximum size of the files per batch in bytes, 0 for no limit.
+     */
+    public void setBatchLimits(int batchFiles, long batchBytes) {
+        this.batchFiles = Math.max(0, batchFiles);
+        this.batchBytes = Math.max(0, batchBytes);
+    }
+
+    /**
+     * Enables automatic batches, whose size in bytes is derived from the free heap before each source is parsed.
+     * A file limit set by {@link #setBatchLimits(int, long)} still applies.
+     *
+     * @param autoBatching Whether the batch size is chosen automatically.
+     */
+    public void setAutoBatching(boolean autoBatching) {
+        this.autoBatching = autoBatching;
+    }
+
+    /**
+     * Enables the batch mode for Gradle projects, which detect the Java version during the build and build on a
+     * warm daemon of the pool.
+     *
+     * @param gradleDaemonPool The pool of Gradle daemons, or null to build without daemons.
+     */
+    public void setGradleDaemonPool(GradleDaemonPool gradleDaemonPool) {
+        this.gradleDaemonPool = gradleDaemonPool;
+    }
+
     /**
      * Locates security features in a given project by analyzing its source files.
      *
@@ -60,8 +198,43 @@ public class SecurityFeatureLocator {
      * @throws Exception If the project cannot be loaded or processed.
      */
     public JavaProject locateFeatures(String projectDir, boolean createJsonExport) throws Exception {
+        return locateFeatures(projectDir, null, createJsonExport);
+    }
+
+    /**
+     * Locates security features in a given project by analyzing its source files.
+     *
+     * @param projectDir       The path to the project directory. Must be a Maven or Gradle project.
+     * @param index            An existing index of the project files, or null to index the project.
+     * @param createJsonExport Whether to generate a JSON export of the located features.
+     * @return A list of parsed files with identified security features.
+     * @throws Exception If the project cannot be loaded or processed.
+     */
+    public JavaProject locateFeatures(String projectDir, ProjectIndex index, boolean createJsonExport) throws Exception {
+        Utils.beginPeakHeapTracking();
+        try {
+            return locate(projectDir, index, createJsonExport);
+        } finally {
+            Utils.endPeakHeapTracking();
+        }
+    }
+
+    /**
+     * Locates security features in a given project, see {@link #locateFeatures(String, ProjectIndex, boolean)}.
+     * The peak heap usage must be tracked by the caller.
+     */
+    @SuppressWarnings("try") // The phase timers are only opened and closed
+    private JavaProject locate(String projectDir, ProjectIndex index, boolean createJsonExport) throws Exception {
+        var startTime = System.nanoTime();
+        var metrics = new LocatorMetrics();
+
         // Load the project
-        var project = JavaProject.load(Paths.get(projectDir).toAbsolutePath());
+        JavaProject project;
+        try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_LOAD)) {
+            project = JavaProject.load(Paths.get(projectDir).toAbsolutePath(), index);
+        }
+
+        if (project instanceof GradleProject gradleProject) gradleProject.setDaemonPool(gradleDaemonPool);
 
         // Locate all sources
         var sources = project.getSources();
@@ -71,27 +244,118 @@ public class SecurityFeatureLocator {
         logger.info("Project: " + project.getProjectPath());
         logger.info("Found " + sources.size() + " source(s)");
 
+        // Reuse the build results if the build files did not change
+        var buildCachePath = project.getProjectPath().resolve("result/build-cache.json");
+        var buildRestored = cacheEnabled && !forceRebuild && BuildCache.restore(project, buildCachePath);
+        if (buildRestored) logger.info("Build files unchanged, reusing the cached build");
+
         // Extract the java version
         logger.info("Extracting Java version...");
-        String javaVersion = project.getJavaSourceVersion();
+        String javaVersion;
+        try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_JAVA_VERSION)) {
+            javaVersion = project.getJavaSourceVersion();
+        }
         if (javaVersion != null) logger.info("Found version: " + javaVersion);
         else logger.info("Unable to extract Java version, using fallback");
 
         // Build the project
         logger.info("Building project...");
-        var buildSuccess = project.buildProject();
+        boolean buildSuccess;
+        try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_BUILD)) {
+            buildSuccess = buildRestored ? project.isBuildSuccess() : project.buildProject();
+        }
         if (buildSuccess) logger.info("Build successful");
         else logger.info("Build failed, continuing");
 
-        for (var source : sources) {
-            logger.info("Extracting security features from: " + source.getRelativeSourcePath());
-            parsedFiles.addAll(parseSourceDir(source));
+        // The external build commands are terminated on interruption, don't continue with the analysis either
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedException("Feature localization was interrupted");
+
+        if (cacheEnabled && !buildRestored) {
+            try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_BUILD_CACHE)) {
+                BuildCache.store(project, buildCachePath);
+            }
+        }
+
+        var cache = cacheEnabled ? AnalysisCache.load(project.getProjectPath().resolve("result/analysis-cache.json")) : null;
+
+        Set<String> candidates = null;
+        if (prefilterEnabled) {
+            try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_PREFILTER)) {
+                var start = System.nanoTime();
+                var files = new HashSet<String>();
+                for (var source : sources) {
+                    files.addAll(source.getJavaFiles());
+                    files.addAll(source.getGeneratedFiles());
+                }
+
+                candidates = new LexicalPrefilter(apiMappings).selectCandidates(files);
+                logger.info("Prefilter: " + candidates.size() + " of " + files.size() + " file(s) can contain mapped APIs ("
+                        + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            }
+        }
+
+        TypeIndex typeIndex = null;
+        if (fastModeEnabled) {
+            try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_TYPE_INDEX)) {
+                // Sources can overlap, each file is indexed once
+                var files = new LinkedHashSet<String>();
+                for (var source : sources) {
+                    files.addAll(source.getJavaFiles());
+                    files.addAll(source.getGeneratedFiles());
+                }
+
+                typeIndex = TypeIndex.build(files, project.getClasspath(), javaVersion, apiMappings, parallelism);
+            }
+        }
+
+        var run = new LocateRun(cache, candidates, typeIndex, metrics);
+
+        try {
+            if (createJsonExport && streamingExport) {
+                logger.info("Streaming JSON file");
+                try (var export = new FeatureExport(project, getExportPath(project), javaVersion, buildSuccess)) {
+                    for (var source : sources) {
+                        logger.info("Extracting security features from: " + source.getRelativeSourcePath());
+                        export.beginSource(source);
+                        parseSourceDir(source, run, export, parallelism);
+                        export.endSource();
+
+                        // Keep the cache entries from growing with the project as well
+                        if (cache != null) cache.flush();
+                    }
+
+                    export.complete();
+                } catch (UncheckedIOException e) {
+                    // The export is incomplete and was removed, the run fails instead of silently losing sources
+                    throw new IOException("Failed to create json file", e.getCause());
+                }
+            } else {
+                parsedFiles.addAll(parseSources(project, run));
+            }
+        } finally {
+            if (typeIndex != null) typeIndex.close();
+        }
+
+        if (typeIndex != null) {
+            logger.info("Fast mode: " + metrics.getFilesDecided() + " file(s) resolved without bindings, "
+                    + metrics.getFilesUndecided() + " parsed with bindings");
+        }
+
+        if (cache != null) {
+            logger.info("Analysis cache: " + cache.getHits() + " hit(s), " + cache.getMisses() + " miss(es)");
+            cache.save();
+        }
+
+        if (candidates != null && metrics.getFilesParsed() > 0) {
+            // Estimate the saved time from the average parsing time of the parsed files
+            var savedMillis = run.parseNanos.get() / metrics.getFilesParsed() * metrics.getFilesSkipped() / 1_000_000;
+            logger.info("Prefilter skipped " + metrics.getFilesSkipped() + " file(s), saving an estimated " + savedMillis + " ms of parsing");
         }
 
         project.setParsedFiles(parsedFiles);
 
-        if (createJsonExport) {
-            try {
+        if (createJsonExport && !streamingExport) {
+            try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_EXPORT)) {
                 logger.info("Creating JSON files");
                 createJsonExport(project, parsedFiles);
             } catch (IOException e) {
@@ -99,23 +363,107 @@ public class SecurityFeatureLocator {
             }
         }
 
-        logger.info("Done");
+        metrics.finish(System.nanoTime() - startTime, Utils.getPeakHeapUsage());
+        project.setMetrics(metrics);
+
+        if (createJsonExport) {
+            try {
+                metrics.writeJson(project.getProjectPath().resolve("result/metrics.json"));
+            } catch (IOException e) {
+                logger.error("Failed to create metrics file: ", e);
+            }
+        }
+
+        logger.info("Done in " + metrics.getTotalWallMillis() + " ms, peak heap usage: "
+                + metrics.getPeakHeapBytes() / (1024 * 1024) + " MB");
         return project;
     }
 
     /**
-     * Parses a single source directory to identify security features using AST analysis.
+     * Parses all sources of a project. Sources are parsed concurrently in dependency order, each with a share of the
+     * parallel parsers proportional to its number of files. As every source only uses the sources of its upstream
+     * modules, independent modules don't wait for each other.
+     * The parsed files are returned in the order of the sources, independent of the parallelism.
      *
-     * @param source The Java source to be parsed.
+     * @param project The project whose sources are parsed.
+     * @param run     The state shared by all sources of the current run.
      * @return A list of parsed files with identified security features.
+     * @throws InterruptedException If the thread was interrupted.
      */
-    private List<ParsedFile> parseSourceDir(JavaSource source) {
-        // Configure the AST parser
-        var parser = ASTParser.newParser(AST.getJLSLatest());
-        parser.setKind(ASTParser.K_COMPILATION_UNIT);
-        parser.setResolveBindings(true);
-        parser.setBindingsRecovery(true);
-        parser.setStatementsRecovery(true);
+    private List<ParsedFile> parseSources(JavaProject project, LocateRun run) throws InterruptedException {
+        var sources = project.getSources();
+        var concurrentSources = Math.min(parallelism, sources.size());
+
+        if (concurrentSources <= 1) {
+            var parsedFiles = new ArrayList<ParsedFile>();
+            for (var source : sources) {
+                if (Thread.currentThread().isInterrupted()) throw new InterruptedException("Feature localization was interrupted");
+
+                logger.info("Extracting security features from: " + source.getRelativeSourcePath());
+                parsedFiles.addAll(parseSourceDir(source, run, null, parallelism));
+            }
+
+            return parsedFiles;
+        }
+
+        var totalFiles = Math.max(1, sources.stream().mapToInt(source -> source.getJavaFiles().size()).sum());
+
+        // A source waits until its share of the parsers is free, so no more than the configured parsers run at once
+        var parsers = new Semaphore(parallelism, true);
+        var executor = Executors.newFixedThreadPool(concurrentSources);
+        var results = new HashMap<JavaSource, Future<List<ParsedFile>>>();
+
+        try {
+            for (var source : project.getSourcesInDependencyOrder()) {
+                var threads = (int) Math.min(parallelism, Math.max(1, Math.round((double) parallelism * source.getJavaFiles().size() / totalFiles)));
+
+                results.put(source, executor.submit(() -> {
+                    parsers.acquire(threads);
+                    try {
+                        logger.info("Extracting security features from: " + source.getRelativeSourcePath());
+                        return parseSourceDir(source, run, null, threads);
+                    } finally {
+                        parsers.release(threads);
+                    }
+                }));
+            }
+
+            var parsedFiles = new ArrayList<ParsedFile>();
+            for (var source : sources) {
+                try {
+                    parsedFiles.addAll(results.get(source).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                    if (e.getCause() instanceof Error error) throw error;
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+
+            return parsedFiles;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a single source directory to identify security features using AST analysis.
+     * The files of the source are split into chunks that are parsed by independent parsers in parallel.
+     * The parsed files are returned in the order of the source files, independent of the parallelism.
+     *
+     * Files rejected by the prefilter or found in the analysis cache are not parsed.
+     * If an export is given, the parsed files are written to it and dropped instead of being returned.
+     *
+     * @param source  The Java source to be parsed.
+     * @param run     The state shared by all sources of the current run.
+     * @param export  The export the parsed files are streamed to, or null to return them.
+     * @param threads The number of parallel parsers for the source.
+     * @return A list of parsed files with identified security features, empty if the files were streamed.
+     */
+    @SuppressWarnings("try") // The phase timers are only opened and closed
+    private List<ParsedFile> parseSourceDir(JavaSource source, LocateRun run, FeatureExport export, int threads) {
+        var cache = run.cache;
+        var metrics = run.metrics;
+        var classpathTimer = metrics.startPhase(LocatorMetrics.PHASE_CLASSPATH);
 
         // Use a fallback of Java 1.8
         var javaSourceVersion = source.getProject().getJavaSourceVersion();
@@ -124,38 +472,258 @@ public class SecurityFeatureLocator {
         // Set the java version
         Map<String, String> options = JavaCore.getOptions();
         JavaCore.setComplianceOptions(javaSourceVersion, options);
-        parser.setCompilerOptions(options);
 
         // Get the dependencies
         var dependencies = source.getDependencies().stream().map(Path::toString).toArray(String[]::new);
 
-        // Pass all other sources to the AST Parser
-        var sourcePaths = source.getProject().getSources().stream().map(s -> s.getSourcePath().toString()).toArray(String[]::new);
+        // Pass the sources of the module and its upstream modules to the AST Parser
+        var upstreamSources = source.getUpstreamSources().stream().map(JavaSource::getSourcePath).toList();
+        var sourcePaths = upstreamSources.stream().map(Path::toString).toArray(String[]::new);
 
-        parser.setEnvironment(dependencies, sourcePaths, null, true);
+        // Get java files from the source
+        var javaFiles = new ArrayList<>(source.getJavaFiles());
+        javaFiles.addAll(source.getGeneratedFiles());
+        classpathTimer.close();
+
+        var sources = javaFiles.toArray(String[]::new);
+        var environment = new ParserEnvironment(source, options, dependencies, sourcePaths, null);
+
+        // Remember the position of each file, so the results can be merged deterministically
+        var fileIndices = new HashMap<String, Integer>();
+        for (int i = 0; i < sources.length; i++) fileIndices.put(sources[i], i);
+        var results = new ParsedFile[sources.length];
+        var cacheKeys = new String[sources.length];
+
+        // Caches newly parsed files and either stores or streams them
+        ObjIntConsumer<ParsedFile> handler = (pf, i) -> {
+            metrics.recordResult(pf);
+            if (cache != null && cacheKeys[i] != null) cache.put(cacheKeys[i], pf);
+
+            if (export == null) {
+                results[i] = pf;
+                return;
+            }
+
+            try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_EXPORT)) {
+                export.writeFile(pf);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        // Skip files rejected by the prefilter and take unchanged files from the cache
+        var cacheTimer = cache != null ? metrics.startPhase(LocatorMetrics.PHASE_CACHE) : null;
+        // The declarations of the source path change the resolved bindings just like the class path
+        String classpathFingerprint = null;
+        if (cache != null) {
+            var sb = new StringBuilder(AnalysisCache.fingerprint(source.getDependencies()));
+            for (var upstream : source.getUpstreamSources()) {
+                sb.append('|').append(run.sourceFingerprints.computeIfAbsent(upstream,
+                        s -> cache.declarationFingerprint(s.getJavaFiles(), options)));
+            }
+            classpathFingerprint = sb.toString();
+        }
+        List<String> filesToParse = new ArrayList<>();
+        var cacheHits = 0;
+
+        // Results of the fast mode must not be taken for the results with bindings
+        var mappingsFingerprint = apiMappings.getFingerprint() + (run.typeIndex != null ? ":fast" : "");
+
+        for (int i = 0; i < sources.length; i++) {
+            var filePath = Paths.get(sources[i]);
+
+            if (run.candidates != null && !run.candidates.contains(sources[i])) {
+                handler.accept(new ParsedFile(filePath, source, List.of(), List.of(), apiMappings), i);
+                metrics.recordSkippedFile();
+                continue;
+            }
+
+            if (cache != null) {
+                ParsedFile cached = null;
+                try {
+                    cacheKeys[i] = cache.getKey(filePath, javaSourceVersion, mappingsFingerprint, classpathFingerprint);
+                    cached = cache.get(cacheKeys[i], filePath, source, apiMappings);
+                } catch (IOException e) {
+                    logger.error("Failed to compute the cache key: ", e);
+                }
+
+                if (cached != null) {
+                    handler.accept(cached, i);
+                    metrics.recordCachedFile();
+                    cacheHits++;
+                    continue;
+                }
+            }
+
+            filesToParse.add(sources[i]);
+        }
+
+        if (cacheTimer != null) cacheTimer.close();
+        if (cache != null) logger.info("Cache: " + cacheHits + " hit(s), " + filesToParse.size() + " miss(es)");
+
+        var start = System.nanoTime();
+
+        // In the fast mode, only the files that can't be decided without bindings are parsed with bindings
+        if (run.typeIndex != null && !filesToParse.isEmpty()) {
+            var undecidedFiles = ConcurrentHashMap.<String>newKeySet();
+            ObjIntConsumer<ParsedFile> syntacticHandler = (pf, i) -> {
+                if (pf.isDecided()) handler.accept(pf, i);
+                else undecidedFiles.add(sources[i]);
+            };
+
+            parseFilesInParallel(environment.withTypeIndex(run.typeIndex), filesToParse.toArray(String[]::new), threads,
+                    fileIndices, syntacticHandler, metrics);
+            filesToParse = filesToParse.stream().filter(undecidedFiles::contains).toList();
+        }
+
+        var batches = splitIntoBatches(filesToParse, threads);
+        if (batches.size() > 1) logger.info("Parsing " + filesToParse.size() + " file(s) in " + batches.size() + " batches");
+
+        for (var batch : batches) parseFilesInParallel(environment, batch, threads, fileIndices, handler, metrics);
+        run.parseNanos.addAndGet(System.nanoTime() - start);
+
+        return Arrays.stream(results).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Splits the files into batches according to the configured file and byte limits.
+     * Each batch contains at least one file. Automatic batches are sized for the parsers of the source, as the
+     * free heap is measured when the source is split, after the sources parsed concurrently took their share.
+     *
+     * @param files   The files to parse.
+     * @param threads The number of parallel parsers for the source.
+     * @return The batches in the order of the files.
+     */
+    private List<String[]> splitIntoBatches(List<String> files, int threads) {
+        var maxFiles = batchFiles > 0 ? batchFiles : Integer.MAX_VALUE;
+        var maxBytes = batchBytes > 0 ? batchBytes : Long.MAX_VALUE;
+
+        if (autoBatching) {
+            var runtime = Runtime.getRuntime();
+            var freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+            maxBytes = Math.min(maxBytes, Math.max(1, freeHeap / ((long) AUTO_BATCH_HEAP_FACTOR * threads)));
+        }
+
+        var batches = new ArrayList<String[]>();
+        var batch = new ArrayList<String>();
+        var bytes = 0L;
+
+        for (var file : files) {
+            long size;
+            try {
+                size = Files.size(Paths.get(file));
+            } catch (IOException e) {
+                size = 0;
+            }
+
+            if (!batch.isEmpty() && (batch.size() >= maxFiles || bytes + size > maxBytes)) {
+                batches.add(batch.toArray(String[]::new));
+                batch.clear();
+                bytes = 0;
+            }
+
+            batch.add(file);
+            bytes += size;
+        }
+
+        if (!batch.isEmpty()) batches.add(batch.toArray(String[]::new));
+        return batches;
+    }
+
+    /**
+     * Splits the files into chunks that are parsed by independent parsers in parallel.
+     *
+     * @param environment The parser environment shared by all chunks of a source.
+     * @param files       The files to parse.
+     * @param threads     The number of parallel parsers.
+     * @param fileIndices The index of each file within its source.
+     * @param handler     Receives each parsed file together with its index, called concurrently.
+     * @param metrics     The metrics the parsing and visiting times are added to.
+     */
+    private void parseFilesInParallel(ParserEnvironment environment, String[] files, int threads, Map<String, Integer> fileIndices,
+                                      ObjIntConsumer<ParsedFile> handler, LocatorMetrics metrics) {
+        var chunkCount = Math.min(threads, files.length);
+        if (chunkCount <= 1) {
+            parseFiles(environment, files, fileIndices, handler, metrics);
+            return;
+        }
+
+        var chunkSize = (files.length + chunkCount - 1) / chunkCount;
+        var pool = new ForkJoinPool(chunkCount);
+
+        try {
+            var tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int from = 0; from < files.length; from += chunkSize) {
+                var chunk = Arrays.copyOfRange(files, from, Math.min(from + chunkSize, files.length));
+                tasks.add(pool.submit(() -> parseFiles(environment, chunk, fileIndices, handler, metrics)));
+            }
+
+            for (var task : tasks) task.join();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a chunk of files with a dedicated AST parser and passes the parsed files to the handler.
+     *
+     * @param environment The parser environment shared by all chunks of a source.
+     * @param files       The files of the chunk.
+     * @param fileIndices The index of each file within its source.
+     * @param handler     Receives each parsed file together with its index.
+     * @param metrics     The metrics the parsing and visiting times are added to.
+     */
+    @SuppressWarnings("try") // The phase timers are only opened and closed
+    private void parseFiles(ParserEnvironment environment, String[] files, Map<String, Integer> fileIndices,
+                            ObjIntConsumer<ParsedFile> handler, LocatorMetrics metrics) {
+        var startWall = System.nanoTime();
+        var startCpu = LocatorMetrics.currentThreadCpuTime();
+
+        // Time spent outside the parser, i.e. visiting and handling the parsed files
+        var acceptWall = new long[1];
+        var acceptCpu = new long[1];
+
+        // Configure the AST parser, bindings are resolved unless the files are resolved syntactically
+        var syntactic = environment.typeIndex() != null;
+        var parser = ASTParser.newParser(AST.getJLSLatest());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(!syntactic);
+        parser.setBindingsRecovery(!syntactic);
+        parser.setStatementsRecovery(true);
+        parser.setCompilerOptions(new HashMap<>(environment.options()));
+        parser.setEnvironment(environment.dependencies(), environment.sourcePaths(), null, true);
 
-        var parsedFiles = new ArrayList<ParsedFile>();
         FileASTRequestor requestor = new FileASTRequestor() {
             @Override
             public void acceptAST(String source, CompilationUnit cu) {
-                var pf = new ParsedFile(Paths.get(source), cu, apiMappings);
-                parsedFiles.add(pf);
+                var acceptStartWall = System.nanoTime();
+                var acceptStartCpu = LocatorMetrics.currentThreadCpuTime();
+
+                ParsedFile pf;
+                try (var ignored = metrics.startPhase(LocatorMetrics.PHASE_VISIT)) {
+                    pf = syntactic ? new ParsedFile(Paths.get(source), environment.source(), cu, apiMappings, environment.typeIndex())
+                            : new ParsedFile(Paths.get(source), environment.source(), cu, apiMappings);
+                }
+
+                if (syntactic) metrics.recordSyntacticFile(pf);
+                else metrics.recordParsedFile(pf);
+                handler.accept(pf, fileIndices.get(source));
+
+                acceptWall[0] += System.nanoTime() - acceptStartWall;
+                acceptCpu[0] += LocatorMetrics.currentThreadCpuTime() - acceptStartCpu;
             }
         };
 
-        // Get java files from the source
-        var javaFiles = source.getJavaFiles();
-        javaFiles.addAll(source.getGeneratedFiles());
-
         // Parse the files
-        var sources = javaFiles.toArray(String[]::new);
-        parser.createASTs(sources, null, new String[0], requestor, new NullProgressMonitor());
+        parser.createASTs(files, null, new String[0], requestor, new NullProgressMonitor());
 
-        return parsedFiles;
+        metrics.addPhaseTime(LocatorMetrics.PHASE_PARSE, System.nanoTime() - startWall - acceptWall[0],
+                LocatorMetrics.currentThreadCpuTime() - startCpu - acceptCpu[0]);
     }
 
     /**
      * Creates a JSON export file containing all located security features.
+     * Each parsed file is written under the source it was parsed from.
      *
      * @param project     The Java project being analyzed.
      * @param parsedFiles The list of parsed files with identified security features.
@@ -163,31 +731,76 @@ public class SecurityFeatureLocator {
      */
     private void createJsonExport(JavaProject project, List<ParsedFile> parsedFiles) throws IOException {
         String javaVersion = project.getJavaSourceVersion();
-        var buildSuccess = project.buildProject();
+        var buildSuccess = project.isBuildSuccess();
         var sources = project.getSources();
 
-        var exportPath = project.getProjectPath().resolve("result/features.json");
-        FileUtils.createParentDirectories(exportPath.toFile());
+        // Group the parsed files by their source, keeping their order
+        var filesBySource = new HashMap<JavaSource, List<ParsedFile>>();
+        for (var pf : parsedFiles) filesBySource.computeIfAbsent(pf.getSource(), s -> new ArrayList<>()).add(pf);
+
+        try (var export = new FeatureExport(project, getExportPath(project), javaVersion, buildSuccess)) {
+            for (var source : sources) {
+                export.beginSource(source);
+                for (var pf : filesBySource.getOrDefault(source, List.of())) export.writeFile(pf);
+                export.endSource();
+            }
 
-        var jsonWriter = new JsonWriter(new BufferedWriter(new FileWriter(exportPath.toFile())));
-        jsonWriter.setIndent("  ");
+            export.complete();
+        }
+    }
 
-        jsonWriter.beginObject();
-        jsonWriter.name("javaVersion").value(javaVersion);
-        jsonWriter.name("buildSuccess").value(buildSuccess);
+    /**
+     * @return The path of the JSON export within the project directory
+     */
+    private Path getExportPath(JavaProject project) {
+        return project.getProjectPath().resolve("result/features.json");
+    }
 
-        jsonWriter.name("sources").beginArray();
-        for (var source : sources) {
-            jsonWriter.beginObject();
-            jsonWriter.name("path").value(source.getRelativeSourcePath().toString());
-            jsonWriter.name("files").beginArray();
-            for (var pf : parsedFiles) pf.writeJson(jsonWriter, project);
-            jsonWriter.endArray();
-            jsonWriter.endObject();
+    /**
+     * The environment settings shared by all parsers of a single source.
+     *
+     * @param source       The source being parsed.
+     * @param options      The compiler options including the compliance level.
+     * @param dependencies The class path entries of the source.
+     * @param sourcePaths  The source path entries of the project.
+     * @param typeIndex    The type index to resolve the files without bindings, or null to resolve bindings.
+     */
+    private record ParserEnvironment(JavaSource source, Map<String, String> options, String[] dependencies, String[] sourcePaths,
+                                     TypeIndex typeIndex) {
+
+        /**
+         * @return The same environment for parsing the files without bindings
+         */
+        private ParserEnvironment withTypeIndex(TypeIndex typeIndex) {
+            return new ParserEnvironment(source, options, dependencies, sourcePaths, typeIndex);
         }
-        jsonWriter.endArray();
+    }
 
-        jsonWriter.endObject();
-        jsonWriter.flush();
+    /**
+     * The state shared by all sources of a single call to {@link #locateFeatures(String, boolean)}.
+     */
+    private static class LocateRun {
+        private final AnalysisCache cache;
+        private final Set<String> candidates;
+        private final TypeIndex typeIndex;
+        private final LocatorMetrics metrics;
+
+        private final AtomicLong parseNanos = new AtomicLong();
+
+        // The declaration fingerprints of the sources, shared by their downstream sources
+        private final Map<JavaSource, String> sourceFingerprints = new ConcurrentHashMap<>();
+
+        /**
+         * @param cache      The analysis cache, or null if caching is disabled.
+         * @param candidates The files selected by the prefilter, or null if the prefilter is disabled.
+         * @param typeIndex  The type index of the fast mode, or null if the fast mode is disabled.
+         * @param metrics    The metrics of the run.
+         */
+        private LocateRun(AnalysisCache cache, Set<String> candidates, TypeIndex typeIndex, LocatorMetrics metrics) {
+            this.cache = cache;
+            this.candidates = candidates;
+            this.typeIndex = typeIndex;
+            this.metrics = metrics;
+        }
     }
 }
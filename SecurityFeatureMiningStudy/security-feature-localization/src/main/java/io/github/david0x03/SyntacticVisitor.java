@@ -0,0 +1,841 @@
+package io.github.david0x03;
+
+import io.github.david0x03.mappings.ApiMappings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jdt.core.dom.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Locates the same nodes as the {@link AstVisitor} in an AST parsed without bindings.
+ * <p>
+ * Qualified names are resolved syntactically from the imports, the static imports, the package and fully qualified
+ * references, using the {@link TypeIndex} to find the types declaring the members and the return types of chained
+ * calls. The types of variables are taken from their declarations, {@code var} is inferred from its initializer.
+ * A node this can't decide, e.g. a call on an untyped lambda parameter, the result of a generic method or a type
+ * missing from the class path whose name could be mapped, makes the whole file undecided, so it can be parsed with
+ * bindings instead. The visit stops at the first undecided node.
+ * Overloads are not distinguished, and decided files report no missing bindings.
+ */
+public class SyntacticVisitor extends ASTVisitor {
+
+    private static final Logger logger = LogManager.getLogger(SyntacticVisitor.class);
+
+    private final ParsedFile fd;
+    private final ApiMappings apiMappings;
+    private final TypeIndex typeIndex;
+
+    private TypeIndex.FileContext file;
+    private Scope scope = null;
+
+    // Local and anonymous types of the file by their key
+    private final Map<String, TypeIndex.DeclaredType> localTypes = new HashMap<>();
+    private final Map<ASTNode, Resolution> resolvedMethods = new IdentityHashMap<>();
+    private final Deque<Scope> savedScopes = new ArrayDeque<>();
+
+    private int visitedNodes = 0;
+    private boolean undecided = false;
+
+    /**
+     * Initializes the visitor with a parsed file for recording located nodes.
+     *
+     * @param fd          The parsed file where extracted API calls are recorded.
+     * @param apiMappings The API mappings, used to check whether an unknown name could be mapped.
+     * @param typeIndex   The types of the project and its class path.
+     */
+    public SyntacticVisitor(ParsedFile fd, ApiMappings apiMappings, TypeIndex typeIndex) {
+        this.fd = fd;
+        this.apiMappings = apiMappings;
+        this.typeIndex = typeIndex;
+    }
+
+    @Override
+    public boolean preVisit2(ASTNode node) {
+        if (undecided) return false;
+
+        visitedNodes++;
+        return true;
+    }
+
+    /**
+     * @return The number of AST nodes visited so far
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * @return True if a node could not be decided without bindings
+     */
+    public boolean isUndecided() {
+        return undecided;
+    }
+
+    // Scopes
+
+    @Override
+    public boolean visit(CompilationUnit node) {
+        file = TypeIndex.FileContext.of(node);
+        return true;
+    }
+
+    @Override
+    public boolean visit(PackageDeclaration node) {
+        return false;
+    }
+
+    @Override
+    public boolean visit(ModuleDeclaration node) {
+        return false;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+        enterType(node);
+        return true;
+    }
+
+    @Override
+    public void endVisit(TypeDeclaration node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(EnumDeclaration node) {
+        enterType(node);
+        return true;
+    }
+
+    @Override
+    public void endVisit(EnumDeclaration node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(RecordDeclaration node) {
+        enterType(node);
+        return true;
+    }
+
+    @Override
+    public void endVisit(RecordDeclaration node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(AnnotationTypeDeclaration node) {
+        enterType(node);
+        return true;
+    }
+
+    @Override
+    public void endVisit(AnnotationTypeDeclaration node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(AnonymousClassDeclaration node) {
+        var type = TypeIndex.DeclaredType.of(node, "#" + localTypes.size(), file, getEnclosingType());
+        enterLocalType(type);
+        return true;
+    }
+
+    @Override
+    public void endVisit(AnonymousClassDeclaration node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(MethodDeclaration node) {
+        enterScope();
+        for (var parameter : (List<?>) node.typeParameters()) declareTypeParameter((TypeParameter) parameter);
+        return true;
+    }
+
+    @Override
+    public void endVisit(MethodDeclaration node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(Block node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(Block node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(ForStatement node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(ForStatement node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(EnhancedForStatement node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(CatchClause node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(CatchClause node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(TryStatement node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(TryStatement node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(LambdaExpression node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(LambdaExpression node) {
+        leaveScope();
+    }
+
+    @Override
+    public boolean visit(SwitchStatement node) {
+        enterScope();
+        return true;
+    }
+
+    @Override
+    public void endVisit(SwitchStatement node) {
+        leaveScope();
+    }
+
+    // Variables
+
+    @Override
+    public boolean visit(SingleVariableDeclaration node) {
+        // Parameters, catch clauses, enhanced for loops and patterns, record components are fields of their type
+        if (node.getParent() instanceof RecordDeclaration) return true;
+
+        var type = node.getType().isVar() ? null : resolveType(node.getType());
+        if (type != null && node.isVarargs()) type += "[]";
+        if (type != null) type += "[]".repeat(node.getExtraDimensions());
+
+        declareVariable(node.getName().getIdentifier(), type);
+        return true;
+    }
+
+    @Override
+    public boolean visit(VariableDeclarationFragment node) {
+        var parent = node.getParent();
+
+        Type declaredType = null;
+        if (parent instanceof VariableDeclarationStatement statement) declaredType = statement.getType();
+        else if (parent instanceof VariableDeclarationExpression expression) declaredType = expression.getType();
+        else if (!(parent instanceof LambdaExpression)) return true;
+
+        String type = null;
+        if (declaredType != null && declaredType.isVar()) {
+            type = node.getInitializer() != null ? typeOf(node.getInitializer()) : null;
+        } else if (declaredType != null) {
+            type = resolveType(declaredType);
+            if (type != null) type += "[]".repeat(node.getExtraDimensions());
+        }
+
+        declareVariable(node.getName().getIdentifier(), type);
+        return true;
+    }
+
+    @Override
+    public boolean visit(TypeDeclarationStatement node) {
+        // Local types are visible to the following statements of their block
+        var declaration = node.getDeclaration();
+        scope.localTypes.put(declaration.getName().getIdentifier(), "#" + localTypes.size());
+        return true;
+    }
+
+    @Override
+    public boolean visit(ImportDeclaration node) {
+        // A static import of a field is a field access
+        if (node.isStatic() && !node.isOnDemand() && node.getName() instanceof QualifiedName name) {
+            var member = findField(name.getQualifier().getFullyQualifiedName(), name.getName().getIdentifier());
+
+            if (member == null) undecide(node);
+            else if (member != ClassFileIndex.Member.NONE)
+                fd.addApiCall(name, member.declaringClass() + "." + name.getName().getIdentifier(), ApiCall.APICallType.FieldAccess);
+        }
+
+        return false;
+    }
+
+    // Located nodes
+
+    @Override
+    public boolean visit(ClassInstanceCreation node) {
+        var type = ApiCall.APICallType.ClassInstanceCreation;
+
+        // The qualified name of an anonymous type is empty
+        if (node.getAnonymousClassDeclaration() != null) {
+            fd.addApiCall(node, "", type);
+            return true;
+        }
+
+        if (node.getExpression() != null) {
+            undecide(node);
+            return true;
+        }
+
+        var typeName = resolveType(node.getType());
+        if (typeName == null) {
+            if (couldBeMapped(TypeIndex.typeText(node.getType()))) undecide(node);
+            return true;
+        }
+
+        fd.addApiCall(node, getQualifiedName(typeName), type);
+        return true;
+    }
+
+    @Override
+    public boolean visit(MethodInvocation node) {
+        var resolution = resolveMethod(node);
+
+        if (resolution.undecided()) undecide(node);
+        else if (resolution.member() != ClassFileIndex.Member.NONE)
+            fd.addApiCall(node, resolution.member().declaringClass() + "." + node.getName(), ApiCall.APICallType.MethodInvocation);
+
+        return true;
+    }
+
+    // Instance field access
+    @Override
+    public boolean visit(FieldAccess node) {
+        var member = findField(node.getExpression(), node.getName().getIdentifier());
+
+        if (member == null) undecide(node);
+        else if (member != ClassFileIndex.Member.NONE)
+            fd.addApiCall(node, member.declaringClass() + "." + node.getName().getIdentifier(), ApiCall.APICallType.FieldAccess);
+
+        return true;
+    }
+
+    // Static field access
+    @Override
+    public boolean visit(QualifiedName node) {
+        if (isTypeOrPackageName(node)) return true;
+
+        var meaning = classify(node);
+        if (meaning.kind() == Kind.UNKNOWN) undecide(node);
+        else if (meaning.kind() == Kind.VARIABLE && meaning.declaringClass() != null)
+            fd.addApiCall(node, meaning.declaringClass() + "." + node.getName().getIdentifier(), ApiCall.APICallType.FieldAccess);
+
+        return true;
+    }
+
+    @Override
+    public boolean visit(MarkerAnnotation node) {
+        visitAnnotation(node);
+        return true;
+    }
+
+    @Override
+    public boolean visit(SingleMemberAnnotation node) {
+        visitAnnotation(node);
+        return true;
+    }
+
+    @Override
+    public boolean visit(NormalAnnotation node) {
+        visitAnnotation(node);
+        return true;
+    }
+
+    // Handles all the different annotation types
+    private void visitAnnotation(Annotation node) {
+        var text = node.getTypeName().getFullyQualifiedName();
+        var typeName = resolveTypeName(text);
+
+        if (typeName == null) {
+            if (couldBeMapped(text)) undecide(node);
+            return;
+        }
+
+        fd.addApiCall(node, getQualifiedName(typeName), ApiCall.APICallType.Annotation);
+    }
+
+    private void undecide(ASTNode node) {
+        undecided = true;
+        logger.debug("Undecided node in " + fd.getFilePath() + ": " + node.toString().replace('\n', ' '));
+    }
+
+    // Resolution of types
+
+    /**
+     * @return The qualified name or key of a type of the AST, null if it can't be resolved
+     */
+    private String resolveType(Type type) {
+        return resolveTypeName(TypeIndex.typeText(type));
+    }
+
+    private String resolveTypeName(String text) {
+        return typeIndex.resolveTypeName(text, this::resolveSimpleType);
+    }
+
+    /**
+     * Resolves a simple type name in the current scope: type parameters, local types and the member types of the
+     * enclosing types, then the types of the file, the imports and the package.
+     */
+    private String resolveSimpleType(String name) {
+        for (var s = scope; s != null; s = s.parent) {
+            if (s.typeParameters.containsKey(name)) return s.typeParameters.get(name);
+            if (s.localTypes.containsKey(name)) return s.localTypes.get(name);
+
+            if (s.type != null) {
+                var resolved = typeIndex.resolveMemberType(name, s.type);
+                if (resolved != null) return resolved;
+            }
+        }
+
+        return typeIndex.resolveFileType(name, file);
+    }
+
+    /**
+     * @return True if a type name that can't be resolved could refer to a mapped type
+     */
+    private boolean couldBeMapped(String text) {
+        if (text == null) return true;
+
+        var simpleName = text.contains(".") ? text.substring(0, text.indexOf('.')) : text;
+        var rest = text.substring(simpleName.length());
+
+        if (apiMappings.couldMatch(text)) return true;
+        if (file.singleImports.containsKey(simpleName) && apiMappings.couldMatch(file.singleImports.get(simpleName) + rest))
+            return true;
+        if (apiMappings.couldMatch(file.qualify(simpleName) + rest)) return true;
+
+        for (var pkg : file.onDemandImports) {
+            if (apiMappings.couldMatch(pkg + "." + simpleName + rest)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The qualified name of a type as reported by the bindings, empty for local and anonymous types
+     */
+    private String getQualifiedName(String type) {
+        var localType = localTypes.get(type);
+        return localType != null ? localType.name : type;
+    }
+
+    // Resolution of members
+
+    /**
+     * Resolves the type declaring the invoked method and its return type.
+     */
+    private Resolution resolveMethod(MethodInvocation node) {
+        var resolution = resolvedMethods.get(node);
+        if (resolution != null) return resolution;
+
+        var name = node.getName().getIdentifier();
+        var expression = node.getExpression();
+
+        ClassFileIndex.Member member;
+        if (expression == null) {
+            member = findUnqualifiedMethod(name);
+        } else if (expression instanceof Name qualifier) {
+            var meaning = classify(qualifier);
+            member = switch (meaning.kind()) {
+                case TYPE -> findMethod(meaning.type(), name);
+                case VARIABLE -> isUnmappedMemberOfUnknownType(qualifier, name) ? ClassFileIndex.Member.NONE
+                        : findMethod(meaning.type(), name);
+                default -> null;
+            };
+        } else {
+            member = isUnmappedMemberOfUnknownType(expression, name) ? ClassFileIndex.Member.NONE
+                    : findMethod(typeOf(expression), name);
+        }
+
+        resolution = new Resolution(member);
+        resolvedMethods.put(node, resolution);
+        return resolution;
+    }
+
+    /**
+     * Finds a method called by its simple name: in the innermost enclosing type that has a method of this name,
+     * otherwise in the static imports.
+     */
+    private ClassFileIndex.Member findUnqualifiedMethod(String name) {
+        for (var s = scope; s != null; s = s.parent) {
+            if (s.type == null) continue;
+
+            var member = findMember(s.type, name, true);
+            if (member != ClassFileIndex.Member.NONE) return member;
+        }
+
+        return findStaticImport(name, true);
+    }
+
+    /**
+     * Finds a field accessed by its simple name, see {@link #findUnqualifiedMethod(String)}.
+     * Local variables are checked by the caller.
+     */
+    private ClassFileIndex.Member findUnqualifiedField(String name) {
+        for (var s = scope; s != null; s = s.parent) {
+            if (s.variables.containsKey(name)) return new ClassFileIndex.Member(null, s.variables.get(name));
+            if (s.type == null) continue;
+
+            var member = findMember(s.type, name, false);
+            if (member != ClassFileIndex.Member.NONE) return member;
+        }
+
+        return findStaticImport(name, false);
+    }
+
+    private ClassFileIndex.Member findStaticImport(String name, boolean method) {
+        var type = file.staticImports.get(name);
+        if (type != null) {
+            var member = method ? findMethod(type, name) : findField(type, name);
+            if (member != ClassFileIndex.Member.NONE) return member;
+        }
+
+        for (var onDemand : file.staticOnDemandImports) {
+            var member = method ? findMethod(onDemand, name) : findField(onDemand, name);
+            if (member != ClassFileIndex.Member.NONE) return member;
+        }
+
+        return ClassFileIndex.Member.NONE;
+    }
+
+    /**
+     * Checks whether a member accessed on a value of an unknown type can't be mapped. This is the case for the
+     * values of fields and methods that were found, but whose type is a type variable or ambiguous, if no mapped
+     * type declares a member of the name. Values of other unknown types, e.g. of missing classes, are not decided.
+     */
+    private boolean isUnmappedMemberOfUnknownType(Expression expression, String name) {
+        if (typeIndex.couldDeclareMappedMember(name) || typeOf(expression) != null) return false;
+
+        while (expression instanceof ParenthesizedExpression parenthesized) expression = parenthesized.getExpression();
+
+        if (expression instanceof Name qualifier) {
+            var meaning = classify(qualifier);
+            return meaning.kind() == Kind.VARIABLE && meaning.declaringClass() != null;
+        }
+
+        if (expression instanceof MethodInvocation invocation) {
+            var member = resolveMethod(invocation).member();
+            return member != null && member != ClassFileIndex.Member.NONE;
+        }
+
+        if (expression instanceof FieldAccess fieldAccess) {
+            var member = findField(fieldAccess.getExpression(), fieldAccess.getName().getIdentifier());
+            return member != null && member != ClassFileIndex.Member.NONE;
+        }
+
+        return false;
+    }
+
+    private ClassFileIndex.Member findMethod(String type, String name) {
+        return typeIndex.findMethod(type, name, localTypes);
+    }
+
+    private ClassFileIndex.Member findField(Expression expression, String name) {
+        return isUnmappedMemberOfUnknownType(expression, name) ? ClassFileIndex.Member.NONE : findField(typeOf(expression), name);
+    }
+
+    private ClassFileIndex.Member findField(String type, String name) {
+        if (type != null && type.endsWith("[]")) return name.equals("length") ? ClassFileIndex.Member.NONE : null;
+        return typeIndex.findField(type, name, localTypes);
+    }
+
+    private ClassFileIndex.Member findMember(TypeIndex.DeclaredType type, String name, boolean method) {
+        return method ? findMethod(type.key, name) : findField(type.key, name);
+    }
+
+    // Meaning of names
+
+    /**
+     * Classifies a name in an expression like the compiler does: a variable before a type before a package.
+     */
+    private Meaning classify(Name name) {
+        if (name instanceof SimpleName simpleName) {
+            var identifier = simpleName.getIdentifier();
+
+            var field = findUnqualifiedField(identifier);
+            if (field == null) return Meaning.UNKNOWN;
+            if (field != ClassFileIndex.Member.NONE) return new Meaning(Kind.VARIABLE, field.type(), field.declaringClass());
+
+            var type = resolveSimpleType(identifier);
+            if (type != null) return new Meaning(Kind.TYPE, type, null);
+
+            return new Meaning(Kind.PACKAGE, identifier, null);
+        }
+
+        var qualifiedName = (QualifiedName) name;
+        var identifier = qualifiedName.getName().getIdentifier();
+        var qualifier = classify(qualifiedName.getQualifier());
+
+        switch (qualifier.kind()) {
+            case PACKAGE -> {
+                var type = qualifier.type() + "." + identifier;
+                return new Meaning(typeIndex.exists(type) ? Kind.TYPE : Kind.PACKAGE, type, null);
+            }
+            case TYPE, VARIABLE -> {
+                if (qualifier.type() == null) {
+                    // Not a mapped field, but its own type and declaring type stay unknown
+                    var unmapped = qualifier.kind() == Kind.VARIABLE && qualifier.declaringClass() != null
+                            && !typeIndex.couldDeclareMappedMember(identifier);
+                    return unmapped ? new Meaning(Kind.VARIABLE, null, null) : Meaning.UNKNOWN;
+                }
+
+                var field = findField(qualifier.type(), identifier);
+                if (field == null) return Meaning.UNKNOWN;
+                if (field != ClassFileIndex.Member.NONE) return new Meaning(Kind.VARIABLE, field.type(), field.declaringClass());
+
+                // Array lengths have no declaring type, member types are only accessed through types
+                if (qualifier.type().endsWith("[]")) return new Meaning(Kind.VARIABLE, "int", null);
+                if (qualifier.kind() == Kind.TYPE) return new Meaning(Kind.TYPE, qualifier.type() + "." + identifier, null);
+                return Meaning.UNKNOWN;
+            }
+            default -> {
+                return Meaning.UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * @return True if the name is part of the name of a type, a package or a module
+     */
+    private static boolean isTypeOrPackageName(Name name) {
+        ASTNode node = name;
+        while (node.getLocationInParent() == QualifiedName.QUALIFIER_PROPERTY) node = node.getParent();
+
+        var parent = node.getParent();
+        return parent instanceof Type || parent instanceof Annotation && node.getLocationInParent() != SingleMemberAnnotation.VALUE_PROPERTY
+                || node.getLocationInParent() == ThisExpression.QUALIFIER_PROPERTY
+                || node.getLocationInParent() == SuperFieldAccess.QUALIFIER_PROPERTY
+                || node.getLocationInParent() == SuperMethodInvocation.QUALIFIER_PROPERTY
+                || node.getLocationInParent() == SuperMethodReference.QUALIFIER_PROPERTY
+                || parent instanceof ModuleDirective;
+    }
+
+    /**
+     * Determines the type of an expression.
+     *
+     * @return The qualified name or key of the type, or null if it is unknown
+     */
+    private String typeOf(Expression expression) {
+        if (expression instanceof Name name) {
+            var meaning = classify(name);
+            return meaning.kind() == Kind.VARIABLE ? meaning.type() : null;
+        }
+
+        if (expression instanceof MethodInvocation invocation) {
+            var member = resolveMethod(invocation).member();
+            return member == null ? null : member.type();
+        }
+
+        if (expression instanceof FieldAccess fieldAccess) {
+            var member = findField(fieldAccess.getExpression(), fieldAccess.getName().getIdentifier());
+            return member == null ? null : member.type();
+        }
+
+        if (expression instanceof ThisExpression thisExpression) {
+            if (thisExpression.getQualifier() != null) return resolveTypeName(thisExpression.getQualifier().getFullyQualifiedName());
+
+            var type = getEnclosingType();
+            return type == null ? null : type.key;
+        }
+
+        if (expression instanceof ParenthesizedExpression parenthesized) return typeOf(parenthesized.getExpression());
+        if (expression instanceof Assignment assignment) return typeOf(assignment.getLeftHandSide());
+        if (expression instanceof CastExpression cast) return resolveType(cast.getType());
+        if (expression instanceof ClassInstanceCreation creation) return resolveType(creation.getType());
+        if (expression instanceof StringLiteral || expression instanceof TextBlock) return "java.lang.String";
+        if (expression instanceof TypeLiteral) return "java.lang.Class";
+        if (expression instanceof ArrayCreation creation) return resolveType(creation.getType());
+
+        if (expression instanceof ArrayAccess access) {
+            var arrayType = typeOf(access.getArray());
+            return arrayType != null && arrayType.endsWith("[]") ? arrayType.substring(0, arrayType.length() - 2) : null;
+        }
+
+        if (expression instanceof InfixExpression infix && infix.getOperator() == InfixExpression.Operator.PLUS) {
+            var left = typeOf(infix.getLeftOperand());
+            var right = typeOf(infix.getRightOperand());
+            return "java.lang.String".equals(left) || "java.lang.String".equals(right) ? "java.lang.String" : null;
+        }
+
+        return null;
+    }
+
+    // Scope handling
+
+    private void enterType(AbstractTypeDeclaration node) {
+        var enclosing = getEnclosingType();
+
+        TypeIndex.DeclaredType type = null;
+        if (node.isMemberTypeDeclaration() && enclosing != null && !enclosing.name.isEmpty()) {
+            type = typeIndex.getDeclaredType(enclosing.key + "." + node.getName().getIdentifier());
+        } else if (node.isPackageMemberTypeDeclaration()) {
+            type = typeIndex.getDeclaredType(file.qualify(node.getName().getIdentifier()));
+        }
+
+        if (type != null) {
+            enterScope();
+            scope.type = type;
+            return;
+        }
+
+        // Local types and member types of local types aren't indexed, their qualified name is empty
+        var key = node.isLocalTypeDeclaration() ? "#" + localTypes.size() : enclosing != null ? enclosing.key + "." + node.getName().getIdentifier()
+                : file.qualify(node.getName().getIdentifier());
+        var name = node.isLocalTypeDeclaration() || enclosing != null && enclosing.name.isEmpty() ? "" : key;
+
+        enterLocalType(TypeIndex.DeclaredType.of(node, name, key, file, enclosing));
+    }
+
+    private void enterLocalType(TypeIndex.DeclaredType type) {
+        localTypes.put(type.key, type);
+
+        // Resolve the super types and members in the scope of the declaration
+        type.resolved = true;
+        for (var superType : type.superTypes) {
+            var resolved = resolveTypeName(superType);
+            if (resolved == null) type.unresolvedSuperTypes = true;
+            else type.superTypeNames.add(resolved);
+        }
+
+        enterScope();
+        scope.type = type;
+
+        type.typeParameters.forEach((name, bound) -> {
+            var resolvedBound = resolveTypeName(bound);
+            if (resolvedBound != null) type.typeParameterBounds.put(name, resolvedBound);
+        });
+        type.fields.forEach((name, text) -> type.fieldTypes.put(name, memberType(text, type)));
+        type.methods.forEach((name, texts) -> {
+            var returnTypes = texts.stream().map(text -> memberType(text, type)).distinct().toList();
+            type.methodTypes.put(name, returnTypes.size() == 1 ? returnTypes.get(0) : null);
+        });
+    }
+
+    /**
+     * @return The type of a member of a local type, null if it is a type variable in scope, as only its bound is known
+     */
+    private String memberType(String text, TypeIndex.DeclaredType type) {
+        if (TypeIndex.isTypeVariable(text, type)) return null;
+
+        for (var s = scope; s != null; s = s.parent) {
+            if (s.typeParameters.containsKey(text)) return null;
+        }
+
+        return resolveTypeName(text);
+    }
+
+    private TypeIndex.DeclaredType getEnclosingType() {
+        for (var s = scope; s != null; s = s.parent) {
+            if (s.type != null) return s.type;
+        }
+
+        return null;
+    }
+
+    private void declareVariable(String name, String type) {
+        if (scope != null) scope.variables.put(name, type);
+    }
+
+    private void declareTypeParameter(TypeParameter parameter) {
+        var bounds = parameter.typeBounds();
+        var bound = bounds.isEmpty() ? TypeIndex.OBJECT : resolveType((Type) bounds.get(0));
+        scope.typeParameters.put(parameter.getName().getIdentifier(), bound != null ? bound : TypeIndex.OBJECT);
+    }
+
+    private void enterScope() {
+        savedScopes.push(scope == null ? Scope.ROOT : scope);
+        scope = new Scope(scope);
+    }
+
+    private void leaveScope() {
+        var saved = savedScopes.pop();
+        scope = saved == Scope.ROOT ? null : saved;
+    }
+
+    /**
+     * A lexical scope: the body of a type, a method, a block or a statement declaring variables.
+     */
+    private static final class Scope {
+        private static final Scope ROOT = new Scope(null);
+
+        private final Scope parent;
+        private TypeIndex.DeclaredType type = null;
+
+        // Local variables mapped to their type, null if unknown
+        private final Map<String, String> variables = new HashMap<>();
+        private final Map<String, String> typeParameters = new HashMap<>();
+        private final Map<String, String> localTypes = new HashMap<>();
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+    }
+
+    private enum Kind {
+        VARIABLE,
+        TYPE,
+        PACKAGE,
+        UNKNOWN,
+    }
+
+    /**
+     * The meaning of a name in an expression.
+     *
+     * @param kind           Whether the name is a variable, a type or a package.
+     * @param type           The type of the variable, the type itself or the package name.
+     * @param declaringClass The type declaring the field, null for local variables.
+     */
+    private record Meaning(Kind kind, String type, String declaringClass) {
+        private static final Meaning UNKNOWN = new Meaning(Kind.UNKNOWN, null, null);
+    }
+
+    /**
+     * The resolved method of an invocation.
+     *
+     * @param member The declaring type and the return type, {@link ClassFileIndex.Member#NONE} if the method
+     *               doesn't exist, or null if it can't be decided.
+     */
+    private record Resolution(ClassFileIndex.Member member) {
+        private boolean undecided() {
+            return member == null;
+        }
+    }
+}
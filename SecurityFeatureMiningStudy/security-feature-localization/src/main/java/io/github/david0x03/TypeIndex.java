@@ -0,0 +1,641 @@
+package io.github.david0x03;
+
+import io.github.david0x03.mappings.ApiMappings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.ArrayType;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.IntersectionType;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NameQualifiedType;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.RecordDeclaration;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.TypeParameter;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.WildcardType;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * The types of a project and its class path, resolved without a binding environment for the {@link SyntacticVisitor}.
+ * <p>
+ * The types declared in the sources are read from ASTs parsed without method bodies, their names are resolved
+ * like the compiler does: type parameters and member types of the enclosing and inherited types first, then the
+ * types of the file, the single type imports, the package and the on-demand imports. Library types are looked up in
+ * the {@link ClassFileIndex}. Names that don't resolve to exactly one existing type are unknown.
+ * The index is immutable once built and shared by all parsers of a run.
+ */
+public class TypeIndex implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(TypeIndex.class);
+
+    static final String OBJECT = "java.lang.Object";
+
+    private final ClassFileIndex classFiles;
+    private final Map<String, DeclaredType> declaredTypes = new ConcurrentHashMap<>();
+
+    // The names of all fields and methods declared by mapped types
+    private final Set<String> mappedMemberNames = new HashSet<>();
+
+    private TypeIndex(ClassFileIndex classFiles) {
+        this.classFiles = classFiles;
+    }
+
+    /**
+     * Indexes the types declared in the files of a project, parsing them in parallel without method bodies.
+     *
+     * @param files       The Java files of all sources of the project.
+     * @param classpath   The class path of the project.
+     * @param javaVersion The Java source version, or null for the fallback of Java 1.8.
+     * @param apiMappings The API mappings, whose types are searched for their member names.
+     * @param parallelism The number of parallel parsers.
+     * @return The type index, which has to be closed after the run.
+     */
+    public static TypeIndex build(Collection<String> files, List<Path> classpath, String javaVersion, ApiMappings apiMappings,
+                                  int parallelism) {
+        var index = new TypeIndex(new ClassFileIndex(classpath));
+
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(javaVersion != null ? javaVersion : JavaCore.VERSION_1_8, options);
+
+        var sources = files.toArray(String[]::new);
+        var chunkCount = Math.max(1, Math.min(parallelism, sources.length));
+        var chunkSize = Math.max(1, (sources.length + chunkCount - 1) / chunkCount);
+        var pool = new ForkJoinPool(chunkCount);
+
+        try {
+            var tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int from = 0; from < sources.length; from += chunkSize) {
+                var chunk = Arrays.copyOfRange(sources, from, Math.min(from + chunkSize, sources.length));
+                tasks.add(pool.submit(() -> index.indexFiles(chunk, options)));
+            }
+
+            for (var task : tasks) task.join();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Resolved in a single thread once all types are known, so the index is immutable afterwards
+        for (var type : index.declaredTypes.values()) index.resolve(type);
+        index.collectMappedMemberNames(apiMappings);
+
+        logger.info("Type index: " + index.declaredTypes.size() + " type(s) declared in " + sources.length + " file(s), "
+                + index.mappedMemberNames.size() + " member name(s) of mapped types");
+        return index;
+    }
+
+    /**
+     * Collects the names of the fields and methods declared by the types within the mapped namespaces, from the
+     * class path, the JDK and the project. The last part of each namespace is included as well, as it can be a member.
+     */
+    private void collectMappedMemberNames(ApiMappings apiMappings) {
+        String previous = null;
+
+        for (var namespace : apiMappings.getCategorizedPaths()) {
+            mappedMemberNames.add(namespace.substring(namespace.lastIndexOf('.') + 1));
+
+            // The types of a nested namespace were already collected with the enclosing one
+            if (previous != null && namespace.startsWith(previous + ".")) continue;
+            previous = namespace;
+
+            for (var typeName : classFiles.findTypes(namespace)) {
+                var info = classFiles.getClass(typeName);
+                if (info == null) continue;
+
+                mappedMemberNames.addAll(info.fields().keySet());
+                mappedMemberNames.addAll(info.methods().keySet());
+            }
+
+            for (var type : declaredTypes.values()) {
+                if (!type.key.equals(namespace) && !type.key.startsWith(namespace + ".")) continue;
+
+                mappedMemberNames.addAll(type.fields.keySet());
+                mappedMemberNames.addAll(type.methods.keySet());
+            }
+        }
+    }
+
+    /**
+     * Checks whether a type within a mapped namespace declares a field or method of the given name. If not, an
+     * access of the member can't be mapped, whatever type it is accessed on.
+     *
+     * @param name The simple name of the field or method.
+     * @return True if a mapped type could declare the member.
+     */
+    boolean couldDeclareMappedMember(String name) {
+        return mappedMemberNames.contains(name);
+    }
+
+    private void indexFiles(String[] files, Map<String, String> options) {
+        var parser = ASTParser.newParser(AST.getJLSLatest());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(false);
+        parser.setIgnoreMethodBodies(true);
+        parser.setCompilerOptions(new HashMap<>(options));
+        parser.setEnvironment(new String[0], new String[0], null, false);
+
+        parser.createASTs(files, null, new String[0], new FileASTRequestor() {
+            @Override
+            public void acceptAST(String source, CompilationUnit cu) {
+                var file = FileContext.of(cu);
+                for (var type : (List<?>) cu.types()) indexType((AbstractTypeDeclaration) type, file, null);
+            }
+        }, new NullProgressMonitor());
+    }
+
+    private void indexType(AbstractTypeDeclaration node, FileContext file, DeclaredType enclosing) {
+        var name = (enclosing != null ? enclosing.key : file.qualify(node.getName().getIdentifier()));
+        if (enclosing != null) name += "." + node.getName().getIdentifier();
+
+        var type = DeclaredType.of(node, name, name, file, enclosing);
+        declaredTypes.putIfAbsent(name, type);
+
+        for (var declaration : (List<?>) node.bodyDeclarations()) {
+            if (declaration instanceof AbstractTypeDeclaration member) indexType(member, file, type);
+        }
+    }
+
+    /**
+     * Checks whether a type is declared in the project or exists on the class path.
+     *
+     * @param qualifiedName The qualified name of the type.
+     * @return True if the type exists.
+     */
+    public boolean exists(String qualifiedName) {
+        return declaredTypes.containsKey(qualifiedName) || classFiles.exists(qualifiedName);
+    }
+
+    /**
+     * @param qualifiedName The qualified name of a type.
+     * @return The type if it is declared in the sources of the project, otherwise null
+     */
+    DeclaredType getDeclaredType(String qualifiedName) {
+        return declaredTypes.get(qualifiedName);
+    }
+
+    /**
+     * Finds the type declaring a method, see {@link ClassFileIndex#findMethod(String, String)}.
+     *
+     * @param type       The qualified name or key of the type the method is called on.
+     * @param methodName The name of the method.
+     * @param localTypes The local and anonymous types of the file by their key.
+     * @return The declaring type and the return type, {@link ClassFileIndex.Member#NONE} if no type of the hierarchy
+     * declares it, or null if a type of the hierarchy is unknown.
+     */
+    ClassFileIndex.Member findMethod(String type, String methodName, Map<String, DeclaredType> localTypes) {
+        return findMember(type, methodName, true, localTypes, new HashSet<>());
+    }
+
+    /**
+     * Finds the type declaring a field, see {@link ClassFileIndex#findField(String, String)}.
+     *
+     * @param type       The qualified name or key of the type the field is accessed on.
+     * @param fieldName  The name of the field.
+     * @param localTypes The local and anonymous types of the file by their key.
+     * @return The declaring type and the type of the field, {@link ClassFileIndex.Member#NONE} if no type of the
+     * hierarchy declares it, or null if a type of the hierarchy is unknown.
+     */
+    ClassFileIndex.Member findField(String type, String fieldName, Map<String, DeclaredType> localTypes) {
+        return findMember(type, fieldName, false, localTypes, new HashSet<>());
+    }
+
+    private ClassFileIndex.Member findMember(String type, String name, boolean method, Map<String, DeclaredType> localTypes,
+                                             Set<String> visited) {
+        if (type == null || isPrimitive(type)) return null;
+
+        // Arrays have the methods of Object, like the bindings clone is declared by Object but returns the array type
+        if (type.endsWith("[]")) {
+            if (!method) return null;
+            return name.equals("clone") ? new ClassFileIndex.Member(OBJECT, type) : classFiles.findMethod(OBJECT, name);
+        }
+
+        var declaredType = declaredTypes.get(type);
+        if (declaredType == null) declaredType = localTypes.get(type);
+        if (declaredType == null) return method ? classFiles.findMethod(type, name) : classFiles.findField(type, name);
+
+        if (!visited.add(declaredType.key)) return ClassFileIndex.Member.NONE;
+
+        var members = method ? declaredType.methodTypes : declaredType.fieldTypes;
+        if (members.containsKey(name)) return new ClassFileIndex.Member(declaredType.name, members.get(name));
+
+        for (var superType : declaredType.superTypeNames) {
+            if (!method && superType.equals(OBJECT)) continue;
+
+            var member = findMember(superType, name, method, localTypes, visited);
+            if (member != ClassFileIndex.Member.NONE) return member;
+        }
+
+        return declaredType.unresolvedSuperTypes ? null : ClassFileIndex.Member.NONE;
+    }
+
+    /**
+     * Resolves a simple type name in a declared type: its type parameters, its member types and the member types
+     * it inherits. The enclosing types and the file are not searched.
+     *
+     * @param name The simple name.
+     * @param type The declared type.
+     * @return The qualified name or key of the type, or null if it is not declared in the type.
+     */
+    String resolveMemberType(String name, DeclaredType type) {
+        if (type.typeParameters.containsKey(name)) return type.typeParameterBounds.getOrDefault(name, OBJECT);
+        if (type.memberTypes.contains(name)) return type.key + "." + name;
+
+        for (var superType : type.superTypeNames) {
+            var declaredSuperType = declaredTypes.get(superType);
+            if (declaredSuperType != null ? declaredSuperType.memberTypes.contains(name) : classFiles.exists(superType + "." + name))
+                return superType + "." + name;
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolves a simple type name on the level of a file: the types declared in the file, the single type imports,
+     * the package and the on-demand imports including java.lang.
+     *
+     * @param name The simple name.
+     * @param file The file the name is used in.
+     * @return The qualified name of the type, or null if it doesn't resolve to exactly one existing type.
+     */
+    String resolveFileType(String name, FileContext file) {
+        var topLevel = file.topLevelTypes.get(name);
+        if (topLevel != null) return topLevel;
+
+        var imported = file.singleImports.get(name);
+        if (imported != null) return imported;
+
+        var samePackage = file.qualify(name);
+        if (exists(samePackage)) return samePackage;
+
+        String match = null;
+        for (var pkg : file.onDemandImports) {
+            var candidate = pkg + "." + name;
+            if (!exists(candidate)) continue;
+
+            // Ambiguous names are compile errors, which are left to the binding resolution
+            if (match != null && !match.equals(candidate)) return null;
+            match = candidate;
+        }
+
+        return match;
+    }
+
+    /**
+     * Resolves a type name as written in the source code, e.g. "Map.Entry[]" or "java.util.List".
+     *
+     * @param text      The type name without type arguments.
+     * @param firstName Resolves the first simple name of the type name in its scope.
+     * @return The qualified name or key of the type, or null if it can't be resolved.
+     */
+    String resolveTypeName(String text, Function<String, String> firstName) {
+        if (text == null) return null;
+
+        var dimensions = "";
+        var arrayStart = text.indexOf('[');
+        if (arrayStart >= 0) {
+            dimensions = text.substring(arrayStart);
+            text = text.substring(0, arrayStart);
+        }
+
+        if (isPrimitive(text)) return text + dimensions;
+
+        var separator = text.indexOf('.');
+        var first = firstName.apply(separator < 0 ? text : text.substring(0, separator));
+        if (first != null) return (separator < 0 ? first : first + text.substring(separator)) + dimensions;
+
+        // A fully qualified name
+        return separator >= 0 && exists(text) ? text + dimensions : null;
+    }
+
+    /**
+     * Resolves a type name within a declared type, searching the type, its enclosing types and its file.
+     */
+    String resolveTypeName(String text, DeclaredType type) {
+        return resolveTypeName(text, name -> resolveSimpleType(name, type));
+    }
+
+    private String resolveSimpleType(String name, DeclaredType type) {
+        for (var t = type; t != null; t = t.enclosing) {
+            var resolved = resolveMemberType(name, t);
+            if (resolved != null) return resolved;
+        }
+
+        return resolveFileType(name, type.file);
+    }
+
+    /**
+     * Resolves the super types and the types of the members of a declared type. The super types are resolved in the
+     * enclosing type, as the members of the type itself are not in scope of its declaration.
+     *
+     * @param type The declared type, which is resolved only once.
+     */
+    void resolve(DeclaredType type) {
+        if (type.resolved) return;
+        type.resolved = true;
+
+        for (var bound : type.typeParameters.entrySet()) {
+            var resolvedBound = resolveTypeName(bound.getValue(), name -> name.equals(bound.getKey()) ? null
+                    : type.enclosing != null ? resolveSimpleType(name, type.enclosing) : resolveFileType(name, type.file));
+            if (resolvedBound != null) type.typeParameterBounds.put(bound.getKey(), resolvedBound);
+        }
+
+        for (var superType : type.superTypes) {
+            var resolved = resolveTypeName(superType, name -> type.typeParameters.containsKey(name) ? null
+                    : type.enclosing != null ? resolveSimpleType(name, type.enclosing) : resolveFileType(name, type.file));
+
+            if (resolved == null) type.unresolvedSuperTypes = true;
+            else type.superTypeNames.add(resolved);
+        }
+
+        // Resolve the super types first, their member types can be used in the members of this type
+        for (var superType : type.superTypeNames) {
+            var declaredSuperType = declaredTypes.get(superType);
+            if (declaredSuperType != null) resolve(declaredSuperType);
+        }
+
+        type.fields.forEach((name, text) -> type.fieldTypes.put(name, isTypeVariable(text, type) ? null : resolveTypeName(text, type)));
+        type.methods.forEach((name, texts) -> {
+            var returnTypes = texts.stream().map(text -> isTypeVariable(text, type) ? null : resolveTypeName(text, type)).distinct().toList();
+            type.methodTypes.put(name, returnTypes.size() == 1 ? returnTypes.get(0) : null);
+        });
+    }
+
+    /**
+     * @return True if the type of a member is a type variable of its type or an enclosing type, only its bound is
+     * known but not the type of the actual value
+     */
+    static boolean isTypeVariable(String text, DeclaredType type) {
+        for (var t = type; t != null; t = t.enclosing) {
+            if (t.typeParameters.containsKey(text)) return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void close() {
+        classFiles.close();
+    }
+
+    static boolean isPrimitive(String type) {
+        return switch (type) {
+            case "boolean", "byte", "char", "short", "int", "long", "float", "double", "void" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Converts a type of the AST to its name as written in the source code, without type arguments.
+     *
+     * @param type The type.
+     * @return The name, e.g. "Map.Entry" or "int[]", or null for union types.
+     */
+    static String typeText(Type type) {
+        if (type == null) return null;
+
+        if (type instanceof PrimitiveType primitiveType) return primitiveType.getPrimitiveTypeCode().toString();
+        if (type instanceof ArrayType arrayType) {
+            var element = typeText(arrayType.getElementType());
+            return element == null ? null : element + "[]".repeat(arrayType.getDimensions());
+        }
+        if (type instanceof ParameterizedType parameterizedType) return typeText(parameterizedType.getType());
+        if (type instanceof SimpleType simpleType) return simpleType.getName().getFullyQualifiedName();
+        if (type instanceof QualifiedType qualifiedType) {
+            var qualifier = typeText(qualifiedType.getQualifier());
+            return qualifier == null ? null : qualifier + "." + qualifiedType.getName().getIdentifier();
+        }
+        if (type instanceof NameQualifiedType nameQualifiedType)
+            return nameQualifiedType.getQualifier().getFullyQualifiedName() + "." + nameQualifiedType.getName().getIdentifier();
+        if (type instanceof IntersectionType intersectionType) return typeText((Type) intersectionType.types().get(0));
+        if (type instanceof WildcardType wildcardType)
+            return wildcardType.getBound() != null && wildcardType.isUpperBound() ? typeText(wildcardType.getBound()) : OBJECT;
+
+        return null;
+    }
+
+    /**
+     * The package and the imports of a file.
+     */
+    static final class FileContext {
+        final String packageName;
+        final Map<String, String> singleImports = new HashMap<>();
+        final List<String> onDemandImports = new ArrayList<>();
+        final Map<String, String> staticImports = new HashMap<>();
+        final List<String> staticOnDemandImports = new ArrayList<>();
+        final Map<String, String> topLevelTypes = new HashMap<>();
+
+        private FileContext(String packageName) {
+            this.packageName = packageName;
+        }
+
+        /**
+         * Reads the package, the imports and the top level types of a compilation unit.
+         *
+         * @param cu The compilation unit.
+         * @return The context of the file.
+         */
+        static FileContext of(CompilationUnit cu) {
+            var file = new FileContext(cu.getPackage() == null ? "" : cu.getPackage().getName().getFullyQualifiedName());
+
+            for (var object : (List<?>) cu.imports()) {
+                var importDeclaration = (ImportDeclaration) object;
+                var name = importDeclaration.getName().getFullyQualifiedName();
+
+                if (importDeclaration.isStatic()) {
+                    if (importDeclaration.isOnDemand()) file.staticOnDemandImports.add(name);
+                    else file.staticImports.put(name.substring(name.lastIndexOf('.') + 1), name.substring(0, name.lastIndexOf('.')));
+                } else {
+                    if (importDeclaration.isOnDemand()) file.onDemandImports.add(name);
+                    else file.singleImports.put(name.substring(name.lastIndexOf('.') + 1), name);
+                }
+            }
+
+            file.onDemandImports.add("java.lang");
+
+            for (var type : (List<?>) cu.types()) {
+                var name = ((AbstractTypeDeclaration) type).getName().getIdentifier();
+                file.topLevelTypes.put(name, file.qualify(name));
+            }
+
+            return file;
+        }
+
+        /**
+         * @return The qualified name of a type in the package of the file
+         */
+        String qualify(String name) {
+            return packageName.isEmpty() ? name : packageName + "." + name;
+        }
+    }
+
+    /**
+     * A type declared in the source code, either indexed for the whole project or a local or anonymous type
+     * created by the visitor of its file.
+     */
+    static final class DeclaredType {
+        final String name;
+        final String key;
+        final FileContext file;
+        final DeclaredType enclosing;
+
+        // As written in the source code
+        final Map<String, String> typeParameters = new LinkedHashMap<>();
+        final List<String> superTypes = new ArrayList<>();
+        final Map<String, String> fields = new HashMap<>();
+        final Map<String, List<String>> methods = new HashMap<>();
+        final Set<String> memberTypes = new HashSet<>();
+
+        // Resolved by the index
+        boolean resolved = false;
+        boolean unresolvedSuperTypes = false;
+        final List<String> superTypeNames = new ArrayList<>();
+        final Map<String, String> typeParameterBounds = new HashMap<>();
+        final Map<String, String> fieldTypes = new HashMap<>();
+        final Map<String, String> methodTypes = new HashMap<>();
+
+        private DeclaredType(String name, String key, FileContext file, DeclaredType enclosing) {
+            this.name = name;
+            this.key = key;
+            this.file = file;
+            this.enclosing = enclosing;
+        }
+
+        /**
+         * Reads the declaration of a named type.
+         *
+         * @param node      The type declaration.
+         * @param name      The qualified name of the type, empty for local types.
+         * @param key       The key identifying the type.
+         * @param file      The file the type is declared in.
+         * @param enclosing The named type the declaration is nested in, or null.
+         * @return The declared type, which still has to be resolved.
+         */
+        static DeclaredType of(AbstractTypeDeclaration node, String name, String key, FileContext file, DeclaredType enclosing) {
+            var type = new DeclaredType(name, key, file, enclosing);
+
+            if (node instanceof TypeDeclaration typeDeclaration) {
+                type.addTypeParameters(typeDeclaration.typeParameters());
+                if (typeDeclaration.getSuperclassType() != null) type.superTypes.add(typeText(typeDeclaration.getSuperclassType()));
+                else if (!typeDeclaration.isInterface()) type.superTypes.add(OBJECT);
+                type.addTypes(typeDeclaration.superInterfaceTypes());
+                if (typeDeclaration.isInterface()) type.superTypes.add(OBJECT);
+            } else if (node instanceof EnumDeclaration enumDeclaration) {
+                type.superTypes.add("java.lang.Enum");
+                type.addTypes(enumDeclaration.superInterfaceTypes());
+
+                for (var constant : (List<?>) enumDeclaration.enumConstants())
+                    type.fields.put(((EnumConstantDeclaration) constant).getName().getIdentifier(), key);
+
+                // The methods the compiler declares for every enum
+                type.methods.put("valueOf", new ArrayList<>(List.of(key)));
+                type.methods.put("values", new ArrayList<>(List.of(key + "[]")));
+            } else if (node instanceof RecordDeclaration recordDeclaration) {
+                type.addTypeParameters(recordDeclaration.typeParameters());
+                type.superTypes.add("java.lang.Record");
+                type.addTypes(recordDeclaration.superInterfaceTypes());
+
+                for (var component : (List<?>) recordDeclaration.recordComponents()) {
+                    var declaration = (SingleVariableDeclaration) component;
+                    var componentType = typeText(declaration.getType());
+                    type.fields.put(declaration.getName().getIdentifier(), componentType);
+                    type.methods.computeIfAbsent(declaration.getName().getIdentifier(), k -> new ArrayList<>()).add(componentType);
+                }
+            } else if (node instanceof AnnotationTypeDeclaration) {
+                type.superTypes.add("java.lang.annotation.Annotation");
+                type.superTypes.add(OBJECT);
+            }
+
+            type.addMembers(node.bodyDeclarations());
+            return type;
+        }
+
+        /**
+         * Reads the declaration of an anonymous type.
+         *
+         * @param node      The anonymous type declaration.
+         * @param key       The key identifying the type.
+         * @param file      The file the type is declared in.
+         * @param enclosing The named type the declaration is nested in, or null.
+         * @return The declared type, which still has to be resolved.
+         */
+        static DeclaredType of(AnonymousClassDeclaration node, String key, FileContext file, DeclaredType enclosing) {
+            var type = new DeclaredType("", key, file, enclosing);
+
+            if (node.getParent() instanceof ClassInstanceCreation creation) type.superTypes.add(typeText(creation.getType()));
+            else if (node.getParent() instanceof EnumConstantDeclaration && enclosing != null) type.superTypes.add(enclosing.key);
+            type.superTypes.add(OBJECT);
+
+            type.addMembers(node.bodyDeclarations());
+            return type;
+        }
+
+        private void addTypeParameters(List<?> parameters) {
+            for (var object : parameters) {
+                var parameter = (TypeParameter) object;
+                var bounds = parameter.typeBounds();
+                typeParameters.put(parameter.getName().getIdentifier(), bounds.isEmpty() ? OBJECT : typeText((Type) bounds.get(0)));
+            }
+        }
+
+        private void addTypes(List<?> types) {
+            for (var object : types) superTypes.add(typeText((Type) object));
+        }
+
+        private void addMembers(List<?> declarations) {
+            for (var object : declarations) {
+                var declaration = (BodyDeclaration) object;
+
+                if (declaration instanceof FieldDeclaration field) {
+                    for (var fragment : (List<?>) field.fragments()) {
+                        var variable = (VariableDeclarationFragment) fragment;
+                        var text = typeText(field.getType());
+                        if (text != null && variable.getExtraDimensions() > 0) text += "[]".repeat(variable.getExtraDimensions());
+                        fields.put(variable.getName().getIdentifier(), text);
+                    }
+                } else if (declaration instanceof MethodDeclaration method && !method.isConstructor()) {
+                    // Type variables of the method are unknown
+                    var text = typeText(method.getReturnType2());
+                    for (var parameter : (List<?>) method.typeParameters()) {
+                        if (((TypeParameter) parameter).getName().getIdentifier().equals(text)) text = null;
+                    }
+                    methods.computeIfAbsent(method.getName().getIdentifier(), k -> new ArrayList<>()).add(text);
+                } else if (declaration instanceof AbstractTypeDeclaration member) {
+                    memberTypes.add(member.getName().getIdentifier());
+                }
+            }
+        }
+    }
+}
@@ -3,36 +3,59 @@ package io.github.david0x03;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * Provides utility functions for file collection, OS detection, Java version parsing, and locating installed JDKs.
+ * Provides utility functions for OS detection, Java version parsing, and locating installed JDKs.
  */
 public class Utils {
 
     private static final Logger logger = LogManager.getLogger(Utils.class);
 
+    // The runs whose peak heap usage is currently tracked
+    private static int trackedRuns = 0;
+
     /**
-     * Recursively collects all files with the specified file extension starting from a root directory.
+     * Removes all balanced generic type arguments from a name in a single pass.
+     * For example, "java.util.Map<K, java.util.List<V>>.get" is converted to "java.util.Map.get".
+     * Unbalanced angle brackets are kept. Names without generics are returned without copying.
      *
-     * @param dir        The root directory to start the search.
-     * @param fileEnding The file extension to filter files (e.g., ".java").
-     * @param files      A list to store the paths of the collected files.
+     * @param name The name to strip the generics from.
+     * @return The name without generic type arguments.
      */
-    public static void collectFiles(File dir, String fileEnding, List<String> files) {
-        for (File file : dir.listFiles()) {
-            if (file.isDirectory()) // Recursion
-                collectFiles(file, fileEnding, files);
-            else if (file.isFile() && file.getName().endsWith(fileEnding))
-                files.add(file.getAbsolutePath());
+    public static String stripGenerics(String name) {
+        if (name.indexOf('<') < 0) return name;
+
+        var result = new StringBuilder(name.length());
+
+        // Positions in the result where the currently open brackets start
+        var openBrackets = new int[8];
+        var depth = 0;
+
+        for (int i = 0; i < name.length(); i++) {
+            var c = name.charAt(i);
+
+            if (c == '<') {
+                if (depth == openBrackets.length) openBrackets = Arrays.copyOf(openBrackets, depth * 2);
+                openBrackets[depth++] = result.length();
+                result.append(c);
+            } else if (c == '>' && depth > 0) {
+                // Drop the closed bracket including its content
+                result.setLength(openBrackets[--depth]);
+            } else {
+                result.append(c);
+            }
         }
+
+        return result.toString();
     }
 
     /**
@@ -85,5 +108,40 @@ public class Utils {
         return Map.of();
     }
 
+    /**
+     * Starts tracking the peak heap usage for a run. The peak usage of the JVM is process-wide, so it is only reset if
+     * no other run is tracked, and the peak of overlapping runs covers all of them.
+     * Every call must be followed by a call to {@link #endPeakHeapTracking()}.
+     */
+    public static synchronized void beginPeakHeapTracking() {
+        if (trackedRuns++ > 0) return;
+
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Ends tracking the peak heap usage for a run.
+     */
+    public static synchronized void endPeakHeapTracking() {
+        trackedRuns--;
+    }
+
+    /**
+     * Retrieves the peak heap usage since the first of the currently tracked runs began, summed over all heap memory
+     * pools of the JVM.
+     *
+     * @return The peak heap usage in bytes.
+     */
+    public static long getPeakHeapUsage() {
+        var peak = 0L;
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) peak += pool.getPeakUsage().getUsed();
+        }
+
+        return peak;
+    }
+
     public enum OS {WINDOWS, LINUX}
 }
@@ -27,12 +27,40 @@ public class CliAnnotate implements Runnable {
     )
     String mappingsPath;
 
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "Number of parsers used in parallel per source (default: number of available processors)"
+    )
+    Integer threads;
+
+    @CommandLine.Option(
+            names = {"--batch-files"},
+            description = "Maximum number of files passed to a parser at once"
+    )
+    int batchFiles;
+
+    @CommandLine.Option(
+            names = {"--batch-bytes"},
+            description = "Maximum size in bytes of the files passed to a parser at once"
+    )
+    long batchBytes;
+
+    @CommandLine.Option(
+            names = {"--batch-auto"},
+            description = "Size the batches automatically based on the free heap"
+    )
+    boolean autoBatching;
+
     @Override
     public void run() {
         var mappingsDir = Paths.get(mappingsPath).toAbsolutePath();
 
         try {
             var securityFeatureLocator = new SecurityFeatureLocator(mappingsDir);
+            if (threads != null) securityFeatureLocator.setParallelism(threads);
+            securityFeatureLocator.setBatchLimits(batchFiles, batchBytes);
+            securityFeatureLocator.setAutoBatching(autoBatching);
+
             var project = securityFeatureLocator.locateFeatures(projectPath, false);
 
             // Insert annotations
@@ -0,0 +1,54 @@
+package io.github.david0x03.cli;
+
+import io.github.david0x03.ModeComparison;
+import io.github.david0x03.SecurityFeatureLocator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import picocli.CommandLine;
+
+import java.nio.file.Paths;
+
+@CommandLine.Command(
+        name = "compare",
+        description = "Locates the features in the full and in the fast mode and writes the differences to result/fast-mode-comparison.json"
+)
+public class CliCompare implements Runnable {
+
+    private static final Logger logger = LogManager.getLogger(CliCompare.class);
+
+    @CommandLine.Parameters(
+            index = "0",
+            description = "Path to the Maven or Gradle project, the comparison is written to its result directory"
+    )
+    String projectPath;
+
+    @CommandLine.Option(
+            names = {"--mappings"},
+            required = true,
+            description = "Directory containing the API mappings as JSON files"
+    )
+    String mappingsPath;
+
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "Number of parsers used in parallel per source (default: number of available processors)"
+    )
+    Integer threads;
+
+    @Override
+    public void run() {
+        var mappingsDir = Paths.get(mappingsPath).toAbsolutePath();
+
+        try {
+            var securityFeatureLocator = new SecurityFeatureLocator(mappingsDir);
+            if (threads != null) securityFeatureLocator.setParallelism(threads);
+
+            var comparison = ModeComparison.run(securityFeatureLocator, projectPath);
+            comparison.writeJson(Paths.get(projectPath).toAbsolutePath().resolve("result/fast-mode-comparison.json"));
+            logger.info(comparison.getSummary());
+        } catch (Exception e) {
+            logger.error("Failed to compare the modes: ", e);
+            System.exit(1);
+        }
+    }
+}
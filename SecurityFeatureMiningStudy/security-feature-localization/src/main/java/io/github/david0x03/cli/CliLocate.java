@@ -28,12 +28,77 @@ public class CliLocate implements Runnable {
     )
     String mappingsPath;
 
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "Number of parsers used in parallel per source (default: number of available processors)"
+    )
+    Integer threads;
+
+    @CommandLine.Option(
+            names = {"--batch-files"},
+            description = "Maximum number of files passed to a parser at once"
+    )
+    int batchFiles;
+
+    @CommandLine.Option(
+            names = {"--batch-bytes"},
+            description = "Maximum size in bytes of the files passed to a parser at once"
+    )
+    long batchBytes;
+
+    @CommandLine.Option(
+            names = {"--batch-auto"},
+            description = "Size the batches automatically based on the free heap"
+    )
+    boolean autoBatching;
+
+    @CommandLine.Option(
+            names = {"--no-cache"},
+            description = "Build the project and parse all files again instead of reusing the cached results"
+    )
+    boolean noCache;
+
+    @CommandLine.Option(
+            names = {"--force-rebuild"},
+            description = "Build the project again even if its build files did not change"
+    )
+    boolean forceRebuild;
+
+    @CommandLine.Option(
+            names = {"--stream"},
+            description = "Write each file to the JSON export as soon as it is parsed instead of keeping all results in memory. "
+                    + "Cached results are written after each source, but the cache of the previous run is still loaded"
+    )
+    boolean stream;
+
+    @CommandLine.Option(
+            names = {"--prefilter"},
+            description = "Skip files whose imports and references cannot lead to a mapped API"
+    )
+    boolean prefilter;
+
+    @CommandLine.Option(
+            names = {"--fast"},
+            description = "Resolve names from the imports without bindings and only parse undecided files with bindings"
+    )
+    boolean fast;
+
     @Override
     public void run() {
         var mappingsDir = Paths.get(mappingsPath).toAbsolutePath();
 
         try {
-            new SecurityFeatureLocator(mappingsDir).locateFeatures(projectPath, true);
+            var securityFeatureLocator = new SecurityFeatureLocator(mappingsDir);
+            if (threads != null) securityFeatureLocator.setParallelism(threads);
+            securityFeatureLocator.setBatchLimits(batchFiles, batchBytes);
+            securityFeatureLocator.setAutoBatching(autoBatching);
+            securityFeatureLocator.setCacheEnabled(!noCache);
+            securityFeatureLocator.setForceRebuild(forceRebuild);
+            securityFeatureLocator.setStreamingExport(stream);
+            securityFeatureLocator.setPrefilterEnabled(prefilter);
+            securityFeatureLocator.setFastModeEnabled(fast);
+
+            securityFeatureLocator.locateFeatures(projectPath, true);
         } catch (Exception e) {
             logger.error("Failed to extract features: ", e);
             System.exit(1);
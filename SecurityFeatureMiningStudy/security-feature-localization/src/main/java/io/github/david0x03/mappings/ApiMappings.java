@@ -1,15 +1,15 @@
 package io.github.david0x03.mappings;
 
 import com.google.gson.Gson;
-import io.github.david0x03.Utils;
+import io.github.david0x03.AnalysisCache;
+import io.github.david0x03.FileWalker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -23,23 +23,68 @@ public class ApiMappings {
     private final List<Library> libraries = new ArrayList<>();
     public Map<String, List<String>> mappings = new HashMap<>();
 
+    // Indexes the root namespaces of all libraries, rebuilt whenever a library is added
+    private PrefixIndex libraryIndex = new PrefixIndex(List.of());
+
+    // All namespaces with categories, used to check whether a name can lead to a mapped API
+    private final TreeSet<String> categorizedPaths = new TreeSet<>();
+    private PrefixIndex categorizedIndex = new PrefixIndex(List.of());
+
+    // Hash over the contents of all loaded mapping files
+    private String fingerprint = "";
+
     /**
      * Retrieves the categories associated with a given API endpoint identifier.
+     * The libraries whose root namespace is a prefix of the identifier are checked in the order they were added.
      *
      * @param identifier The API endpoint identifier to search for.
-     * @return A list of categories assigned to the identifier, or null if no categories are found.
+     * @return An immutable list of categories assigned to the identifier, or null if no categories are found.
      */
     public List<String> getCategories(String identifier) {
-        // Go through all libraries and check if it matches any
-        for (var library : libraries) {
-            var res = library.matchIdentifier(identifier);
-            if (res != null && res.length > 0) return Arrays.asList(res);
+        // Go through all matching libraries and check if it matches any
+        for (int i = libraryIndex.firstMatch(identifier, 0, -1); i >= 0; i = libraryIndex.firstMatch(identifier, 0, i)) {
+            var res = libraries.get(i).matchNamespace(identifier);
+            if (res != null && !res.getCategoryList().isEmpty()) return res.getCategoryList();
         }
 
         // Endpoint isn't mapped
         return null;
     }
 
+    /**
+     * Checks whether API identifiers of a type or member with the given qualified name could be assigned
+     * any categories. This is the case if a mapped namespace is a prefix of the name, or lies within it.
+     * The check is conservative and never returns false for a name whose identifiers are mapped.
+     *
+     * @param qualifiedName The qualified name of a type or member.
+     * @return True if identifiers of the name could be mapped, otherwise false.
+     */
+    public boolean couldMatch(String qualifiedName) {
+        if (categorizedIndex.firstMatch(qualifiedName, 0, -1) >= 0) return true;
+
+        var memberPrefix = qualifiedName + ".";
+        var next = categorizedPaths.ceiling(memberPrefix);
+        return next != null && next.startsWith(memberPrefix);
+    }
+
+    /**
+     * Retrieves the namespaces of all libraries that have categories, e.g. packages, types and members.
+     *
+     * @return An unmodifiable, sorted view of the qualified names of the namespaces.
+     */
+    public SortedSet<String> getCategorizedPaths() {
+        return Collections.unmodifiableSortedSet(categorizedPaths);
+    }
+
+    /**
+     * Retrieves a fingerprint of the loaded mappings, which changes whenever a mapping file changes.
+     *
+     * @return The fingerprint as a hex string.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
     /**
      * Loads API mappings from a specified directory containing JSON files.
      *
@@ -51,12 +96,11 @@ public class ApiMappings {
             throw new Exception("Mapping directory not found");
 
         // Collect all json files in the directory
-        var mappingFiles = new ArrayList<String>();
-        Utils.collectFiles(new File(dirPath.toString()), ".json", mappingFiles);
+        var mappingFiles = new FileWalker().suffix(".json").walk(dirPath.toAbsolutePath());
 
         // Add all mappings
         for (var file : mappingFiles)
-            this.addMappingsFromFile(Paths.get(file));
+            this.addMappingsFromFile(file);
     }
 
     /**
@@ -73,7 +117,14 @@ public class ApiMappings {
         try {
             var json = Files.readString(filePath);
             var lib = new Gson().fromJson(json, Library.class);
+            lib.compile();
+
             libraries.add(lib);
+            libraryIndex = new PrefixIndex(libraries.stream().map(Library::getPath).toList());
+
+            lib.collectCategorizedPaths(categorizedPaths);
+            categorizedIndex = new PrefixIndex(List.copyOf(categorizedPaths));
+            fingerprint = AnalysisCache.sha256((fingerprint + json).getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             logger.error("Invalid mapping file: " + filePath);
         }
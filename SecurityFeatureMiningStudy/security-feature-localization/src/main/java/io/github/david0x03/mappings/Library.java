@@ -8,6 +8,14 @@ public class Library extends Namespace {
 
     public String name, version;
 
+    /**
+     * Compiles the mapping structure of the library. Must be called once after loading.
+     */
+    public void compile() {
+        // Implementation provided by the Namespace class
+        this.compile("");
+    }
+
     /**
      * Matches an API endpoint identifier against the library's mapping structure.
      * This operation is performed recursively.
@@ -16,7 +24,20 @@ public class Library extends Namespace {
      * @return An array of categories associated with the identifier, or null if no match is found.
      */
     public String[] matchIdentifier(String identifier) {
+        var res = matchNamespace(identifier);
+        return res == null ? null : res.getCategories();
+    }
+
+    /**
+     * Matches an API endpoint identifier against the library's mapping structure.
+     *
+     * @param identifier The identifier of the API endpoint to match.
+     * @return The namespace whose categories are assigned to the identifier, or null if no match is found.
+     */
+    protected Namespace matchNamespace(String identifier) {
+        if (!identifier.startsWith(getPath())) return null;
+
         // Implementation provided by the Namespace class
-        return this.matchIdentifier(identifier, "");
+        return this.match(identifier);
     }
 }
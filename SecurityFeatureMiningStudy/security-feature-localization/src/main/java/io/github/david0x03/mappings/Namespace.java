@@ -1,9 +1,15 @@
 package io.github.david0x03.mappings;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Represents a namespace in a hierarchical API mapping structure. Each namespace can
  * contain child namespaces and associated categories, allowing for recursive matching
  * of API endpoint identifiers.
+ * Before matching, the hierarchy has to be compiled, which resolves the full namespace paths
+ * and indexes the children, so that matching does not build any strings.
  */
 public class Namespace {
 
@@ -13,31 +19,79 @@ public class Namespace {
     @SuppressWarnings("all")
     private Namespace[] children;
 
+    private transient String path;
+    private transient List<String> categoryList;
+    private transient PrefixIndex childIndex;
+
     /**
-     * Recursively matches an API endpoint identifier against the namespace hierarchy.
+     * Recursively resolves the full namespace paths and builds the child indices.
      *
-     * @param identifier The identifier of the API endpoint to match.
-     * @param namespace  The currently matched namespace as the recursion progresses.
-     * @return An array of categories associated with the identifier, or null if no match is found.
+     * @param parentPath The full namespace path of the parent namespace.
      */
-    protected String[] matchIdentifier(String identifier, String namespace) {
-        var currentNamespace = namespace + (namespace.isEmpty() ? "" : ".") + this.namespace;
+    protected void compile(String parentPath) {
+        this.path = parentPath + (parentPath.isEmpty() ? "" : ".") + this.namespace;
+        this.categoryList = categories == null ? null : List.of(categories);
+        if (children == null) children = new Namespace[0];
 
-        // Return null if the identifier does not match the current namespace prefix
-        if (!identifier.startsWith(currentNamespace)) return null;
+        this.childIndex = new PrefixIndex(Arrays.stream(children).map(child -> String.valueOf(child.namespace)).toList());
+        for (Namespace child : children) child.compile(path);
+    }
 
-        // Return null if the identifier does not match the current namespace prefix
-        //noinspection RedundantLengthCheck
-        if (identifier.equals(currentNamespace) || children.length == 0)
-            return categories;
+    /**
+     * Recursively matches an API endpoint identifier against the compiled namespace hierarchy.
+     * The identifier must start with the path of this namespace.
+     * Children are tried in their declared order, the first child returning categories wins.
+     *
+     * @param identifier The identifier of the API endpoint to match.
+     * @return The namespace whose categories are assigned to the identifier, or null if no match is found.
+     */
+    protected Namespace match(String identifier) {
+        // Return the categories if the identifier is the namespace itself or there are no children
+        if (identifier.length() == path.length() || children.length == 0)
+            return categories != null ? this : null;
+
+        // Explore the child namespaces whose path is a prefix of the identifier
+        if (path.isEmpty() || identifier.charAt(path.length()) == '.') {
+            var offset = path.isEmpty() ? 0 : path.length() + 1;
 
-        // Explore child namespaces recursively
-        for (Namespace child : children) {
-            var res = child.matchIdentifier(identifier, currentNamespace);
-            if (res != null) return res;
+            for (int i = childIndex.firstMatch(identifier, offset, -1); i >= 0; i = childIndex.firstMatch(identifier, offset, i)) {
+                var res = children[i].match(identifier);
+                if (res != null) return res;
+            }
         }
 
         // Return categories if the identifier matches this namespace but no children match
+        return categories != null ? this : null;
+    }
+
+    /**
+     * Recursively collects the full paths of all namespaces with at least one category.
+     *
+     * @param paths The collection the paths are added to.
+     */
+    protected void collectCategorizedPaths(Collection<String> paths) {
+        if (categories != null && categories.length > 0) paths.add(path);
+        for (Namespace child : children) child.collectCategorizedPaths(paths);
+    }
+
+    /**
+     * @return The full path of the namespace, available after compilation
+     */
+    protected String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The categories of the namespace
+     */
+    protected String[] getCategories() {
         return categories;
     }
+
+    /**
+     * @return The categories of the namespace as an immutable list, available after compilation
+     */
+    protected List<String> getCategoryList() {
+        return categoryList;
+    }
 }
@@ -0,0 +1,112 @@
+package io.github.david0x03.mappings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A character trie over a list of keys, used to find the keys that are a prefix of an identifier
+ * at a given offset. Lookups walk the identifier once and do not allocate.
+ */
+final class PrefixIndex {
+
+    private final Node root = new Node();
+
+    /**
+     * Builds the index for the given keys. The position of a key in the list is its index.
+     *
+     * @param keys The keys to index.
+     */
+    PrefixIndex(List<String> keys) {
+        var builders = new ArrayList<Builder>();
+        var rootBuilder = new Builder();
+        builders.add(rootBuilder);
+
+        for (int i = 0; i < keys.size(); i++) {
+            var builder = rootBuilder;
+            for (char c : keys.get(i).toCharArray()) builder = builder.child(c);
+            builder.terminals.add(i);
+        }
+
+        rootBuilder.build(root);
+    }
+
+    /**
+     * Finds the lowest key index greater than {@code after}, whose key is a prefix of the identifier
+     * starting at the given offset.
+     *
+     * @param identifier The identifier to match.
+     * @param offset     The offset in the identifier where the keys have to start.
+     * @param after      Only key indices greater than this are considered, -1 to consider all keys.
+     * @return The index of the matching key, or -1 if no further key matches.
+     */
+    int firstMatch(String identifier, int offset, int after) {
+        var best = Integer.MAX_VALUE;
+        var node = root;
+        var pos = offset;
+
+        while (true) {
+            // Terminals are sorted, so the first index after the previous match is the candidate of this node
+            for (int terminal : node.terminals) {
+                if (terminal > after) {
+                    if (terminal < best) best = terminal;
+                    break;
+                }
+            }
+
+            if (pos >= identifier.length()) break;
+
+            var edge = Arrays.binarySearch(node.chars, identifier.charAt(pos));
+            if (edge < 0) break;
+
+            node = node.next[edge];
+            pos++;
+        }
+
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+     * A compiled trie node with its outgoing edges sorted by character.
+     */
+    private static final class Node {
+        char[] chars;
+        Node[] next;
+        int[] terminals;
+    }
+
+    /**
+     * A mutable trie node used while building the index.
+     */
+    private static final class Builder {
+        private final List<Character> chars = new ArrayList<>();
+        private final List<Builder> next = new ArrayList<>();
+        private final List<Integer> terminals = new ArrayList<>();
+
+        private Builder child(char c) {
+            var i = chars.indexOf(c);
+            if (i >= 0) return next.get(i);
+
+            var builder = new Builder();
+            chars.add(c);
+            next.add(builder);
+            return builder;
+        }
+
+        private void build(Node node) {
+            var order = new ArrayList<Integer>();
+            for (int i = 0; i < chars.size(); i++) order.add(i);
+            order.sort((a, b) -> Character.compare(chars.get(a), chars.get(b)));
+
+            node.chars = new char[order.size()];
+            node.next = new Node[order.size()];
+            for (int i = 0; i < order.size(); i++) {
+                node.chars[i] = chars.get(order.get(i));
+                node.next[i] = new Node();
+                next.get(order.get(i)).build(node.next[i]);
+            }
+
+            node.terminals = terminals.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -19,7 +19,17 @@ public class AntProject extends JavaProject {
      * @param projectPath The path to the project directory.
      */
     public AntProject(Path projectPath) {
-        super(projectPath);
+        this(projectPath, null);
+    }
+
+    /**
+     * Initializes a Ant project instance from an existing index of its files.
+     *
+     * @param projectPath The path to the project directory.
+     * @param index       The index of the project files, or null to index the project.
+     */
+    public AntProject(Path projectPath, ProjectIndex index) {
+        super(projectPath, index);
         this.getSources().add(new JavaSource(this, projectPath));
     }
 
@@ -50,7 +60,8 @@ public class AntProject extends JavaProject {
      */
     @Override
     public boolean buildProject() {
-        return true;
+        buildSuccess = true;
+        return buildSuccess;
     }
 
     /**
@@ -0,0 +1,143 @@
+package io.github.david0x03.project;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.github.david0x03.AnalysisCache;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A persistent cache of the build results of a project: the detected Java version, the build success and the
+ * class path shared by all sources. The cache is keyed by a fingerprint of all build files, so it is invalidated as soon
+ * as one of them changes. It is also invalidated if a cached dependency no longer exists.
+ */
+public class BuildCache {
+
+    private static final Logger logger = LogManager.getLogger(BuildCache.class);
+
+    private static final int VERSION = 2;
+
+    // Build outputs and tool directories, which contain no build files of the project itself
+    private static final Set<String> SKIPPED_DIRS = Set.of(
+            ".git", ".gradle", ".idea", "target", "build", "gradle-cache", "result", "node_modules"
+    );
+
+    // The Maven configuration, whose file names are too generic to be indexed as build files
+    private static final List<String> MAVEN_CONFIG_FILES = List.of(
+            ".mvn/maven.config", ".mvn/jvm.config", ".mvn/extensions.xml"
+    );
+
+    private BuildCache() {
+    }
+
+    /**
+     * Restores the build results of a project from the cache file, if its build files did not change.
+     *
+     * @param project   The project to restore the build results for.
+     * @param cachePath The path of the cache file.
+     * @return True if the build results were restored, false if the project has to be built.
+     */
+    public static boolean restore(JavaProject project, Path cachePath) {
+        if (!Files.isRegularFile(cachePath)) return false;
+
+        CacheFile cacheFile;
+        try {
+            cacheFile = new Gson().fromJson(Files.readString(cachePath), CacheFile.class);
+        } catch (IOException | JsonParseException e) {
+            logger.error("Failed to read the build cache: ", e);
+            return false;
+        }
+
+        if (cacheFile == null || cacheFile.version() != VERSION || cacheFile.classpath() == null) return false;
+        if (!fingerprint(project).equals(cacheFile.fingerprint())) return false;
+
+        var classpath = cacheFile.classpath().stream().map(Path::of).toList();
+
+        // Removed build outputs require a new build
+        if (!classpath.stream().allMatch(Files::isRegularFile)) return false;
+
+        project.restoreBuild(cacheFile.javaVersion(), cacheFile.buildSuccess(), classpath);
+        return true;
+    }
+
+    /**
+     * Resolves the class path of the project and stores it together with the Java version and the build
+     * success in the cache file.
+     *
+     * @param project   The project after it has been built.
+     * @param cachePath The path of the cache file.
+     */
+    public static void store(JavaProject project, Path cachePath) {
+        var classpath = project.getClasspath().stream().map(Path::toString).toList();
+
+        var cacheFile = new CacheFile(VERSION, fingerprint(project), project.getJavaSourceVersion(),
+                project.isBuildSuccess(), classpath);
+
+        try {
+            FileUtils.createParentDirectories(cachePath.toFile());
+
+            var tmpPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+            Files.writeString(tmpPath, new Gson().toJson(cacheFile));
+            Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Failed to write the build cache: ", e);
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the contents of all build files of a project, see {@link ProjectIndex#getBuildFiles()},
+     * and of the Maven configuration in the ".mvn" directory of the project.
+     *
+     * @param project The project.
+     * @return The fingerprint as a hex string.
+     */
+    static String fingerprint(JavaProject project) {
+        var projectPath = project.getProjectPath();
+
+        var files = new ArrayList<>(project.getIndex().getBuildFiles().stream().map(projectPath::relativize).filter(BuildCache::isProjectFile).toList());
+        MAVEN_CONFIG_FILES.stream().map(Path::of).filter(file -> Files.isRegularFile(projectPath.resolve(file))).forEach(files::add);
+
+        var sb = new StringBuilder(project.getClass().getSimpleName()).append('\n');
+        files.stream().sorted().forEach(file -> {
+            sb.append(file).append('|');
+
+            try {
+                sb.append(AnalysisCache.sha256(Files.readAllBytes(projectPath.resolve(file))));
+            } catch (IOException e) {
+                sb.append("unreadable");
+            }
+
+            sb.append('\n');
+        });
+
+        return AnalysisCache.sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return False if the file is located in a build output or tool directory
+     */
+    static boolean isProjectFile(Path relativePath) {
+        for (var name : relativePath) {
+            if (SKIPPED_DIRS.contains(name.toString())) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * The serialized form of the cache file.
+     */
+    private record CacheFile(int version, String fingerprint, String javaVersion, boolean buildSuccess,
+                             List<String> classpath) {
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.david0x03.project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Helper methods to merge the dependencies of multiple sources into a single class path.
+ */
+final class Classpath {
+
+    private static final Pattern VERSION_SEPARATOR_PATTERN = Pattern.compile("[.\\-_]");
+
+    private Classpath() {
+    }
+
+    /**
+     * Removes duplicate jars from a class path. Jars are duplicates if they have the same canonical path, if they are
+     * the same artifact and classifier in the layout of a Gradle or Maven repository, in which case only the newest
+     * version is kept, or if they have the same file name. Source and Javadoc jars are removed, as they contain no
+     * classes. The order of the remaining jars is preserved.
+     *
+     * @param dependencies The dependencies to deduplicate.
+     * @return The deduplicated class path.
+     */
+    static List<Path> deduplicate(Collection<Path> dependencies) {
+        var canonicalPaths = new HashSet<Path>();
+        var byCoordinate = new LinkedHashMap<String, Path>();
+        var versions = new HashMap<String, String>();
+
+        for (var dependency : dependencies) {
+            var fileName = dependency.getFileName().toString();
+            if (fileName.endsWith("-sources.jar") || fileName.endsWith("-javadoc.jar")) continue;
+
+            var canonicalPath = toCanonicalPath(dependency);
+            if (!canonicalPaths.add(canonicalPath)) continue;
+
+            var coordinate = getCoordinate(canonicalPath);
+            if (coordinate == null) {
+                // Without a repository layout, only a jar of the same name and thus version is a duplicate
+                byCoordinate.putIfAbsent(fileName, canonicalPath);
+                continue;
+            }
+
+            var existing = versions.get(coordinate[0]);
+            if (existing == null || compareVersions(coordinate[1], existing) > 0) {
+                byCoordinate.put(coordinate[0], canonicalPath);
+                versions.put(coordinate[0], coordinate[1]);
+            }
+        }
+
+        return new ArrayList<>(byCoordinate.values());
+    }
+
+    /**
+     * Determines the artifact and version of a jar from the layout of the Gradle cache
+     * (group/artifact/version/hash/file.jar) or of a Maven repository (group/path/artifact/version/file.jar).
+     * The classifier of the file is part of the artifact key, as it distinguishes e.g. test or platform specific
+     * jars of the same artifact.
+     *
+     * @param jar The canonical path of the jar.
+     * @return The artifact key and the version, or null if the jar is not within a repository layout.
+     */
+    private static String[] getCoordinate(Path jar) {
+        var fileName = jar.getFileName().toString();
+        var count = jar.getNameCount();
+
+        if (count >= 5 && jar.toString().contains("files-2.1")) {
+            var group = jar.getName(count - 5).toString();
+            var artifact = jar.getName(count - 4).toString();
+            var version = jar.getName(count - 3).toString();
+
+            var classifier = getClassifier(fileName, artifact, version);
+            if (classifier != null) return new String[]{group + ":" + artifact + ":" + classifier, version};
+        }
+
+        if (count >= 4) {
+            var artifact = jar.getName(count - 3).toString();
+            var version = jar.getName(count - 2).toString();
+
+            var classifier = getClassifier(fileName, artifact, version);
+            if (classifier != null) {
+                var group = getMavenGroup(jar.getParent().getParent().getParent());
+                return new String[]{group + ":" + artifact + ":" + classifier, version};
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The classifier of a jar named after the artifact and version, empty for the main jar, or null if the
+     * jar is named differently
+     */
+    private static String getClassifier(String fileName, String artifact, String version) {
+        var prefix = artifact + "-" + version;
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(".jar")) return null;
+
+        var classifier = fileName.substring(prefix.length(), fileName.length() - ".jar".length());
+        if (classifier.isEmpty()) return "";
+
+        return classifier.startsWith("-") ? classifier.substring(1) : null;
+    }
+
+    /**
+     * Determines the group of an artifact in a Maven repository from the directories below the repository root,
+     * e.g. org/apache/commons for ~/.m2/repository/org/apache/commons. If the root is unknown, the whole path
+     * identifies the group.
+     *
+     * @param groupDir The directory containing the artifact directory.
+     * @return The group.
+     */
+    private static String getMavenGroup(Path groupDir) {
+        for (int i = groupDir.getNameCount() - 1; i >= 0; i--) {
+            if (!groupDir.getName(i).toString().equals("repository")) continue;
+            if (i == groupDir.getNameCount() - 1) break;
+
+            var group = groupDir.subpath(i + 1, groupDir.getNameCount());
+            return group.toString().replace(group.getFileSystem().getSeparator(), ".");
+        }
+
+        return groupDir.toString();
+    }
+
+    /**
+     * Compares two versions part by part, numerically where both parts are numbers.
+     *
+     * @return A negative number, zero or a positive number if the first version is lower, equal or higher.
+     */
+    private static int compareVersions(String a, String b) {
+        var partsA = VERSION_SEPARATOR_PATTERN.split(a);
+        var partsB = VERSION_SEPARATOR_PATTERN.split(b);
+
+        for (int i = 0; i < Math.max(partsA.length, partsB.length); i++) {
+            var partA = i < partsA.length ? partsA[i] : "0";
+            var partB = i < partsB.length ? partsB[i] : "0";
+
+            int result;
+            if (partA.matches("\\d{1,9}") && partB.matches("\\d{1,9}"))
+                result = Integer.compare(Integer.parseInt(partA), Integer.parseInt(partB));
+            else
+                result = partA.compareTo(partB);
+
+            if (result != 0) return result;
+        }
+
+        return 0;
+    }
+
+    private static Path toCanonicalPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.david0x03.project;
+
+import io.github.david0x03.AnalysisCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded pool of warm Gradle daemons for mining many repositories in a row.
+ * <p>
+ * Daemons are grouped by the Gradle distribution and the JDK they run on. Each group has a fixed number of slots,
+ * and every slot is a separate Gradle user home, so at most one daemon is busy per slot and a build only reuses
+ * daemons of its own slot. The repositories are isolated by their project directory, which holds the project cache,
+ * and the user home settings override the daemon settings of the repository.
+ * A daemon is stopped when it was idle for longer than the idle timeout, or before its slot is reused once it is
+ * older than the time to live. The daemon of a slot whose build was aborted is stopped before the slot is reused.
+ * The heap of every daemon is limited.
+ */
+public class GradleDaemonPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(GradleDaemonPool.class);
+
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private static final Pattern DAEMON_LOG_PATTERN = Pattern.compile("daemon-(\\d+)\\.out\\.log");
+    private static final String DAEMON_MAIN_CLASS = "org.gradle.launcher.daemon.bootstrap.GradleDaemon";
+
+    private final Path homeDir;
+    private final int maxDaemons;
+    private final Duration idleTimeout;
+    private final Duration timeToLive;
+    private final String maxHeap;
+
+    // The free slots of each group, and the time the daemon of a slot was started
+    private final Map<String, BlockingQueue<Path>> freeSlots = new ConcurrentHashMap<>();
+    private final Map<Path, Long> startTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a pool of Gradle daemons.
+     *
+     * @param homeDir     The directory holding the Gradle user homes of the slots.
+     * @param maxDaemons  The number of daemons per Gradle distribution and JDK.
+     * @param idleTimeout The time after which an idle daemon stops itself.
+     * @param timeToLive  The age after which a daemon is replaced by a new one.
+     * @param maxHeap     The maximum heap of each daemon, e.g. "2g".
+     */
+    public GradleDaemonPool(Path homeDir, int maxDaemons, Duration idleTimeout, Duration timeToLive, String maxHeap) {
+        if (maxDaemons < 1) throw new IllegalArgumentException("At least one daemon is required");
+
+        this.homeDir = homeDir.toAbsolutePath();
+        this.maxDaemons = maxDaemons;
+        this.idleTimeout = idleTimeout;
+        this.timeToLive = timeToLive;
+        this.maxHeap = maxHeap;
+    }
+
+    /**
+     * Waits for a free slot of a Gradle distribution and JDK.
+     *
+     * @param distribution The distribution URL of the Gradle wrapper, or a name of the installed Gradle.
+     * @param jdk          The JDK the daemon runs on.
+     * @return The lease of the slot, which has to be closed after the build.
+     * @throws IOException          If the user home of the slot cannot be created.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    Lease acquire(String distribution, Path jdk) throws IOException, InterruptedException {
+        var key = AnalysisCache.sha256((distribution + "\n" + jdk).getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+
+        var slots = freeSlots.computeIfAbsent(key, k -> {
+            var queue = new LinkedBlockingQueue<Path>();
+            for (int i = 0; i < maxDaemons; i++) queue.add(homeDir.resolve(k).resolve("slot-" + i));
+            return queue;
+        });
+
+        var userHome = slots.take();
+        try {
+            prepareSlot(userHome);
+        } catch (IOException e) {
+            slots.add(userHome);
+            throw e;
+        }
+
+        return new Lease(userHome, slots);
+    }
+
+    private void prepareSlot(Path userHome) throws IOException {
+        var startTime = startTimes.get(userHome);
+        if (startTime != null && System.currentTimeMillis() - startTime > timeToLive.toMillis()) {
+            logger.info("Replacing the Gradle daemon of " + userHome + " after its time to live");
+            stopDaemons(userHome);
+        }
+
+        startTimes.putIfAbsent(userHome, System.currentTimeMillis());
+
+        // The properties of the user home take precedence over the ones of the repository
+        Files.createDirectories(userHome);
+        Files.writeString(userHome.resolve("gradle.properties"),
+                "org.gradle.daemon=true\n"
+                        + "org.gradle.daemon.idletimeout=" + idleTimeout.toMillis() + "\n"
+                        + "org.gradle.jvmargs=-Xmx" + maxHeap + " -XX:MaxMetaspaceSize=512m\n");
+    }
+
+    /**
+     * Stops all daemons of the pool.
+     */
+    @Override
+    public void close() {
+        for (var userHome : startTimes.keySet()) stopDaemons(userHome);
+        startTimes.clear();
+    }
+
+    /**
+     * Terminates the daemons running in a Gradle user home. Every daemon writes its log to
+     * {@code daemon/<version>/daemon-<pid>.out.log} in the user home, so the daemons are found by their logs even
+     * while they build a repository in another directory, or after the repository was deleted.
+     *
+     * @param userHome The Gradle user home of a slot.
+     */
+    private void stopDaemons(Path userHome) {
+        startTimes.remove(userHome);
+
+        findDaemons(userHome).forEach(handle -> {
+            handle.destroy();
+
+            try {
+                handle.onExit().get(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // Terminated forcibly below
+            }
+
+            if (handle.isAlive()) handle.destroyForcibly();
+        });
+    }
+
+    private static List<ProcessHandle> findDaemons(Path userHome) {
+        var daemonDir = userHome.resolve("daemon");
+        if (!Files.isDirectory(daemonDir)) return List.of();
+
+        try (var logs = Files.find(daemonDir, 2, (path, attrs) -> DAEMON_LOG_PATTERN.matcher(path.getFileName().toString()).matches())) {
+            return logs.map(log -> {
+                        var matcher = DAEMON_LOG_PATTERN.matcher(log.getFileName().toString());
+                        return matcher.matches() ? ProcessHandle.of(Long.parseLong(matcher.group(1))) : Optional.<ProcessHandle>empty();
+                    })
+                    .flatMap(Optional::stream)
+                    // The logs of exited daemons remain, their process IDs can be reused by other processes
+                    .filter(handle -> handle.info().commandLine().map(line -> line.contains(DAEMON_MAIN_CLASS)).orElse(false))
+                    .toList();
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Failed to find the Gradle daemons of " + userHome + ": ", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * A slot of the pool, exclusively used by one build until it is closed.
+     */
+    class Lease implements AutoCloseable {
+        private final Path userHome;
+        private final BlockingQueue<Path> slots;
+        private boolean invalid = false;
+
+        private Lease(Path userHome, BlockingQueue<Path> slots) {
+            this.userHome = userHome;
+            this.slots = slots;
+        }
+
+        /**
+         * @return The Gradle user home of the slot
+         */
+        Path getUserHome() {
+            return userHome;
+        }
+
+        /**
+         * Marks the daemon of the slot as unusable, e.g. after the build timed out or was interrupted while the
+         * daemon may still be running it. The daemon is stopped when the lease is closed.
+         */
+        void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (invalid) {
+                    logger.info("Stopping the Gradle daemon of " + userHome + " after an aborted build");
+                    stopDaemons(userHome);
+                }
+            } finally {
+                slots.add(userHome);
+            }
+        }
+    }
+}
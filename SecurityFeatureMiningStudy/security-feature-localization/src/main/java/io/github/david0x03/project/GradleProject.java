@@ -1,12 +1,21 @@
 package io.github.david0x03.project;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import io.github.david0x03.ProcessRunner;
+
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static io.github.david0x03.Utils.*;
 
@@ -16,15 +25,47 @@ import static io.github.david0x03.Utils.*;
  */
 public class GradleProject extends JavaProject {
 
+    private static final Duration VERSION_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration BUILD_TIMEOUT = Duration.ofMinutes(10);
+
+    // The init script adds a task printing the compile class path of every source set, see export-classpath.gradle
+    private static final String EXPORT_SCRIPT_RESOURCE = "/gradle/export-classpath.gradle";
+    private static final String EXPORT_TASK = "exportClasspath";
+    private static final String CLASSPATH_LINE_PREFIX = "SFL_CLASSPATH\t";
+    private static final String JAVA_VERSION_LINE_PREFIX = "SFL_JAVA_VERSION\t";
+
     private final boolean hasWrapperExec;
 
+    // The compile class path printed by the build for each source directory, empty if it wasn't exported
+    private final Map<Path, List<Path>> exportedClasspaths = new ConcurrentHashMap<>();
+
+    // The source compatibility printed by the build for each project directory
+    private final Map<Path, String> exportedJavaVersions = new ConcurrentHashMap<>();
+
+    // Warm daemons used in batch mode, null to run every command without a daemon
+    private GradleDaemonPool daemonPool = null;
+    private boolean builtWithDaemonPool = false;
+
+    // Whether the last build timed out or was interrupted, so a daemon may still be busy with it
+    private boolean buildAborted = false;
+
     /**
      * Initializes a Gradle project instance.
      *
      * @param projectPath The path to the project directory.
      */
     public GradleProject(Path projectPath) {
-        super(projectPath);
+        this(projectPath, null);
+    }
+
+    /**
+     * Initializes a Gradle project instance from an existing index of its files.
+     *
+     * @param projectPath The path to the project directory.
+     * @param index       The index of the project files, or null to index the project.
+     */
+    public GradleProject(Path projectPath, ProjectIndex index) {
+        super(projectPath, index);
 
         // Check for a Gradle wrapper executable
         hasWrapperExec = Files.exists(projectPath.resolve("gradlew")) && Files.exists(projectPath.resolve("gradlew.bat"));
@@ -48,6 +89,13 @@ public class GradleProject extends JavaProject {
     @Override
     public String getJavaSourceVersion() {
         if (searchedJavaSourceVersion) return javaSourceVersion;
+
+        // In batch mode the version is detected by the build
+        if (daemonPool != null) {
+            buildWithDaemonPool();
+            return javaSourceVersion;
+        }
+
         searchedJavaSourceVersion = true;
 
         // Base commands for the Gradle executable
@@ -84,32 +132,32 @@ public class GradleProject extends JavaProject {
             var buildFilePath = getSources().get(0).getSourcePath().getParent().getParent().getParent().resolve("build.gradle");
             if (!Files.isRegularFile(buildFilePath)) continue;
 
-            ProcessBuilder processBuilder = new ProcessBuilder(commands);
-            processBuilder.directory(buildFilePath.getParent().toFile());
-            processBuilder.environment().put("JAVA_HOME", installedJdks.get(jdk).toString());
-            processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+            // The lines are consumed by the output thread of the runner, the version is read after the command finished
+            var foundVersion = new String[1];
 
             try {
-                Process process = processBuilder.start();
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        // Empty the output buffer after the version has been identified
-                        if (javaSourceVersion != null) continue;
-
-                        if (line.matches("^sourceCompatibility: (1\\.)?\\d+$")) {
-                            String versionStr = line.split(" ")[1];
-                            javaSourceVersion = parseJavaVersionString(versionStr);
-                        }
-                    }
-
-                    process.waitFor();
-                    process.destroy();
-                }
+                new ProcessRunner(commands)
+                        .directory(buildFilePath.getParent())
+                        .environment("JAVA_HOME", installedJdks.get(jdk).toString())
+                        .timeout(VERSION_TIMEOUT)
+                        .onLine(line -> {
+                            if (foundVersion[0] != null) return;
+
+                            if (line.matches("^sourceCompatibility: (1\\.)?\\d+$")) {
+                                String versionStr = line.split(" ")[1];
+                                foundVersion[0] = parseJavaVersionString(versionStr);
+                            }
+                        })
+                        .run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 logger.error("Failed to execute the Gradle command: ", e);
             }
 
+            javaSourceVersion = foundVersion[0];
+
             // Java version found, don't check any further
             if (javaSourceVersion != null) break;
         }
@@ -119,21 +167,16 @@ public class GradleProject extends JavaProject {
 
     /**
      * Builds the project by executing Gradle's `assemble` command.
+     * The same invocation exports the resolved compile class path of each source set through an init script.
      *
      * @return True if the build is successful, otherwise false.
      */
     @Override
     public boolean buildProject() {
-        var buildFilePath = getProjectPath().resolve("build.gradle");
-
-        // Base commands for the Maven executable
-        var commands = getGradleExec();
-
-        // This commands downloads all dependencies locally
-        commands.addAll(List.of("assemble", "--gradle-user-home", "./gradle-cache", "--no-daemon"));
-
-        ProcessBuilder processBuilder = new ProcessBuilder(commands);
-        processBuilder.directory(buildFilePath.getParent().toFile());
+        if (daemonPool != null) {
+            buildWithDaemonPool();
+            return buildSuccess;
+        }
 
         // Try to set the found Java version, if it's installed on the system
         // Fall back to 1.8 if no version was found
@@ -141,48 +184,252 @@ public class GradleProject extends JavaProject {
         var defaultJdk = installedJdks.getOrDefault("1.8", null);
         var jdkVersion = installedJdks.getOrDefault(getJavaSourceVersion(), defaultJdk);
 
-        if (jdkVersion != null)
-            processBuilder.environment().put("JAVA_HOME", jdkVersion.toString());
+        // This commands downloads all dependencies locally
+        buildSuccess = runBuild(List.of("--gradle-user-home", "./gradle-cache", "--no-daemon"), jdkVersion);
+
+        // The build downloads dependencies and generates sources
+        refreshIndex();
+
+        return buildSuccess;
+    }
 
-        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
-        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+    /**
+     * Detects the Java version and builds the project in a single invocation on a warm daemon of the pool.
+     * The JDKs are tried until Gradle can configure the project. If the project declares a different Java version
+     * and the build failed, it is built once more with the matching JDK.
+     */
+    private void buildWithDaemonPool() {
+        if (builtWithDaemonPool) return;
+        builtWithDaemonPool = true;
+        searchedJavaSourceVersion = true;
+
+        var installedJdks = getInstalledJdks();
+        if (installedJdks.isEmpty()) {
+            logger.error("No jdks installed");
+            System.exit(1);
+        }
+
+        for (var jdk : installedJdks.values()) {
+            buildSuccess = runBuildWithDaemonPool(jdk);
+            if (Thread.currentThread().isInterrupted()) break;
+
+            // The export task ran, so the JDK is able to run Gradle for this project
+            if (!exportedJavaVersions.isEmpty()) {
+                javaSourceVersion = getExportedJavaVersion();
+
+                var matchingJdk = installedJdks.get(javaSourceVersion);
+                if (!buildSuccess && matchingJdk != null && !matchingJdk.equals(jdk))
+                    buildSuccess = runBuildWithDaemonPool(matchingJdk);
+
+                break;
+            }
+
+            if (buildSuccess) break;
+        }
+
+        // The build downloads dependencies and generates sources
+        refreshIndex();
+    }
+
+    private boolean runBuildWithDaemonPool(Path jdk) {
+        try (var lease = daemonPool.acquire(getDistribution(), jdk)) {
+            var success = runBuild(List.of("--gradle-user-home", lease.getUserHome().toString(), "--daemon"), jdk);
+
+            // Terminating the client doesn't stop the daemon, which would keep building while the slot is reused
+            if (buildAborted) lease.invalidate();
+            return success;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Failed to prepare the Gradle daemon: ", e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Runs `assemble` together with the export task of the init script.
+     *
+     * @param arguments Additional arguments, e.g. the Gradle user home.
+     * @param jdk       The JDK to run Gradle with, or null to use the current JAVA_HOME.
+     * @return True if the build is successful, otherwise false.
+     */
+    private boolean runBuild(List<String> arguments, Path jdk) {
+        var buildFilePath = getProjectPath().resolve("build.gradle");
 
+        // Base commands for the Gradle executable
+        var commands = getGradleExec();
+        commands.add("assemble");
+        commands.addAll(arguments);
+
+        // Export the class path in the same invocation, even if a module fails to compile
+        Path initScript = null;
         try {
-            Process process = processBuilder.start();
-            buildSuccess = process.waitFor() == 0;
-            process.destroy();
+            initScript = writeInitScript();
+            commands.addAll(List.of("--init-script", initScript.toString(), EXPORT_TASK, "--continue"));
+        } catch (IOException e) {
+            logger.error("Failed to write the Gradle init script, scanning the Gradle cache instead: ", e);
+        }
+
+        exportedClasspaths.clear();
+        exportedJavaVersions.clear();
+        buildAborted = false;
+
+        var runner = new ProcessRunner(commands)
+                .directory(buildFilePath.getParent())
+                .timeout(BUILD_TIMEOUT)
+                .onLine(this::readExportLine);
+
+        if (jdk != null)
+            runner.environment("JAVA_HOME", jdk.toString());
+
+        try {
+            var result = runner.run();
+            buildAborted = result.timedOut();
+            return result.isSuccess();
+        } catch (InterruptedException e) {
+            buildAborted = true;
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("Failed to execute the Gradle command: ", e);
+        } finally {
+            deleteInitScript(initScript);
         }
 
-        return buildSuccess;
+        return false;
     }
 
     /**
      * Retrieves the external dependencies of the project.
+     * Uses the class path exported by the build if available, otherwise all jars of the project's gradle-cache.
+     * The user home of a daemon slot is not scanned, it holds the dependencies of every repository built on the slot.
      *
      * @param source The Java source file whose dependencies are to be retrieved.
      * @return A list of paths to dependency files.
      */
     @Override
     protected List<Path> getDependencies(JavaSource source) {
+        if (!exportedClasspaths.isEmpty())
+            return exportedClasspaths.getOrDefault(toRealPath(source.getSourcePath()), List.of());
+
         //External dependencies usually are downloaded by maven, but can also be found in /libs or /lib folders
-        var depPath = getProjectPath().resolve("gradle-cache/caches/modules-2/files-2.1");
         var libsPath = getProjectPath().resolve("libs");
         var libPath = getProjectPath().resolve("lib");
 
         var dependencies = new ArrayList<String>();
+        if (!builtWithDaemonPool) {
+            dependencies.addAll(findJars(getProjectPath().resolve("gradle-cache/caches/modules-2/files-2.1")));
+        } else {
+            logger.warn("No class path exported by the daemon build, only the project's libraries are used: "
+                    + source.getSourcePath());
+        }
+        dependencies.addAll(findJars(libsPath));
+        dependencies.addAll(findJars(libPath));
 
-        if (Files.isDirectory(depPath))
-            collectFiles(depPath.toFile(), ".jar", dependencies);
+        return dependencies.stream().map(Paths::get).toList();
+    }
 
-        if (Files.isDirectory(libsPath))
-            collectFiles(libsPath.toFile(), ".jar", dependencies);
+    /**
+     * Parses a line printed by the export task and records the class path of a source directory
+     * or the Java version of a project.
+     *
+     * @param line A line of the build output.
+     */
+    private void readExportLine(String line) {
+        var parts = line.split("\t", -1);
+        if (parts.length != 3) return;
 
-        if (Files.isDirectory(libPath))
-            collectFiles(libPath.toFile(), ".jar", dependencies);
+        if (line.startsWith(CLASSPATH_LINE_PREFIX)) {
+            var classpath = parts[2].isEmpty() ? List.<Path>of()
+                    : Arrays.stream(parts[2].split(File.pathSeparator)).map(Paths::get).toList();
 
-        return dependencies.stream().map(Paths::get).toList();
+            exportedClasspaths.put(toRealPath(Paths.get(parts[1])), classpath);
+        } else if (line.startsWith(JAVA_VERSION_LINE_PREFIX) && parts[2].matches("(1\\.)?\\d+")) {
+            exportedJavaVersions.put(toRealPath(Paths.get(parts[1])), parseJavaVersionString(parts[2]));
+        }
+    }
+
+    /**
+     * @return The exported Java version of the module containing the first source, like the version detection
+     * without a daemon, or the version of any other module
+     */
+    private String getExportedJavaVersion() {
+        if (!getSources().isEmpty()) {
+            var modulePath = getSources().get(0).getSourcePath().getParent().getParent().getParent();
+            var version = exportedJavaVersions.get(toRealPath(modulePath));
+            if (version != null) return version;
+        }
+
+        return exportedJavaVersions.values().stream().findFirst().orElse(null);
+    }
+
+    /**
+     * @return The distribution URL of the Gradle wrapper, or "gradle" if the installed Gradle is used
+     */
+    private String getDistribution() {
+        var wrapperProperties = getProjectPath().resolve("gradle/wrapper/gradle-wrapper.properties");
+        if (!hasWrapperExec || !Files.isRegularFile(wrapperProperties)) return "gradle";
+
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(wrapperProperties)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            logger.error("Failed to read the Gradle wrapper properties: ", e);
+        }
+
+        return properties.getProperty("distributionUrl", "gradle");
+    }
+
+    /**
+     * Enables the batch mode, in which the Java version is detected during the build and the build runs on a warm
+     * daemon of the pool instead of a new Gradle JVM.
+     *
+     * @param daemonPool The pool of daemons, or null to run Gradle without a daemon.
+     */
+    public void setDaemonPool(GradleDaemonPool daemonPool) {
+        this.daemonPool = daemonPool;
+    }
+
+    private static Path writeInitScript() throws IOException {
+        var initScript = Files.createTempFile("export-classpath", ".gradle");
+
+        try (var in = GradleProject.class.getResourceAsStream(EXPORT_SCRIPT_RESOURCE)) {
+            if (in == null) throw new IOException("Missing resource: " + EXPORT_SCRIPT_RESOURCE);
+            Files.copy(in, initScript, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteInitScript(initScript);
+            throw e;
+        }
+
+        return initScript;
+    }
+
+    private static void deleteInitScript(Path initScript) {
+        if (initScript == null) return;
+
+        try {
+            Files.deleteIfExists(initScript);
+        } catch (IOException e) {
+            logger.error("Failed to delete the Gradle init script: ", e);
+        }
+    }
+
+    private static Path toRealPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * Reads the module dependencies from the build files of the modules.
+     *
+     * @return The dependencies by module directory, or null if they are unknown.
+     */
+    @Override
+    protected Map<Path, Set<Path>> getModuleDependencies() {
+        return ModuleGraph.readGradleDependencies(this);
     }
 
     /**
@@ -193,13 +440,7 @@ public class GradleProject extends JavaProject {
      */
     @Override
     protected List<String> getGeneratedFiles(JavaSource source) {
-        var generatedFiles = new ArrayList<String>();
-        var generatedSourcesPath = getProjectPath().resolve("build/generated");
-
-        if (!Files.isDirectory(generatedSourcesPath)) return List.of();
-
-        collectFiles(generatedSourcesPath.toFile(), ".java", generatedFiles);
-        return generatedFiles;
+        return findJavaFiles(getProjectPath().resolve("build/generated"));
     }
 
     /**
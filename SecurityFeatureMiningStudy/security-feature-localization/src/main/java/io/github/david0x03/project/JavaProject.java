@@ -1,15 +1,16 @@
 package io.github.david0x03.project;
 
+import io.github.david0x03.LocatorMetrics;
 import io.github.david0x03.ParsedFile;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
 
 public abstract class JavaProject {
 
@@ -19,13 +20,24 @@ public abstract class JavaProject {
     private final List<JavaSource> sources = new ArrayList<>();
 
     private List<ParsedFile> parsedFiles = new ArrayList<>();
+    private LocatorMetrics metrics = null;
     protected boolean buildSuccess = false;
 
     protected String javaSourceVersion = null;
     protected boolean searchedJavaSourceVersion = false;
 
-    protected JavaProject(Path projectPath) {
+    // The dependencies of all sources, resolved once and shared by all sources
+    private List<Path> classpath = null;
+
+    // The files of the project, shared by the project and its sources instead of walking the tree again
+    private ProjectIndex index;
+
+    // The dependencies between the modules of the sources, built on first use
+    private ModuleGraph moduleGraph = null;
+
+    protected JavaProject(Path projectPath, ProjectIndex index) {
         this.projectPath = projectPath;
+        this.index = index != null && index.getRoot().equals(projectPath) ? index : ProjectIndex.build(projectPath);
         loadSources();
     }
 
@@ -37,17 +49,29 @@ public abstract class JavaProject {
      * @return {@link MavenProject} or {@link GradleProject}
      */
     public static JavaProject load(Path projectPath) throws Exception {
+        return load(projectPath, null);
+    }
+
+    /**
+     * Loads a Maven or Gradle based Java project from an existing index of its files
+     * Throws an exception when an invalid path or non Maven/Gradle project is loaded
+     *
+     * @param projectPath Path to the java project
+     * @param index       The index of the project files, or null to index the project
+     * @return {@link MavenProject} or {@link GradleProject}
+     */
+    public static JavaProject load(Path projectPath, ProjectIndex index) throws Exception {
         if (!Files.isDirectory(projectPath))
             throw new Exception("project path must be a valid directory");
 
         if (MavenProject.isValidProject(projectPath))
-            return new MavenProject(projectPath);
+            return new MavenProject(projectPath, index);
 
         if (GradleProject.isValidProject(projectPath))
-            return new GradleProject(projectPath);
+            return new GradleProject(projectPath, index);
 
         if (AntProject.isValidProject(projectPath))
-            return new AntProject(projectPath);
+            return new AntProject(projectPath, index);
 
         throw new Exception("project must include a pom.xml or build.gradle file");
     }
@@ -58,32 +82,30 @@ public abstract class JavaProject {
      * Skips sources with the term "test" in its path
      */
     private void loadSources() {
-        Stream<Path> stream = null;
-
-        try {
-            stream = Files.find(this.projectPath, 10, (path, attributes) -> {
-                        if (!attributes.isDirectory()) return false;
-                        if (!path.endsWith("src/main/java")) return false;
-
-                        // Skip test sources
-                        if (path.toAbsolutePath().relativize(getProjectPath()).toString().toLowerCase().contains("test"))
-                            return false;
-
-                        return true;
-                    }
-            );
-
-            stream.forEach(src -> {
-                var source = new JavaSource(this, src);
-                sources.add(source);
-            });
-        } catch (IOException e) {
-            logger.error("Failed to access the file system: ", e);
-        } finally {
-            if (stream != null) stream.close();
+        for (var src : index.getSourceRoots()) {
+            // Skip test sources
+            if (src.toAbsolutePath().relativize(getProjectPath()).toString().toLowerCase().contains("test"))
+                continue;
+
+            sources.add(new JavaSource(this, src));
         }
     }
 
+    /**
+     * @return The index of the project files
+     */
+    public ProjectIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Indexes the project files again, e.g. after a build created jars and generated sources.
+     * The Java files of the already loaded sources are not changed.
+     */
+    protected void refreshIndex() {
+        index = ProjectIndex.build(projectPath);
+    }
+
     /**
      * @return The absolute project path
      */
@@ -112,6 +134,20 @@ public abstract class JavaProject {
         this.parsedFiles = parsedFiles;
     }
 
+    /**
+     * @return The metrics of the feature localization, null if the features were not located
+     */
+    public LocatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the metrics of the feature localization
+     */
+    public void setMetrics(LocatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * @return True if the build was successful, False otherwise
      */
@@ -119,6 +155,86 @@ public abstract class JavaProject {
         return buildSuccess;
     }
 
+    /**
+     * Restores the results of a previous build, so the project doesn't have to be built again.
+     *
+     * @param javaSourceVersion The detected Java source version, may be null.
+     * @param buildSuccess      Whether the build was successful.
+     * @param classpath         The class path of the project.
+     */
+    void restoreBuild(String javaSourceVersion, boolean buildSuccess, List<Path> classpath) {
+        this.javaSourceVersion = javaSourceVersion;
+        this.searchedJavaSourceVersion = true;
+        this.buildSuccess = buildSuccess;
+        this.classpath = classpath;
+    }
+
+    /**
+     * Retrieves the class path shared by all sources. It is resolved once from the dependencies of all sources,
+     * without duplicate jars, or restored from a previous build.
+     * Must not be called before the project has been built.
+     *
+     * @return A list of paths to dependency files.
+     */
+    public synchronized List<Path> getClasspath() {
+        if (classpath != null) return classpath;
+
+        var dependencies = new ArrayList<Path>();
+        for (var source : sources) dependencies.addAll(getDependencies(source));
+
+        classpath = List.copyOf(Classpath.deduplicate(dependencies));
+        logger.info("Class path: " + classpath.size() + " jar(s), " + (dependencies.size() - classpath.size()) + " duplicate(s) removed");
+        return classpath;
+    }
+
+    /**
+     * @return The module graph of the sources, built from the build files on first use
+     */
+    synchronized ModuleGraph getModuleGraph() {
+        if (moduleGraph != null) return moduleGraph;
+
+        moduleGraph = ModuleGraph.build(sources, getModuleDependencies());
+        logger.info("Module graph: " + moduleGraph.countReducedSources() + " of " + sources.size()
+                + " source(s) only need the sources of their upstream modules");
+        return moduleGraph;
+    }
+
+    /**
+     * @return The sources ordered so that the modules a source depends on come before it
+     */
+    public List<JavaSource> getSourcesInDependencyOrder() {
+        return getModuleGraph().getDependencyOrder();
+    }
+
+    /**
+     * Reads the modules each module of the project directly depends on, see {@link ModuleGraph}.
+     *
+     * @return The dependencies by module directory, or null if they are unknown and every source needs all sources.
+     */
+    protected Map<Path, Set<Path>> getModuleDependencies() {
+        return null;
+    }
+
+    /**
+     * Finds all jars within a directory using the project index.
+     *
+     * @param directory The directory to search.
+     * @return The paths of the jars, empty if the directory doesn't exist.
+     */
+    protected List<String> findJars(Path directory) {
+        return index.getJars(directory);
+    }
+
+    /**
+     * Finds all Java files within a directory using the project index.
+     *
+     * @param directory The directory to search.
+     * @return The paths of the Java files, empty if the directory doesn't exist.
+     */
+    protected List<String> findJavaFiles(Path directory) {
+        return index.getJavaFiles(directory);
+    }
+
     protected abstract List<String> getGeneratedFiles(JavaSource source);
 
     /**
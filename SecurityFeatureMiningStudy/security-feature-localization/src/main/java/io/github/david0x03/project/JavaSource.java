@@ -7,8 +7,6 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
-import static io.github.david0x03.Utils.collectFiles;
-
 public class JavaSource {
 
     private static final Logger logger = LogManager.getLogger(JavaSource.class);
@@ -33,7 +31,7 @@ public class JavaSource {
         }
 
         // Find all java files within the source
-        collectFiles(sourcePath.toFile(), ".java", javaFiles);
+        javaFiles.addAll(project.findJavaFiles(sourcePath));
     }
 
     /**
@@ -72,9 +70,16 @@ public class JavaSource {
     }
 
     /**
-     * @return The dependencies files for the source
+     * @return The sources needed to resolve the bindings of this source: its own and the ones of its upstream modules
+     */
+    public List<JavaSource> getUpstreamSources() {
+        return project.getModuleGraph().getUpstreamSources(this);
+    }
+
+    /**
+     * @return The dependencies files for the source, i.e. the class path shared by all sources of the project
      */
     public List<Path> getDependencies() {
-        return project.getDependencies(this);
+        return project.getClasspath();
     }
 }
@@ -1,12 +1,15 @@
 package io.github.david0x03.project;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import io.github.david0x03.ProcessRunner;
+
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static io.github.david0x03.Utils.*;
 
@@ -16,6 +19,9 @@ import static io.github.david0x03.Utils.*;
  */
 public class MavenProject extends JavaProject {
 
+    private static final Duration VERSION_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration BUILD_TIMEOUT = Duration.ofMinutes(10);
+
     private final boolean hasWrapperExec;
 
     /**
@@ -24,7 +30,17 @@ public class MavenProject extends JavaProject {
      * @param projectPath The path to the project directory.
      */
     public MavenProject(Path projectPath) {
-        super(projectPath);
+        this(projectPath, null);
+    }
+
+    /**
+     * Initializes a Maven project instance from an existing index of its files.
+     *
+     * @param projectPath The path to the project directory.
+     * @param index       The index of the project files, or null to index the project.
+     */
+    public MavenProject(Path projectPath, ProjectIndex index) {
+        super(projectPath, index);
 
         // Check for a Maven wrapper executable
         hasWrapperExec = Files.exists(projectPath.resolve("mvnw")) && Files.exists(projectPath.resolve("mvnw.cmd"));
@@ -41,7 +57,8 @@ public class MavenProject extends JavaProject {
     }
 
     /**
-     * Retrieves the Java source version used by the project by executing Maven commands.
+     * Retrieves the Java source version used by the project. The version is read from the POM files on disk,
+     * Maven is only executed if it cannot be decided from them.
      *
      * @return The Java source version as a string, or null if it cannot be determined.
      */
@@ -52,47 +69,46 @@ public class MavenProject extends JavaProject {
 
         var pomFilePath = getProjectPath().resolve("pom.xml");
 
+        javaSourceVersion = PomVersionResolver.resolve(pomFilePath);
+        if (javaSourceVersion != null) return javaSourceVersion;
+
         // Base commands for the Maven executable
         var commands = getMavenExec();
 
         // This builds the effective pom, listing the Java source version as a property if found
         commands.add("help:effective-pom");
 
-        ProcessBuilder processBuilder = new ProcessBuilder(commands);
-        processBuilder.directory(pomFilePath.getParent().toFile());
-        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        // The lines are consumed by the output thread of the runner, the version is read after the command finished
+        var foundVersion = new String[1];
 
         try {
-            Process process = processBuilder.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-
-                while ((line = reader.readLine()) != null) {
-                    // Empty the output buffer after the version has been identified
-                    if (javaSourceVersion != null) continue;
-                    String trimmedLine = line.trim();
-
-                    if (trimmedLine.matches("<source>(1\\.)?\\d+</source>")) {
-                        javaSourceVersion = parseJavaVersionString(trimmedLine.replaceAll("</?source>", ""));
-                    }
-
-                    if (trimmedLine.matches("<release>(1\\.)?\\d+</release>")) {
-                        javaSourceVersion = parseJavaVersionString(trimmedLine.replaceAll("</?release>", ""));
-                    }
-
-                    if (trimmedLine.matches("<maven.compiler.source>(1\\.)?\\d+</maven.compiler.source>")) {
-                        javaSourceVersion = parseJavaVersionString(trimmedLine.replaceAll("</?maven.compiler.source>", ""));
-                    }
-                }
-
-                process.waitFor();
-                process.destroy();
-            }
+            new ProcessRunner(commands)
+                    .directory(pomFilePath.getParent())
+                    .timeout(VERSION_TIMEOUT)
+                    .onLine(line -> {
+                        if (foundVersion[0] != null) return;
+                        String trimmedLine = line.trim();
+
+                        if (trimmedLine.matches("<source>(1\\.)?\\d+</source>")) {
+                            foundVersion[0] = parseJavaVersionString(trimmedLine.replaceAll("</?source>", ""));
+                        }
+
+                        if (trimmedLine.matches("<release>(1\\.)?\\d+</release>")) {
+                            foundVersion[0] = parseJavaVersionString(trimmedLine.replaceAll("</?release>", ""));
+                        }
+
+                        if (trimmedLine.matches("<maven.compiler.source>(1\\.)?\\d+</maven.compiler.source>")) {
+                            foundVersion[0] = parseJavaVersionString(trimmedLine.replaceAll("</?maven.compiler.source>", ""));
+                        }
+                    })
+                    .run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("Failed to execute the Maven command: ", e);
         }
 
+        javaSourceVersion = foundVersion[0];
         return javaSourceVersion;
     }
 
@@ -111,8 +127,9 @@ public class MavenProject extends JavaProject {
         // This commands downloads all dependencies locally
         commands.addAll(List.of("dependency:copy-dependencies", "-fae"));
 
-        ProcessBuilder processBuilder = new ProcessBuilder(commands);
-        processBuilder.directory(pomFilePath.getParent().toFile());
+        var runner = new ProcessRunner(commands)
+                .directory(pomFilePath.getParent())
+                .timeout(BUILD_TIMEOUT);
 
         // Try to set the found Java version, if it's installed on the system
         // Fall back to 1.8 if no version was found
@@ -121,19 +138,19 @@ public class MavenProject extends JavaProject {
         var jdkVersion = installedJdks.getOrDefault(getJavaSourceVersion(), defaultJdk);
 
         if (jdkVersion != null)
-            processBuilder.environment().put("JAVA_HOME", jdkVersion.toString());
-
-        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
-        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+            runner.environment("JAVA_HOME", jdkVersion.toString());
 
         try {
-            Process process = processBuilder.start();
-            buildSuccess = process.waitFor() == 0;
-            process.destroy();
+            buildSuccess = runner.run().isSuccess();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("Failed to execute the Maven command: ", e);
         }
 
+        // The build downloads dependencies and generates sources
+        refreshIndex();
+
         return buildSuccess;
     }
 
@@ -151,12 +168,8 @@ public class MavenProject extends JavaProject {
 
         var dependencies = new ArrayList<String>();
         dependencies.addAll(mvnDependencies);
-
-        if (Files.isDirectory(libsPath))
-            collectFiles(libsPath.toFile(), ".jar", dependencies);
-
-        if (Files.isDirectory(libPath))
-            collectFiles(libPath.toFile(), ".jar", dependencies);
+        dependencies.addAll(findJars(libsPath));
+        dependencies.addAll(findJars(libPath));
 
         // Turn the string paths into Path objects
         return dependencies.stream().map(Paths::get).toList();
@@ -173,11 +186,7 @@ public class MavenProject extends JavaProject {
     private List<String> getDependenciesRecursively(Path path) {
         if (!Files.isDirectory(path)) return List.of();
 
-        var dependencies = new ArrayList<String>();
-        var depPath = path.resolve("target/dependency");
-
-        if (Files.isDirectory(depPath))
-            collectFiles(depPath.toFile(), ".jar", dependencies);
+        var dependencies = new ArrayList<>(findJars(path.resolve("target/dependency")));
 
         if (path.equals(getProjectPath())) return dependencies;
 
@@ -185,6 +194,16 @@ public class MavenProject extends JavaProject {
         return dependencies;
     }
 
+    /**
+     * Reads the module dependencies from the build files of the modules.
+     *
+     * @return The dependencies by module directory, or null if they are unknown.
+     */
+    @Override
+    protected Map<Path, Set<Path>> getModuleDependencies() {
+        return ModuleGraph.readMavenDependencies(this);
+    }
+
     /**
      * Retrieves the files generated by Maven during the build process.
      *
@@ -207,11 +226,7 @@ public class MavenProject extends JavaProject {
     private List<String> getGeneratedFilesRecursively(Path path) {
         if (!Files.isDirectory(path)) return List.of();
 
-        var generatedFiles = new ArrayList<String>();
-        var generatedSourcesPath = path.resolve("target/generated-sources");
-
-        if (Files.isDirectory(generatedSourcesPath))
-            collectFiles(generatedSourcesPath.toFile(), ".java", generatedFiles);
+        var generatedFiles = new ArrayList<>(findJavaFiles(path.resolve("target/generated-sources")));
 
         if (path.equals(getProjectPath())) return generatedFiles;
 
@@ -0,0 +1,291 @@
+package io.github.david0x03.project;
+
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static io.github.david0x03.project.PomVersionResolver.getChild;
+import static io.github.david0x03.project.PomVersionResolver.getChildText;
+import static io.github.david0x03.project.PomVersionResolver.getChildren;
+
+/**
+ * The dependencies between the modules of a project, read from the POM or Gradle build files of the modules.
+ * <p>
+ * A module is the directory containing the "src/main/java" directory of a source. Each source only needs the
+ * sources of its own module and of the modules it depends on, directly or transitively, to resolve its bindings.
+ * If the dependencies of a module are unknown, e.g. because they are declared in a way that isn't understood,
+ * its source falls back to the sources of all modules.
+ */
+final class ModuleGraph {
+
+    // e.g. project(':core'), project(path: ":core") or project(path = ":core")
+    private static final Pattern GRADLE_PROJECT_PATTERN = Pattern.compile("project\\s*\\(\\s*(?:path\\s*[:=]\\s*)?[\"'](:[^\"']*)[\"']");
+
+    // Type-safe project accessors, e.g. projects.core, can't be mapped to a directory
+    private static final Pattern GRADLE_ACCESSOR_PATTERN = Pattern.compile("\\bprojects\\.[A-Za-z]");
+
+    private static final List<String> GRADLE_BUILD_FILES = List.of("build.gradle", "build.gradle.kts");
+
+    private final List<JavaSource> sources;
+    private final Map<JavaSource, List<JavaSource>> upstreamSources = new HashMap<>();
+    private final List<JavaSource> dependencyOrder = new ArrayList<>();
+
+    /**
+     * @param sources      The sources of the project.
+     * @param dependencies The modules each module directly depends on, or null if they are unknown.
+     */
+    private ModuleGraph(List<JavaSource> sources, Map<Path, Set<Path>> dependencies) {
+        this.sources = sources;
+
+        for (var source : sources) {
+            var modules = dependencies == null ? null : collectUpstreamModules(getModule(source), dependencies);
+
+            upstreamSources.put(source, modules == null ? sources
+                    : sources.stream().filter(s -> modules.contains(getModule(s))).toList());
+        }
+
+        var visited = new HashSet<JavaSource>();
+        for (var source : sources) addInDependencyOrder(source, visited);
+    }
+
+    /**
+     * Builds the graph of the sources of a project.
+     *
+     * @param sources      The sources of the project.
+     * @param dependencies The modules each module directly depends on, or null if they are unknown.
+     * @return The module graph.
+     */
+    static ModuleGraph build(List<JavaSource> sources, Map<Path, Set<Path>> dependencies) {
+        return new ModuleGraph(sources, dependencies);
+    }
+
+    /**
+     * @param source A source of the project.
+     * @return The sources of the module and its upstream modules, in the order of the project sources
+     */
+    List<JavaSource> getUpstreamSources(JavaSource source) {
+        return upstreamSources.getOrDefault(source, sources);
+    }
+
+    /**
+     * @return The sources ordered so that upstream modules come before the modules depending on them
+     */
+    List<JavaSource> getDependencyOrder() {
+        return dependencyOrder;
+    }
+
+    /**
+     * @return The number of sources, which don't use the sources of all modules
+     */
+    int countReducedSources() {
+        return (int) upstreamSources.values().stream().filter(upstream -> upstream.size() < sources.size()).count();
+    }
+
+    private void addInDependencyOrder(JavaSource source, Set<JavaSource> visited) {
+        if (!visited.add(source)) return;
+
+        // An upstream module has fewer upstream sources, unless both are part of a cycle, which is broken here
+        for (var upstream : upstreamSources.get(source)) {
+            if (upstream != source && upstreamSources.get(upstream).size() < upstreamSources.get(source).size())
+                addInDependencyOrder(upstream, visited);
+        }
+
+        dependencyOrder.add(source);
+    }
+
+    /**
+     * @return The module and all modules it depends on transitively, or null if one of their dependencies is unknown
+     */
+    private static Set<Path> collectUpstreamModules(Path module, Map<Path, Set<Path>> dependencies) {
+        var modules = new HashSet<Path>();
+        var queue = new ArrayList<Path>();
+        queue.add(module);
+
+        while (!queue.isEmpty()) {
+            var current = queue.remove(queue.size() - 1);
+            if (!modules.add(current)) continue;
+
+            var direct = dependencies.get(current);
+            if (direct == null) return null;
+            queue.addAll(direct);
+        }
+
+        return modules;
+    }
+
+    /**
+     * @return The directory containing the "src/main/java" directory of the source
+     */
+    static Path getModule(JavaSource source) {
+        var module = source.getSourcePath();
+        for (int i = 0; i < 3 && module.getParent() != null; i++) module = module.getParent();
+
+        return module.normalize();
+    }
+
+    /**
+     * Reads the dependencies between the Maven modules of a project from the dependencies declared in the POM of
+     * each module and its local parents. Dependencies are matched to modules by their group and artifact id, after
+     * the properties of the POM hierarchy are interpolated.
+     *
+     * @param project The project.
+     * @return The modules each module directly depends on, or null if the coordinates of a module can't be resolved.
+     * Modules without a POM, or with a dependency whose coordinates can't be resolved, are not included.
+     */
+    static Map<Path, Set<Path>> readMavenDependencies(JavaProject project) {
+        var poms = new HashMap<Path, List<Element>>();
+        var properties = new HashMap<Path, Map<String, String>>();
+        var modulesByArtifact = new HashMap<String, Path>();
+
+        // All modules, as modules without Java sources can still connect other modules
+        for (var pomPath : getModuleBuildFiles(project, List.of("pom.xml"))) {
+            var hierarchy = PomVersionResolver.loadHierarchy(pomPath);
+            if (hierarchy.isEmpty()) continue;
+
+            var module = pomPath.getParent();
+            var moduleProperties = PomVersionResolver.readProperties(hierarchy);
+
+            // A dependency on a module with unknown coordinates couldn't be told apart from an external one
+            var coordinates = getCoordinates(moduleProperties.get("project.groupId"),
+                    getChildText(hierarchy.get(0), "artifactId"), moduleProperties);
+            if (coordinates == null) return null;
+
+            poms.put(module, hierarchy);
+            properties.put(module, moduleProperties);
+            modulesByArtifact.put(coordinates, module);
+        }
+
+        var dependencies = new HashMap<Path, Set<Path>>();
+        poms.forEach((module, hierarchy) -> {
+            var upstream = new LinkedHashSet<Path>();
+
+            // Dependencies declared in a parent are inherited by the module, the ones of all profiles are included
+            var dependencyLists = new ArrayList<Element>();
+            for (var pom : hierarchy) {
+                dependencyLists.add(getChild(pom, "dependencies"));
+
+                var profiles = getChild(pom, "profiles");
+                if (profiles != null) getChildren(profiles).forEach(profile -> dependencyLists.add(getChild(profile, "dependencies")));
+            }
+
+            for (var dependenciesElement : dependencyLists) {
+                if (dependenciesElement == null) continue;
+
+                for (var dependency : getChildren(dependenciesElement)) {
+                    var coordinates = getCoordinates(getChildText(dependency, "groupId"),
+                            getChildText(dependency, "artifactId"), properties.get(module));
+
+                    // The dependency could be another module, so the module falls back to the sources of all modules
+                    if (coordinates == null) return;
+
+                    var upstreamModule = modulesByArtifact.get(coordinates);
+                    if (upstreamModule != null && !upstreamModule.equals(module)) upstream.add(upstreamModule);
+                }
+            }
+
+            dependencies.put(module, upstream);
+        });
+
+        return dependencies;
+    }
+
+    /**
+     * @return The group and artifact id with their properties interpolated, or null if they can't be resolved
+     */
+    private static String getCoordinates(String groupId, String artifactId, Map<String, String> properties) {
+        if (groupId == null || artifactId == null) return null;
+
+        groupId = PomVersionResolver.interpolate(groupId, properties);
+        artifactId = PomVersionResolver.interpolate(artifactId, properties);
+        if (groupId == null || artifactId == null) return null;
+
+        return groupId + ":" + artifactId;
+    }
+
+    /**
+     * Reads the dependencies between the Gradle modules of a project from the project dependencies in the build
+     * file of each module, e.g. {@code implementation project(':core')}. Project paths are mapped to directories
+     * by the default layout of Gradle.
+     *
+     * @param project The project.
+     * @return The modules each module directly depends on, or null if the dependencies can't be determined.
+     */
+    static Map<Path, Set<Path>> readGradleDependencies(JavaProject project) {
+        var rootPath = project.getProjectPath().toAbsolutePath().normalize();
+        var rootModuleHasSources = project.getSources().stream().anyMatch(source -> getModule(source).equals(rootPath));
+
+        var dependencies = new HashMap<Path, Set<Path>>();
+        for (var buildFile : getModuleBuildFiles(project, GRADLE_BUILD_FILES)) {
+            var module = buildFile.getParent();
+            var projectPaths = readGradleProjectPaths(buildFile);
+
+            // Dependencies configured for other modules in the root build file can't be assigned to their module
+            if (module.equals(rootPath) && !rootModuleHasSources) {
+                if (projectPaths == null || !projectPaths.isEmpty()) return null;
+                continue;
+            }
+
+            if (projectPaths == null) continue;
+
+            var upstream = new LinkedHashSet<Path>();
+            for (var projectPathName : projectPaths) {
+                var upstreamModule = rootPath;
+                for (var name : projectPathName.split(":")) {
+                    if (!name.isEmpty()) upstreamModule = upstreamModule.resolve(name);
+                }
+
+                // A project in a custom directory, its sources can't be found
+                if (!Files.isDirectory(upstreamModule)) return null;
+                if (!upstreamModule.equals(module)) upstream.add(upstreamModule);
+            }
+
+            dependencies.merge(module, upstream, (a, b) -> {
+                a.addAll(b);
+                return a;
+            });
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * @return The Gradle project paths referenced by a build file, or null if they can't be determined
+     */
+    private static List<String> readGradleProjectPaths(Path buildFile) {
+        try {
+            var content = Files.readString(buildFile);
+            if (GRADLE_ACCESSOR_PATTERN.matcher(content).find()) return null;
+
+            var projectPaths = new ArrayList<String>();
+            var matcher = GRADLE_PROJECT_PATTERN.matcher(content);
+            while (matcher.find()) projectPaths.add(matcher.group(1));
+
+            return projectPaths;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The build files with one of the names, excluding the ones in build outputs
+     */
+    private static List<Path> getModuleBuildFiles(JavaProject project, List<String> names) {
+        var rootPath = project.getProjectPath();
+
+        return project.getIndex().getBuildFiles().stream()
+                .filter(file -> names.contains(file.getFileName().toString()))
+                .filter(file -> BuildCache.isProjectFile(rootPath.relativize(file)))
+                .map(file -> file.toAbsolutePath().normalize())
+                .toList();
+    }
+}
@@ -0,0 +1,267 @@
+package io.github.david0x03.project;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.github.david0x03.Utils.parseJavaVersionString;
+
+/**
+ * Resolves the Java source version of a Maven project by reading its pom.xml and the parent POMs found on disk,
+ * without starting Maven.
+ * <p>
+ * "release" takes precedence over "source", as Maven ignores "source" once a release is set, and for each of them the
+ * compiler plugin setting takes precedence over the property.
+ * Profiles, remote parents and settings are not considered, so the resolver gives up if the version is not
+ * declared locally or refers to an unknown property.
+ */
+class PomVersionResolver {
+
+    private static final Logger logger = LogManager.getLogger(PomVersionResolver.class);
+
+    private static final int MAX_PARENT_DEPTH = 10;
+    private static final int MAX_INTERPOLATION_DEPTH = 10;
+
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Pattern VERSION_PATTERN = Pattern.compile("(1\\.)?\\d+");
+
+    private static final String COMPILER_PLUGIN = "maven-compiler-plugin";
+
+    private final List<Element> poms;
+    private final Map<String, String> properties;
+
+    /**
+     * @param poms The root elements of the POM and its local parents, starting with the POM itself.
+     */
+    private PomVersionResolver(List<Element> poms) {
+        this.poms = poms;
+        this.properties = readProperties(poms);
+    }
+
+    /**
+     * Tries to resolve the Java source version from the POM files on disk.
+     *
+     * @param pomPath The path to the pom.xml of the project.
+     * @return The Java source version as a string e.g. "1.8" or "17", or null if it cannot be decided.
+     */
+    static String resolve(Path pomPath) {
+        var poms = loadHierarchy(pomPath);
+        if (poms.isEmpty()) return null;
+
+        return new PomVersionResolver(poms).resolveVersion();
+    }
+
+    private String resolveVersion() {
+        var candidates = new ArrayList<String>();
+        candidates.add(getCompilerSetting("release"));
+        candidates.add(properties.get("maven.compiler.release"));
+        candidates.add(getCompilerSetting("source"));
+        candidates.add(properties.get("maven.compiler.source"));
+
+        for (var candidate : candidates) {
+            if (candidate == null || candidate.isEmpty()) continue;
+
+            // The first declared setting decides, an unresolvable value must not be skipped
+            var value = interpolate(candidate, properties);
+            if (value == null || !VERSION_PATTERN.matcher(value).matches()) return null;
+
+            return parseJavaVersionString(value);
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks up a configuration value of the compiler plugin, declared in the plugins or the plugin management
+     * of the POM or its parents.
+     *
+     * @param name The name of the configuration value.
+     * @return The raw value, or null if it is not configured.
+     */
+    private String getCompilerSetting(String name) {
+        for (var pom : poms) {
+            var build = getChild(pom, "build");
+            if (build == null) continue;
+
+            var value = getPluginSetting(getChild(build, "plugins"), name);
+            if (value == null) value = getPluginSetting(getChild(getChild(build, "pluginManagement"), "plugins"), name);
+            if (value != null) return value;
+        }
+
+        return null;
+    }
+
+    private static String getPluginSetting(Element plugins, String name) {
+        if (plugins == null) return null;
+
+        for (var plugin : getChildren(plugins)) {
+            if (!COMPILER_PLUGIN.equals(getChildText(plugin, "artifactId"))) continue;
+
+            var value = getChildText(getChild(plugin, "configuration"), name);
+            if (value != null) return value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Collects the properties of a POM and its local parents, where the properties of a POM override the ones of its
+     * parents, together with the coordinates of the POM and its parent, e.g. project.groupId or
+     * project.parent.groupId.
+     *
+     * @param poms The root elements of the POM and its local parents, starting with the POM itself.
+     * @return The properties by their names.
+     */
+    static Map<String, String> readProperties(List<Element> poms) {
+        var properties = new HashMap<String, String>();
+
+        for (int i = poms.size() - 1; i >= 0; i--) {
+            var propertiesElement = getChild(poms.get(i), "properties");
+            if (propertiesElement == null) continue;
+
+            for (var property : getChildren(propertiesElement)) properties.put(property.getTagName(), property.getTextContent().trim());
+        }
+
+        // The coordinates of the model take precedence over properties of the same name
+        var pom = poms.get(0);
+        var parent = getChild(pom, "parent");
+        for (var name : List.of("groupId", "artifactId", "version")) {
+            var parentValue = getChildText(parent, name);
+            var value = getChildText(pom, name);
+
+            // The group id and the version are inherited from the parent if not declared
+            if (value == null && !name.equals("artifactId")) value = parentValue;
+
+            if (value != null) {
+                properties.put("project." + name, value);
+                properties.put("pom." + name, value);
+            }
+            if (parentValue != null) properties.put("project.parent." + name, parentValue);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Replaces all property references in a value.
+     *
+     * @param value      The value to interpolate.
+     * @param properties The properties, see {@link #readProperties(List)}.
+     * @return The interpolated value, or null if a property is unknown.
+     */
+    static String interpolate(String value, Map<String, String> properties) {
+        for (int depth = 0; depth < MAX_INTERPOLATION_DEPTH; depth++) {
+            var matcher = PROPERTY_PATTERN.matcher(value);
+            if (!matcher.find()) return value;
+
+            var sb = new StringBuilder();
+            do {
+                var replacement = properties.get(matcher.group(1));
+                if (replacement == null) return null;
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+            } while (matcher.find());
+
+            matcher.appendTail(sb);
+            value = sb.toString();
+        }
+
+        // Cyclic property references
+        return null;
+    }
+
+    /**
+     * Loads a POM and all parent POMs that can be found on disk.
+     *
+     * @param pomPath The path to the POM.
+     * @return The root elements starting with the given POM, empty if it cannot be read.
+     */
+    static List<Element> loadHierarchy(Path pomPath) {
+        var poms = new ArrayList<Element>();
+        var path = pomPath;
+
+        while (path != null && poms.size() < MAX_PARENT_DEPTH) {
+            var pom = readPom(path);
+            if (pom == null) break;
+
+            // A POM with a different artifact id is not the declared parent, which is then only available remotely
+            if (!poms.isEmpty()) {
+                var expectedArtifactId = getChildText(getChild(poms.get(poms.size() - 1), "parent"), "artifactId");
+                if (expectedArtifactId != null && !expectedArtifactId.equals(getChildText(pom, "artifactId"))) break;
+            }
+
+            poms.add(pom);
+            path = getParentPath(path, pom);
+        }
+
+        return poms;
+    }
+
+    /**
+     * @return The path of the local parent POM, or null if the POM has no parent or it is not available locally
+     */
+    private static Path getParentPath(Path pomPath, Element pom) {
+        var parent = getChild(pom, "parent");
+        if (parent == null) return null;
+
+        var relativePathElement = getChild(parent, "relativePath");
+        var relativePath = relativePathElement == null ? "../pom.xml" : relativePathElement.getTextContent().trim();
+
+        // An empty relative path disables the lookup on disk
+        if (relativePath.isEmpty()) return null;
+
+        var parentPath = pomPath.getParent().resolve(relativePath).normalize();
+        if (Files.isDirectory(parentPath)) parentPath = parentPath.resolve("pom.xml");
+
+        return Files.isRegularFile(parentPath) ? parentPath : null;
+    }
+
+    private static Element readPom(Path path) {
+        try {
+            var factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setExpandEntityReferences(false);
+
+            var document = factory.newDocumentBuilder().parse(path.toFile());
+            return document.getDocumentElement();
+        } catch (Exception e) {
+            logger.error("Failed to read the POM file: " + path, e);
+            return null;
+        }
+    }
+
+    static Element getChild(Element element, String name) {
+        if (element == null) return null;
+
+        for (var child : getChildren(element)) {
+            if (child.getTagName().equals(name)) return child;
+        }
+
+        return null;
+    }
+
+    static String getChildText(Element element, String name) {
+        var child = getChild(element, name);
+        return child == null ? null : child.getTextContent().trim();
+    }
+
+    static List<Element> getChildren(Element element) {
+        var children = new ArrayList<Element>();
+        for (var node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) children.add((Element) node);
+        }
+
+        return children;
+    }
+}
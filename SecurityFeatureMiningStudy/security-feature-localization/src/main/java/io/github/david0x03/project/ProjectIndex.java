@@ -0,0 +1,211 @@
+package io.github.david0x03.project;
+
+import io.github.david0x03.FileWalker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the files of a project, built in a single parallel walk of the file system, see {@link FileWalker}.
+ * It records the source roots, Java files, jars, build files and Android manifests, so the project and its sources
+ * don't have to walk the tree again. Files are kept in the order they were found, and the files below any directory
+ * can be retrieved without walking it again.
+ * <p>
+ * Version control, package manager and IDE directories are not walked, and neither are the build outputs of Maven
+ * and Gradle modules, except for the generated sources and the copied dependencies.
+ */
+public class ProjectIndex {
+
+    private static final Logger logger = LogManager.getLogger(ProjectIndex.class);
+
+    // Source roots are only searched up to this depth below the project directory
+    private static final int MAX_SOURCE_ROOT_DEPTH = 10;
+
+    static final Set<String> BUILD_FILE_NAMES = Set.of(
+            "pom.xml", "build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts",
+            "gradle.properties", "libs.versions.toml", "gradle-wrapper.properties", "maven-wrapper.properties",
+            "build.xml"
+    );
+
+    private static final String ANDROID_MANIFEST = "AndroidManifest.xml";
+
+    private static final Set<String> PRUNED_DIRS = prunedDirs();
+
+    // The build output directories of a module and the files next to them that mark the module
+    private static final Map<String, List<String>> OUTPUT_DIRS = Map.of(
+            "target", List.of("pom.xml"),
+            "build", List.of("build.gradle", "build.gradle.kts")
+    );
+
+    // The contents of the build output directories that are used after the build
+    private static final Set<String> KEPT_OUTPUTS = Set.of("generated-sources", "dependency", "generated");
+
+    private final Path root;
+
+    private final List<Path> sourceRoots = new ArrayList<>();
+    private final List<String> javaFiles = new ArrayList<>();
+    private final List<String> jars = new ArrayList<>();
+    private final List<Path> buildFiles = new ArrayList<>();
+    private final List<Path> androidManifests = new ArrayList<>();
+
+    // The range of the Java files and jars below each directory, as files are added in depth-first order
+    private final Map<Path, int[]> ranges = new HashMap<>();
+
+    private ProjectIndex(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Indexes all files below a directory. Symbolic links are followed, loops and unreadable directories are skipped.
+     *
+     * @param root The project directory.
+     * @return The index of the project.
+     */
+    public static ProjectIndex build(Path root) {
+        var index = new ProjectIndex(root);
+        var start = System.nanoTime();
+
+        var entries = new FileWalker()
+                .filter(ProjectIndex::isIndexed)
+                .pruneNames(PRUNED_DIRS)
+                .prune(ProjectIndex::isBuildOutput)
+                .walkEntries(root);
+
+        // The directories containing the current entry, whose ranges are still open
+        Deque<Path> openDirs = new ArrayDeque<>();
+        index.openRange(root);
+        openDirs.push(root);
+
+        for (var entry : entries) {
+            var path = entry.path();
+
+            // Every directory precedes its entries, so the directories not containing this entry are complete
+            while (openDirs.size() > 1 && !openDirs.peek().equals(path.getParent())) index.closeRange(openDirs.pop());
+
+            if (entry.directory()) {
+                index.openRange(path);
+                openDirs.push(path);
+
+                if (path.endsWith("src/main/java") && root.relativize(path).getNameCount() <= MAX_SOURCE_ROOT_DEPTH)
+                    index.sourceRoots.add(path);
+
+                continue;
+            }
+
+            var fileName = path.getFileName().toString();
+            if (fileName.endsWith(".java")) index.javaFiles.add(path.toString());
+            else if (fileName.endsWith(".jar")) index.jars.add(path.toString());
+            else if (BUILD_FILE_NAMES.contains(fileName)) index.buildFiles.add(path);
+            else if (fileName.equals(ANDROID_MANIFEST)) index.androidManifests.add(path);
+        }
+
+        while (!openDirs.isEmpty()) index.closeRange(openDirs.pop());
+
+        logger.info("Indexed " + index.javaFiles.size() + " Java file(s) and " + index.jars.size() + " jar(s) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return index;
+    }
+
+    private void openRange(Path dir) {
+        ranges.put(normalize(dir), new int[]{javaFiles.size(), -1, jars.size(), -1});
+    }
+
+    private void closeRange(Path dir) {
+        var range = ranges.get(normalize(dir));
+        range[1] = javaFiles.size();
+        range[3] = jars.size();
+    }
+
+    private static boolean isIndexed(String fileName) {
+        return fileName.endsWith(".java") || fileName.endsWith(".jar") || BUILD_FILE_NAMES.contains(fileName)
+                || fileName.equals(ANDROID_MANIFEST);
+    }
+
+    private static Set<String> prunedDirs() {
+        var dirs = new HashSet<>(FileWalker.VCS_AND_PACKAGE_DIRS);
+        dirs.add(".gradle");
+        dirs.add(".idea");
+        return Set.copyOf(dirs);
+    }
+
+    /**
+     * @return True if the directory is located directly in the build output directory of a module and is not used
+     * after the build
+     */
+    private static boolean isBuildOutput(Path dir) {
+        var outputDir = dir.getParent();
+        if (outputDir == null || outputDir.getFileName() == null || KEPT_OUTPUTS.contains(dir.getFileName().toString()))
+            return false;
+
+        var markers = OUTPUT_DIRS.get(outputDir.getFileName().toString());
+        if (markers == null || outputDir.getParent() == null) return false;
+
+        // A package or directory of the same name, e.g. "com/example/build", is no build output
+        return markers.stream().anyMatch(marker -> Files.isRegularFile(outputDir.resolveSibling(marker)));
+    }
+
+    /**
+     * @return The indexed project directory
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return The directories ending with "src/main/java", in the order they were found
+     */
+    public List<Path> getSourceRoots() {
+        return Collections.unmodifiableList(sourceRoots);
+    }
+
+    /**
+     * @param directory A directory within the project.
+     * @return The absolute paths of the Java files below the directory, empty if it doesn't exist
+     */
+    public List<String> getJavaFiles(Path directory) {
+        var range = ranges.get(normalize(directory));
+        if (range == null) return List.of();
+
+        return Collections.unmodifiableList(javaFiles.subList(range[0], range[1]));
+    }
+
+    /**
+     * @param directory A directory within the project.
+     * @return The absolute paths of the jars below the directory, empty if it doesn't exist
+     */
+    public List<String> getJars(Path directory) {
+        var range = ranges.get(normalize(directory));
+        if (range == null) return List.of();
+
+        return Collections.unmodifiableList(jars.subList(range[2], range[3]));
+    }
+
+    /**
+     * @return The build files of the project, e.g. pom.xml or build.gradle, see {@link #BUILD_FILE_NAMES}
+     */
+    public List<Path> getBuildFiles() {
+        return Collections.unmodifiableList(buildFiles);
+    }
+
+    /**
+     * @return True if the project contains an AndroidManifest.xml file, otherwise false
+     */
+    public boolean hasAndroidManifest() {
+        return !androidManifests.isEmpty();
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
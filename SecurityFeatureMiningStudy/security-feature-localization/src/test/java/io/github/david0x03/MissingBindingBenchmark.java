@@ -0,0 +1,106 @@
+package io.github.david0x03;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares the heap retained per parsed file by the missing bindings of the file when they keep the unresolved
+ * AST node, as they did before, and when they only keep the compact description of {@link MissingBinding}.
+ * The files call methods of a library that is not on the class path, so every call is a missing binding.
+ * <p>
+ * Usage: MissingBindingBenchmark [directory] [files] [calls per file]
+ */
+public class MissingBindingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        var root = Path.of(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "missing-binding-benchmark");
+        var fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        var calls = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        FileUtils.deleteDirectory(root.toFile());
+        var files = createFiles(Files.createDirectories(root), fileCount, calls);
+
+        // The first round warms up the parser, so its classes and caches are not counted
+        for (int round = 0; round < 3; round++) {
+            var nodes = retain(files, node -> node);
+            var bindings = retain(files, node -> MissingBinding.fromNode(ApiCall.APICallType.MethodInvocation, node, root));
+            if (round == 0) continue;
+
+            System.out.println("AST nodes: " + nodes / fileCount + " bytes per file, "
+                    + "missing bindings: " + bindings / fileCount + " bytes per file");
+        }
+
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private static String[] createFiles(Path dir, int fileCount, int calls) throws IOException {
+        var files = new String[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            var code = new StringBuilder("package bench;\n\nimport org.unknown.Cipher;\n\npublic class File" + i + " {\n");
+            code.append("    void run(Cipher cipher) {\n");
+            for (int call = 0; call < calls; call++) code.append("        cipher.update").append(call).append("(\"data\", ").append(call).append(");\n");
+            code.append("    }\n}\n");
+
+            var file = dir.resolve("File" + i + ".java");
+            Files.writeString(file, code);
+            files[i] = file.toString();
+        }
+
+        return files;
+    }
+
+    /**
+     * Parses the files with bindings and keeps the result of the mapping for every unresolved call.
+     *
+     * @return The heap in bytes retained by the kept results.
+     */
+    private static long retain(String[] files, Function<MethodInvocation, Object> mapping) {
+        var before = usedHeap();
+        var retained = new ArrayList<List<Object>>();
+
+        var parser = ASTParser.newParser(AST.getJLSLatest());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(true);
+        parser.setBindingsRecovery(true);
+        parser.setCompilerOptions(JavaCore.getOptions());
+        parser.setEnvironment(new String[0], new String[0], null, true);
+        parser.createASTs(files, null, new String[0], new FileASTRequestor() {
+            @Override
+            public void acceptAST(String source, CompilationUnit cu) {
+                var results = new ArrayList<>();
+                cu.accept(new ASTVisitor() {
+                    @Override
+                    public boolean visit(MethodInvocation node) {
+                        if (node.resolveMethodBinding() == null) results.add(mapping.apply(node));
+                        return true;
+                    }
+                });
+                retained.add(results);
+            }
+        }, null);
+
+        var after = usedHeap();
+        if (retained.stream().mapToInt(List::size).sum() == 0) throw new IllegalStateException("No missing bindings");
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.david0x03;
+
+import java.util.Random;
+
+/**
+ * Compares {@link Utils#stripGenerics(String)} with the regex loop it replaced. The results of both are first
+ * checked for equality on random names including unbalanced brackets, then both are timed on heavily generic names.
+ * <p>
+ * Usage: StripGenericsBenchmark [random names] [iterations] [runs]
+ */
+public class StripGenericsBenchmark {
+
+    private static final String ALPHABET = "ab.<>, ";
+
+    private static final String[] GENERIC_NAMES = {
+            "java.util.Map<java.lang.String, java.util.List<java.util.Map<K, java.util.Set<V>>>>.computeIfAbsent",
+            "com.example.Repository<com.example.Entity<java.util.Optional<java.util.List<T>>>, java.lang.Long>.findAll",
+            "java.util.function.Function<java.util.Map.Entry<K, java.util.List<V>>, java.util.stream.Stream<R>>.apply",
+    };
+
+    public static void main(String[] args) {
+        var randomNames = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        var runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        checkEquivalence(randomNames);
+
+        // The first run of each kind warms up the JIT
+        for (int run = -1; run < runs; run++) {
+            var start = System.nanoTime();
+            var regexLength = 0L;
+            for (int i = 0; i < iterations; i++) regexLength += stripGenericsRegex(GENERIC_NAMES[i % GENERIC_NAMES.length]).length();
+            var regexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            var scanLength = 0L;
+            for (int i = 0; i < iterations; i++) scanLength += Utils.stripGenerics(GENERIC_NAMES[i % GENERIC_NAMES.length]).length();
+            var scanNanos = System.nanoTime() - start;
+
+            if (run < 0) continue;
+            if (regexLength != scanLength) throw new IllegalStateException("Results differ");
+            System.out.printf("Regex loop: %.2f us per name, single pass: %.2f us per name%n",
+                    regexNanos / 1000.0 / iterations, scanNanos / 1000.0 / iterations);
+        }
+    }
+
+    /**
+     * Compares both implementations on random names built from identifier characters, dots, commas and brackets.
+     */
+    private static void checkEquivalence(int count) {
+        var random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            var name = new StringBuilder();
+            var length = random.nextInt(40);
+            for (int j = 0; j < length; j++) name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+
+            var expected = stripGenericsRegex(name.toString());
+            var actual = Utils.stripGenerics(name.toString());
+            if (!expected.equals(actual))
+                throw new IllegalStateException("Results differ for \"" + name + "\": \"" + expected + "\" and \"" + actual + "\"");
+        }
+
+        System.out.println("Both implementations agree on " + count + " random names");
+    }
+
+    /**
+     * The loop that ParsedFile.addApiCall used before.
+     */
+    private static String stripGenericsRegex(String name) {
+        var cleanName = name;
+        final var genericsRegex = "<[^<>]*>";
+        while (cleanName.matches(".*<[^<>]*>.*")) {
+            cleanName = cleanName.replaceAll(genericsRegex, "");
+        }
+
+        return cleanName;
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.david0x03.project;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Checks the Java versions {@link PomVersionResolver} resolves for the POM fixtures under src/test/resources/poms.
+ * Each fixture directory contains a pom.xml, whose expected version is listed here.
+ * <p>
+ * Usage: PomVersionResolverCheck [fixture directory]
+ */
+public class PomVersionResolverCheck {
+
+    private static final Map<String, String> EXPECTED_VERSIONS = Map.of(
+            // The release property overrides the source of the compiler plugin
+            "release-property-source-plugin", "17"
+    );
+
+    public static void main(String[] args) throws Exception {
+        var fixtures = Path.of(args.length > 0 ? args[0] : "src/test/resources/poms");
+        var failures = 0;
+
+        try (var dirs = Files.list(fixtures)) {
+            for (var dir : dirs.sorted().toList()) {
+                var name = dir.getFileName().toString();
+                if (!EXPECTED_VERSIONS.containsKey(name)) throw new IllegalStateException("No expected version for fixture: " + name);
+
+                var expected = EXPECTED_VERSIONS.get(name);
+                var actual = PomVersionResolver.resolve(dir.resolve("pom.xml"));
+                var passed = expected.equals(actual);
+                if (!passed) failures++;
+
+                System.out.println((passed ? "OK   " : "FAIL ") + name + ": expected " + expected + ", resolved " + actual);
+            }
+        }
+
+        if (failures > 0) throw new IllegalStateException(failures + " fixture(s) resolved to the wrong version");
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.david0x03.project;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Compares {@link ProjectIndex#build(Path)} with a sequential walk of the whole tree on a synthetic multi-module
+ * project. Every module contains a deep package tree, build outputs and a node_modules directory, and the project
+ * contains a Git directory.
+ * <p>
+ * Usage: ProjectIndexBenchmark [directory] [depth] [fan-out] [runs]
+ */
+public class ProjectIndexBenchmark {
+
+    private static final int MODULES = 4;
+
+    public static void main(String[] args) throws IOException {
+        var root = Path.of(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "project-index-benchmark");
+        var depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        var fanOut = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        var runs = args.length > 3 ? Integer.parseInt(args[3]) : 7;
+
+        FileUtils.deleteDirectory(root.toFile());
+        Files.writeString(Files.createDirectories(root).resolve("pom.xml"), "<project/>");
+        createTree(root.resolve(".git/objects"), depth, fanOut, "");
+
+        for (int module = 0; module < MODULES; module++) {
+            var moduleDir = Files.createDirectories(root.resolve("module" + module));
+            Files.writeString(moduleDir.resolve("pom.xml"), "<project/>");
+
+            createTree(moduleDir.resolve("src/main/java"), depth, fanOut, ".java");
+            createTree(moduleDir.resolve("target/classes"), depth, fanOut, ".class");
+            createTree(moduleDir.resolve("target/generated-sources"), 2, fanOut, ".java");
+            createTree(moduleDir.resolve("node_modules"), depth - 1, fanOut, ".js");
+        }
+
+        System.out.println("Tree of " + count(root) + " entries in " + root);
+
+        for (int round = 0; round < 3; round++) {
+            var sequential = new long[runs];
+            var indexed = new long[runs];
+            var sequentialFiles = 0L;
+            var indexedFiles = 0;
+
+            // The first run of each kind warms up the page cache and the JIT
+            for (int run = -1; run < runs; run++) {
+                var start = System.nanoTime();
+                sequentialFiles = countJavaFiles(root);
+                if (run >= 0) sequential[run] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                indexedFiles = ProjectIndex.build(root).getJavaFiles(root).size();
+                if (run >= 0) indexed[run] = System.nanoTime() - start;
+            }
+
+            System.out.println("Sequential walk: " + median(sequential) + " ms (" + sequentialFiles + " Java files), "
+                    + "project index: " + median(indexed) + " ms (" + indexedFiles + " Java files)");
+        }
+
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private static void createTree(Path dir, int depth, int fanOut, String suffix) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < fanOut; i++) Files.writeString(dir.resolve("File" + i + suffix), "class File" + i + " {}");
+
+        if (depth == 0) return;
+        for (int i = 0; i < fanOut; i++) createTree(dir.resolve("d" + i), depth - 1, fanOut, suffix);
+    }
+
+    private static long count(Path root) throws IOException {
+        try (var stream = Files.walk(root)) {
+            return stream.count();
+        }
+    }
+
+    /**
+     * Walks the whole tree like the index did before it pruned its walk.
+     */
+    private static long countJavaFiles(Path root) throws IOException {
+        var count = new long[1];
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(".java")) count[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return count[0];
+    }
+
+    private static long median(long[] nanos) {
+        var sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000;
+    }
+}
@@ -1,19 +1,25 @@
 package io.github.david0x03;
 
+import io.github.david0x03.database.ConnectionPool;
+import io.github.david0x03.database.PooledConnection;
 import io.github.david0x03.metrics.FileMetrics;
 import io.github.david0x03.metrics.LocCalculator;
 import io.github.david0x03.project.JavaProject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Manages database interactions for storing mined repositories, files, and features.
- * Also tracks failed repository mining attempts.
+ * Also tracks failed repository mining attempts and the leases of the repositories in progress.
  */
 public class Database {
 
@@ -29,17 +35,102 @@ public class Database {
                 FOREIGN KEY (repository_id) REFERENCES repositories(id)
             );""";
 
+    // Added after the initial schema, so existing tables are migrated
+    private static final String ADD_LOCATOR_METRICS_COLUMN = """
+            ALTER TABLE mined_repositories ADD COLUMN IF NOT EXISTS locator_metrics TEXT;""";
+
     private static final String UPSERT_MINED_REPOSITORY = """
-            INSERT INTO mined_repositories (repository_id, java_version, build_success, note)
-            VALUES (?, ?, ?, ?)
+            INSERT INTO mined_repositories (repository_id, java_version, build_success, note, locator_metrics)
+            VALUES (?, ?, ?, ?, ?)
             ON CONFLICT (repository_id)
             DO UPDATE SET
                 java_version = EXCLUDED.java_version,
                 build_success = EXCLUDED.build_success,
-                note = EXCLUDED.note
-            RETURNING id;
+                note = EXCLUDED.note,
+                locator_metrics = EXCLUDED.locator_metrics
+            RETURNING id, xmax <> 0 AS existed;
+            """;
+
+    // A failure never replaces the result of a miner that mined the repository in the meantime
+    private static final String INSERT_FAILED_REPOSITORY = """
+            INSERT INTO mined_repositories (repository_id, java_version, build_success, note, locator_metrics)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (repository_id) DO NOTHING;
+            """;
+
+    // Removes the results of an earlier attempt, e.g. of a miner that crashed before it released the lease
+    private static final String DELETE_FEATURES = """
+            DELETE FROM features
+            WHERE file_id IN (SELECT id FROM files WHERE mined_repository_id = ?);
+            """;
+
+    private static final String DELETE_FILES = """
+            DELETE FROM files
+            WHERE mined_repository_id = ?;
             """;
 
+    // A repository in progress is leased to one worker until its result is in mined_repositories. Workers renew
+    // their leases while they are alive, the lease of a crashed worker expires and the repository is claimed again.
+    // Released leases are kept, as the claims compare against the latest lease of a repository, which is more
+    // recent than the mined_repositories seen by a concurrent claim.
+    private static final String CREATE_REPOSITORY_LEASES_TABLE = """
+            CREATE TABLE IF NOT EXISTS repository_leases (
+                repository_id BIGINT PRIMARY KEY,
+                worker VARCHAR(255),
+                claimed_at TIMESTAMPTZ,
+                expires_at TIMESTAMPTZ,
+                released_at TIMESTAMPTZ,
+                FOREIGN KEY (repository_id) REFERENCES repositories(id)
+            );""";
+
+    // Locks the next repository that is neither mined nor leased, skipping the ones locked by concurrent claims,
+    // and leases it. An expired lease is taken over, a lease taken or released in the meantime by another worker
+    // is not. Returns no row if no repository is left, and a row without a repository if the claim lost a race.
+    private static final String CLAIM_REPOSITORY = """
+            WITH candidate AS (
+                SELECT id FROM repositories
+                WHERE NOT EXISTS (
+                    SELECT repository_id FROM mined_repositories
+                    WHERE mined_repositories.repository_id = repositories.id
+                )
+                AND NOT EXISTS (
+                    SELECT repository_id FROM repository_leases
+                    WHERE repository_leases.repository_id = repositories.id
+                    AND (repository_leases.expires_at > now() OR repository_leases.released_at IS NOT NULL)
+                )
+                ORDER BY id
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            ), lease AS (
+                INSERT INTO repository_leases (repository_id, worker, claimed_at, expires_at)
+                SELECT id, ?, now(), now() + make_interval(secs => ?) FROM candidate
+                ON CONFLICT (repository_id)
+                DO UPDATE SET
+                    worker = EXCLUDED.worker,
+                    claimed_at = EXCLUDED.claimed_at,
+                    expires_at = EXCLUDED.expires_at
+                WHERE repository_leases.expires_at <= now() AND repository_leases.released_at IS NULL
+                RETURNING repository_id, xmax <> 0 AS reclaimed
+            )
+            SELECT repositories.*, lease.reclaimed FROM candidate
+            LEFT JOIN lease ON lease.repository_id = candidate.id
+            LEFT JOIN repositories ON repositories.id = lease.repository_id;
+            """;
+
+    private static final String RENEW_LEASES = """
+            UPDATE repository_leases SET expires_at = now() + make_interval(secs => ?)
+            WHERE worker = ? AND repository_id = ANY (?) AND released_at IS NULL
+            RETURNING repository_id;
+            """;
+
+    private static final String RELEASE_LEASE = """
+            UPDATE repository_leases SET released_at = now()
+            WHERE worker = ? AND repository_id = ? AND released_at IS NULL;
+            """;
+
+    // The number of lost races after which a claim gives up
+    private static final int MAX_CLAIM_ATTEMPTS = 10;
+
     private static final String CREATE_FILES_TABLE = """
             CREATE TABLE IF NOT EXISTS files (
                 id BIGSERIAL PRIMARY KEY,
@@ -52,10 +143,15 @@ public class Database {
                 FOREIGN KEY (mined_repository_id) REFERENCES mined_repositories(id)
             );""";
 
+    // Reserves the ids of the files of a repository in one round trip, so the features can reference them
+    private static final String NEXT_FILE_IDS = """
+            SELECT nextval(pg_get_serial_sequence('files', 'id'))
+            FROM generate_series(1, ?);
+            """;
+
     private static final String INSERT_FILE = """
-            INSERT INTO files (mined_repository_id, path, lines, lines_of_code, comment_lines, missing_bindings)
-            VALUES (?, ?, ?, ?, ?, ?)
-            RETURNING id;
+            INSERT INTO files (id, mined_repository_id, path, lines, lines_of_code, comment_lines, missing_bindings)
+            VALUES (?, ?, ?, ?, ?, ?, ?);
             """;
 
     private static final String CREATE_FEATURES_TABLE = """
@@ -70,31 +166,38 @@ public class Database {
 
     private static final String INSERT_FEATURE = """
             INSERT INTO features (file_id, line, api, feature)
-            VALUES (?, ?, ?, ?)
-            RETURNING id;
+            VALUES (?, ?, ?, ?);
             """;
 
-    private static final Connection db;
+    // The number of rows sent per batch
+    private static final int BATCH_SIZE = 5000;
 
-    static {
-        String url = System.getenv("DB_URL");
-        String user = System.getenv("DB_USER");
-        String password = System.getenv("DB_PASSWORD");
+    // Released at the end of the transaction creating the schema
+    private static final String LOCK_SCHEMA = """
+            SELECT pg_advisory_xact_lock(hashtext('security-feature-mining schema'));""";
 
-        try {
-            db = DriverManager.getConnection(url, user, password);
+    // Shared by the stages of the miner and the lease heartbeat
+    private static final int MAX_CONNECTIONS = 4;
 
-            db.createStatement().executeUpdate(CREATE_MINED_REPOSITORIES_TABLE);
-            db.createStatement().executeUpdate(CREATE_FILES_TABLE);
-            db.createStatement().executeUpdate(CREATE_FEATURES_TABLE);
+    private static final ConnectionPool pool = ConnectionPool.fromEnvironment(MAX_CONNECTIONS);
 
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                try {
-                    if (!db.isClosed()) db.close();
-                } catch (SQLException e) {
-                    logger.error("Failed to gracefully close the database connection.", e);
-                }
-            }));
+    static {
+        try {
+            // Miners started at the same time would race to create the tables, which fails in PostgreSQL even
+            // with IF NOT EXISTS, so the schema is created in one transaction holding a lock
+            pool.inTransaction(connection -> {
+                var stmt = connection.getConnection().createStatement();
+                stmt.execute(LOCK_SCHEMA);
+                stmt.executeUpdate(CREATE_MINED_REPOSITORIES_TABLE);
+                stmt.executeUpdate(ADD_LOCATOR_METRICS_COLUMN);
+                stmt.executeUpdate(CREATE_REPOSITORY_LEASES_TABLE);
+                stmt.executeUpdate(CREATE_FILES_TABLE);
+                stmt.executeUpdate(CREATE_FEATURES_TABLE);
+                stmt.close();
+                return null;
+            });
+
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close));
         } catch (SQLException e) {
             logger.error("Failed to establish a database connection.", e);
             System.exit(1);
@@ -122,19 +225,12 @@ public class Database {
                 """;
 
         try {
-            var pStmt = db.prepareStatement(sql);
-            var res = pStmt.executeQuery();
-
-            if (!res.next()) return null;
-
-            long id = res.getLong("id");
-            String url = res.getString("url");
-            String owner = res.getString("owner");
-            String name = res.getString("name");
-            String createdAt = res.getString("created_at");
-            int stars = res.getInt("stars");
-            int size = res.getInt("size");
-            return new Repository(id, url, owner, name, createdAt, stars, size);
+            return pool.withConnection(connection -> {
+                var res = connection.prepare(sql).executeQuery();
+
+                if (!res.next()) return null;
+                return readRepository(res);
+            });
         } catch (SQLException e) {
             logger.error("Failed to query repository: ", e);
             return null;
@@ -142,93 +238,252 @@ public class Database {
     }
 
     /**
-     * Adds a mined repository, its files, and features to the database.
+     * Claims the next repository that has not been mined yet and is not leased to a worker, and leases it to the
+     * given worker. Concurrent workers, also on other machines, never claim the same repository while its lease
+     * is valid. The lease has to be renewed before it expires and released once the result is in the database.
+     *
+     * @param worker        The id of the worker.
+     * @param leaseDuration The time after which the lease expires unless it is renewed.
+     * @return A {@link Repository} object or null if no un-mined repository was found.
+     * @throws SQLException If the database could not be reached, or a {@link SQLTransientException} if other workers
+     *                      leased every selected candidate first. The claim can be retried in both cases.
+     */
+    public static Repository claimRepository(String worker, Duration leaseDuration) throws SQLException {
+        return pool.withConnection(connection -> {
+            var pStmt = connection.prepare(CLAIM_REPOSITORY);
+            pStmt.setString(1, worker);
+            pStmt.setDouble(2, leaseDuration.toMillis() / 1000.0);
+
+            for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+                var res = pStmt.executeQuery();
+                if (!res.next()) return null;
+
+                // Another worker leased the candidate after it was selected
+                if (res.getObject("id") == null) continue;
+
+                var repo = readRepository(res);
+                if (res.getBoolean("reclaimed")) logger.info("Reclaimed the expired lease of repository: " + repo.getId());
+                return repo;
+            }
+
+            throw new SQLTransientException("Failed to claim a repository in " + MAX_CLAIM_ATTEMPTS + " attempts");
+        });
+    }
+
+    /**
+     * Renews the leases of a worker on the given repositories.
+     *
+     * @param worker        The id of the worker.
+     * @param repositoryIds The ids of the leased repositories.
+     * @param leaseDuration The time from now after which the leases expire unless they are renewed again.
+     * @return The ids of the renewed repositories, or null if the database could not be reached. A repository
+     * missing from the ids is not leased to the worker anymore.
+     */
+    public static Set<Long> renewLeases(String worker, Collection<Long> repositoryIds, Duration leaseDuration) {
+        try {
+            return pool.withConnection(connection -> {
+                var pStmt = connection.prepare(RENEW_LEASES);
+                pStmt.setDouble(1, leaseDuration.toMillis() / 1000.0);
+                pStmt.setString(2, worker);
+                pStmt.setArray(3, connection.getConnection().createArrayOf("bigint", repositoryIds.toArray()));
+                var res = pStmt.executeQuery();
+
+                var renewed = new HashSet<Long>();
+                while (res.next()) renewed.add(res.getLong("repository_id"));
+                return renewed;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to renew leases: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * Releases the lease of a worker on a repository once its result is in the database. The repository is not
+     * claimed again afterward.
+     *
+     * @param worker       The id of the worker.
+     * @param repositoryId The id of the leased repository.
+     */
+    public static void releaseLease(String worker, long repositoryId) {
+        try {
+            pool.withConnection(connection -> {
+                var pStmt = connection.prepare(RELEASE_LEASE);
+                pStmt.setString(1, worker);
+                pStmt.setLong(2, repositoryId);
+                return pStmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to release the lease of repository: " + repositoryId, e);
+        }
+    }
+
+    private static Repository readRepository(ResultSet res) throws SQLException {
+        long id = res.getLong("id");
+        String url = res.getString("url");
+        String owner = res.getString("owner");
+        String name = res.getString("name");
+        String createdAt = res.getString("created_at");
+        int stars = res.getInt("stars");
+        int size = res.getInt("size");
+        return new Repository(id, url, owner, name, createdAt, stars, size);
+    }
+
+    /**
+     * Adds a mined repository, its files, and features to the database. All rows of the repository are written in
+     * one transaction and sent in batches instead of one round trip per row.
+     * If they can't be written, the repository is recorded as failed.
      *
      * @param repo    The {@link Repository} object representing the mined repository.
      * @param project The {@link JavaProject} containing the mined data.
      * @param note    An optional note to denote an error.
+     * @return True if the repository was written. If not, the caller has to record the failure.
      */
-    public static void addMinedRepo(Repository repo, JavaProject project, String note) {
-        long minedRepoId;
+    public static boolean addMinedRepo(Repository repo, JavaProject project, String note) {
+        var fileMetrics = new LocCalculator(project).getFileMetrics();
+
+        var start = System.nanoTime();
+        int featureRows;
         try {
-            var pStmt = db.prepareStatement(UPSERT_MINED_REPOSITORY);
-            pStmt.setLong(1, repo.getId());
-            pStmt.setString(2, project.getJavaSourceVersion());
-            pStmt.setBoolean(3, project.isBuildSuccess());
-            pStmt.setString(4, note);
-            var res = pStmt.executeQuery();
-
-            res.next();
-            minedRepoId = res.getLong("id");
+            featureRows = pool.inTransaction(connection -> {
+                var minedRepoId = upsertMinedRepo(connection, repo, project, note);
+                var fileIds = nextFileIds(connection, fileMetrics.size());
+                addRepoFiles(connection, minedRepoId, project, fileMetrics, fileIds);
+                return addFeatures(connection, fileMetrics, fileIds);
+            });
         } catch (SQLException e) {
             logger.error("Failed to insert mined repository: " + repo.getId(), e);
-            return;
+            return false;
         }
 
-        var fileMetrics = new LocCalculator(project).getFileMetrics();
-        fileMetrics.forEach(fm -> addRepoFile(minedRepoId, project, fm));
+        var millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        var rows = 1 + fileMetrics.size() + featureRows;
+        logger.info(String.format("Persisted %d file(s) and %d feature(s) in %d ms (%d rows/s)",
+                fileMetrics.size(), featureRows, millis, rows * 1000L / millis));
+        return true;
     }
 
     /**
-     * Adds a file and its associated features to the database.
+     * Inserts or updates the mined repository. If it was written before, its files and features are removed.
      *
-     * @param minedRepoId The ID of the mined repository to associate the file with.
-     * @param project     The {@link JavaProject} containing the file.
-     * @param fileMetric  The {@link FileMetrics} containing file metrics and features.
+     * @return The id of the mined repository.
      */
-    private static void addRepoFile(long minedRepoId, JavaProject project, FileMetrics fileMetric) {
-        long fileId;
-        try {
+    private static long upsertMinedRepo(PooledConnection connection, Repository repo, JavaProject project, String note) throws SQLException {
+        var pStmt = connection.prepare(UPSERT_MINED_REPOSITORY);
+        pStmt.setLong(1, repo.getId());
+        pStmt.setString(2, project.getJavaSourceVersion());
+        pStmt.setBoolean(3, project.isBuildSuccess());
+        pStmt.setString(4, note);
+        pStmt.setString(5, project.getMetrics() != null ? project.getMetrics().toJson() : null);
+        var res = pStmt.executeQuery();
+
+        res.next();
+        var minedRepoId = res.getLong("id");
+        if (!res.getBoolean("existed")) return minedRepoId;
+
+        for (var sql : List.of(DELETE_FEATURES, DELETE_FILES)) {
+            var deleteStmt = connection.prepare(sql);
+            deleteStmt.setLong(1, minedRepoId);
+            deleteStmt.executeUpdate();
+        }
+        return minedRepoId;
+    }
+
+    /**
+     * @return The given number of new file ids.
+     */
+    private static long[] nextFileIds(PooledConnection connection, int count) throws SQLException {
+        var ids = new long[count];
+        if (count == 0) return ids;
+
+        var pStmt = connection.prepare(NEXT_FILE_IDS);
+        pStmt.setInt(1, count);
+        var res = pStmt.executeQuery();
+        for (int i = 0; i < count && res.next(); i++) ids[i] = res.getLong(1);
+
+        return ids;
+    }
+
+    /**
+     * Adds the files of a mined repository with the given ids.
+     *
+     * @param minedRepoId The ID of the mined repository to associate the files with.
+     * @param project     The {@link JavaProject} containing the files.
+     * @param fileMetrics The {@link FileMetrics} of the files.
+     * @param fileIds     The ids of the files, in the order of the metrics.
+     */
+    private static void addRepoFiles(PooledConnection connection, long minedRepoId, JavaProject project,
+                                     List<FileMetrics> fileMetrics, long[] fileIds) throws SQLException {
+        var pStmt = connection.prepare(INSERT_FILE);
+        for (int i = 0; i < fileMetrics.size(); i++) {
+            var fileMetric = fileMetrics.get(i);
             var relFilePath = project.getProjectPath().relativize(fileMetric.getParsedFile().getFilePath());
 
-            PreparedStatement pStmt = db.prepareStatement(INSERT_FILE);
-            pStmt.setLong(1, minedRepoId);
-            pStmt.setString(2, relFilePath.toString());
-            pStmt.setInt(3, fileMetric.getLines());
-            pStmt.setInt(4, fileMetric.getLinesOfCode());
-            pStmt.setInt(5, fileMetric.getCommentedLines());
-            pStmt.setInt(6, fileMetric.getParsedFile().getMissingBindings().size());
-            var res = pStmt.executeQuery();
-
-            res.next();
-            fileId = res.getLong("id");
-        } catch (SQLException e) {
-            logger.error("Failed to insert file: ", e);
-            return;
+            pStmt.setLong(1, fileIds[i]);
+            pStmt.setLong(2, minedRepoId);
+            pStmt.setString(3, relFilePath.toString());
+            pStmt.setInt(4, fileMetric.getLines());
+            pStmt.setInt(5, fileMetric.getLinesOfCode());
+            pStmt.setInt(6, fileMetric.getCommentedLines());
+            pStmt.setInt(7, fileMetric.getParsedFile().getMissingBindings().size());
+            pStmt.addBatch();
+
+            if ((i + 1) % BATCH_SIZE == 0) pStmt.executeBatch();
         }
+        pStmt.executeBatch();
+    }
 
-        try {
-            PreparedStatement pStmt = db.prepareStatement(INSERT_FEATURE);
-            for (var apiCall : fileMetric.getParsedFile().getApiCalls()) {
+    /**
+     * Adds the features of the files of a mined repository.
+     *
+     * @param fileMetrics The {@link FileMetrics} containing the features.
+     * @param fileIds     The ids of the files, in the order of the metrics.
+     * @return The number of features added.
+     */
+    private static int addFeatures(PooledConnection connection, List<FileMetrics> fileMetrics, long[] fileIds) throws SQLException {
+        var pStmt = connection.prepare(INSERT_FEATURE);
+        int rows = 0;
+        for (int i = 0; i < fileMetrics.size(); i++) {
+            for (var apiCall : fileMetrics.get(i).getParsedFile().getApiCalls()) {
                 for (var feature : apiCall.getFeatures()) {
-                    pStmt.setLong(1, fileId);
+                    pStmt.setLong(1, fileIds[i]);
                     pStmt.setInt(2, apiCall.start.line());
                     pStmt.setString(3, apiCall.qualifiedName);
                     pStmt.setString(4, feature);
-                    pStmt.executeQuery();
+                    pStmt.addBatch();
+
+                    if (++rows % BATCH_SIZE == 0) pStmt.executeBatch();
                 }
             }
-        } catch (SQLException e) {
-            logger.error("Failed to insert feature: ", e);
         }
+        pStmt.executeBatch();
+
+        return rows;
     }
 
     /**
-     * Records a failed repository mining attempt in the database.
+     * Records a failed repository mining attempt in the database, unless a result of the repository is already
+     * recorded.
      *
      * @param repo The {@link Repository} that failed to mine.
      * @param note A note explaining the reason for the failure.
+     * @return True if the repository is recorded, as failed or by an earlier result.
      */
-    public static void addFailedRepoMining(Repository repo, String note) {
+    public static boolean addFailedRepoMining(Repository repo, String note) {
         try {
-            var pStmt = db.prepareStatement(UPSERT_MINED_REPOSITORY);
-            pStmt.setLong(1, repo.getId());
-            pStmt.setString(2, null);
-            pStmt.setBoolean(3, false);
-            pStmt.setString(4, note);
-            pStmt.execute();
+            pool.withConnection(connection -> {
+                var pStmt = connection.prepare(INSERT_FAILED_REPOSITORY);
+                pStmt.setLong(1, repo.getId());
+                pStmt.setString(2, null);
+                pStmt.setBoolean(3, false);
+                pStmt.setString(4, note);
+                pStmt.setString(5, null);
+                return pStmt.execute();
+            });
+            return true;
         } catch (SQLException e) {
             logger.error("Failed to insert mined repository: " + repo.getId(), e);
+            return false;
         }
     }
 }
@@ -1,15 +1,37 @@
 package io.github.david0x03;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents a repository with metadata and methods to clone and delete the repository.
  */
 public final class Repository {
+    private static final Logger logger = LogManager.getLogger(Repository.class);
+
+    private static final Duration CLONE_TIMEOUT = Duration.ofMinutes(5);
+
+    // The files checked out by a sparse clone: the Java sources, the build descriptors and wrappers, including
+    // the AndroidManifest.xml of the Android check, and the jars of lib and libs folders
+    private static final List<String> SPARSE_PATTERNS = List.of(
+            "*.java",
+            "*.xml", "*.gradle", "*.kts", "*.properties", "*.toml",
+            "gradlew", "gradlew.bat", "mvnw", "mvnw.cmd",
+            "/gradle/", "/buildSrc/", "/.mvn/",
+            "**/lib/**/*.jar", "**/libs/**/*.jar"
+    );
+
+    // Printed by git if the server doesn't support partial clones, it downloads all files then
+    private static final String FILTER_NOT_SUPPORTED = "filtering not recognized by server";
+
     private final long id;
     private final String url;
     private final String owner;
@@ -57,27 +79,110 @@ public final class Repository {
      * @throws Exception If the cloning process fails.
      */
     public Path cloneRepo(Path parentDir) throws Exception {
-        var commands = switch (Utils.getOperatingSystem()) {
-            case WINDOWS -> List.of("cmd.exe", "/c", "git", "clone", "--depth", "1", "--single-branch", url);
-            case LINUX -> List.of("git", "clone", "--depth", "1", "--single-branch", url);
-        };
+        return cloneRepo(parentDir, false);
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder(commands);
-        processBuilder.directory(parentDir.toFile());
+    /**
+     * Clones the repository to the specified parent directory using Git.
+     * <p>
+     * A sparse clone only downloads and checks out the files needed for the analysis: the Java sources, the build
+     * files and the jars of lib and libs folders. The other files are neither downloaded nor checked out, which
+     * saves the time and disk space of binary assets, test fixtures and documentation. If the server doesn't support partial clones, all files are checked out
+     * as by a full clone. If the sparse clone fails, the repository is cloned fully.
+     *
+     * @param parentDir The parent directory where the repository will be cloned.
+     * @param sparse    True to only clone the files needed for the analysis.
+     * @return The path to the cloned repository.
+     * @throws Exception If the cloning process fails.
+     */
+    public Path cloneRepo(Path parentDir, boolean sparse) throws Exception {
+        // Repositories of different owners can have the same name and are cloned concurrently
+        var directoryName = id + "-" + name;
+
+        // A partially cloned directory is removed by deleteRepo
+        clonedPath = parentDir.resolve(directoryName);
+
+        if (sparse) {
+            try {
+                sparseClone(parentDir, directoryName);
+                return clonedPath;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.warn("Sparse clone failed, cloning fully: " + url + ": " + e.getMessage());
+                deleteRepo();
+            }
+        }
 
-        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
-        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        var start = System.nanoTime();
+        runGit(parentDir, "clone", "--depth", "1", "--single-branch", url, directoryName);
+        logClone("full", start);
 
-        try {
-            Process process = processBuilder.start();
-            process.waitFor();
-            process.destroy();
+        return clonedPath;
+    }
 
-            clonedPath = parentDir.resolve(name);
-            return clonedPath;
+    /**
+     * Clones the repository without the contents of its files, which are only downloaded when they are checked
+     * out, and checks out the files matching the sparse patterns.
+     */
+    private void sparseClone(Path parentDir, String directoryName) throws Exception {
+        var start = System.nanoTime();
+        var result = runGit(parentDir, "clone", "--filter=blob:none", "--no-checkout", "--depth", "1", "--single-branch",
+                url, directoryName);
+
+        if (result.outputTail().contains(FILTER_NOT_SUPPORTED)) {
+            // All files were downloaded already, so they are checked out as well
+            runGit(clonedPath, "checkout");
+            logClone("full, the server doesn't support partial clones", start);
+            return;
+        }
+
+        var command = new ArrayList<>(List.of("sparse-checkout", "set", "--no-cone"));
+        command.addAll(SPARSE_PATTERNS);
+        runGit(clonedPath, command.toArray(String[]::new));
+        runGit(clonedPath, "checkout");
+        logClone("sparse", start);
+    }
+
+    /**
+     * Runs a Git command.
+     *
+     * @param directory The working directory of the command.
+     * @param arguments The arguments of the command.
+     * @return The result of the command.
+     * @throws Exception If the command cannot be run or fails.
+     */
+    private static ProcessRunner.Result runGit(Path directory, String... arguments) throws Exception {
+        var commands = switch (Utils.getOperatingSystem()) {
+            case WINDOWS -> new ArrayList<>(List.of("cmd.exe", "/c", "git"));
+            case LINUX -> new ArrayList<>(List.of("git"));
+        };
+        commands.addAll(List.of(arguments));
+
+        ProcessRunner.Result result;
+        try {
+            result = new ProcessRunner(commands)
+                    .directory(directory)
+                    .timeout(CLONE_TIMEOUT)
+                    .run();
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
-            throw new Exception("Failed to clone repository");
+            throw new Exception("Failed to clone repository", e);
         }
+
+        if (!result.isSuccess()) throw new Exception("Failed to clone repository: " + result.outputTail().strip());
+        return result;
+    }
+
+    /**
+     * Logs the time of a clone and its size on disk, compared to the size of the repository reported by GitHub.
+     */
+    private void logClone(String mode, long start) {
+        var millis = (System.nanoTime() - start) / 1_000_000;
+        var kilobytes = FileUtils.sizeOfDirectory(clonedPath.toFile()) / 1024;
+        logger.info("Cloned " + url + " (" + mode + ") in " + millis + " ms, " + kilobytes + " KB on disk, repository size: "
+                + size + " KB");
     }
 
     /**
@@ -86,7 +191,7 @@ public final class Repository {
      * @throws IOException If the deletion fails.
      */
     public void deleteRepo() throws IOException {
-        if (clonedPath != null)
+        if (clonedPath != null && Files.exists(clonedPath))
             FileUtils.forceDelete(clonedPath.toFile());
     }
 
@@ -1,20 +1,25 @@
 package io.github.david0x03;
 
-import io.github.david0x03.metrics.LocCalculator;
+import io.github.david0x03.project.GradleDaemonPool;
 import io.github.david0x03.project.JavaProject;
+import io.github.david0x03.project.ProjectIndex;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.github.david0x03.Database.addFailedRepoMining;
 import static io.github.david0x03.Database.addMinedRepo;
@@ -27,8 +32,42 @@ public class SecurityFeatureMiner {
 
     private static final Logger logger = LogManager.getLogger(SecurityFeatureMiner.class);
 
+    // Limits of the warm Gradle daemons reused across repositories
+    private static final int GRADLE_DAEMONS = 2;
+    private static final Duration GRADLE_DAEMON_IDLE_TIMEOUT = Duration.ofMinutes(10);
+    private static final Duration GRADLE_DAEMON_TIME_TO_LIVE = Duration.ofHours(1);
+    private static final String GRADLE_DAEMON_MAX_HEAP = "2g";
+
+    // Defaults of the stages, cloning is bound by the network latency and runs the most threads
+    private static final int DEFAULT_CLONE_THREADS = 4;
+    private static final int DEFAULT_ANALYSIS_THREADS = 1;
+    private static final int DEFAULT_PERSIST_THREADS = 1;
+    private static final int DEFAULT_QUEUE_CAPACITY = 2;
+    private static final long DEFAULT_DISK_BUDGET_KB = 10L * 1024 * 1024;
+
+    // The leases are renewed three times per duration, so a missed heartbeat doesn't lose them
+    private static final Duration DEFAULT_LEASE_DURATION = Duration.ofMinutes(10);
+    private static final int HEARTBEATS_PER_LEASE = 3;
+
+    // Failed claims are retried with a doubling delay, the run ends once the database is unreachable for too long
+    private static final Duration CLAIM_RETRY_INITIAL_DELAY = Duration.ofSeconds(1);
+    private static final Duration CLAIM_RETRY_MAX_DELAY = Duration.ofMinutes(1);
+    private static final int MAX_CLAIM_RETRIES = 10;
+
     private final Path clonePath;
     private final Path mappingPath;
+    private final GradleDaemonPool gradleDaemonPool;
+
+    // Identifies the leases of this miner, unique across processes and machines sharing the database
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private int cloneThreads = DEFAULT_CLONE_THREADS;
+    private int analysisThreads = DEFAULT_ANALYSIS_THREADS;
+    private int persistThreads = DEFAULT_PERSIST_THREADS;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private long diskBudgetKb = DEFAULT_DISK_BUDGET_KB;
+    private Duration leaseDuration = DEFAULT_LEASE_DURATION;
+    private boolean sparseCloneEnabled = true;
 
     /**
      * Initializes the SecurityFeatureMiner with directories for cloning repositories and loading mappings.
@@ -37,6 +76,8 @@ public class SecurityFeatureMiner {
         var cwdPath = Paths.get("");
         clonePath = cwdPath.resolve("clone");
         mappingPath = cwdPath.resolve("lib-mappings");
+        gradleDaemonPool = new GradleDaemonPool(cwdPath.resolve("gradle-daemons"), GRADLE_DAEMONS,
+                GRADLE_DAEMON_IDLE_TIMEOUT, GRADLE_DAEMON_TIME_TO_LIVE, GRADLE_DAEMON_MAX_HEAP);
 
         try {
             FileUtils.forceMkdir(clonePath.toFile());
@@ -46,76 +87,237 @@ public class SecurityFeatureMiner {
     }
 
     /**
-     * Mines repositories from the database up to the specified limit. For each repository:
+     * Sets the number of repositories cloned in parallel.
+     */
+    public void setCloneThreads(int cloneThreads) {
+        this.cloneThreads = cloneThreads;
+    }
+
+    /**
+     * Sets the number of repositories analyzed in parallel. The parsers of the locator are split between them.
+     */
+    public void setAnalysisThreads(int analysisThreads) {
+        this.analysisThreads = analysisThreads;
+    }
+
+    /**
+     * Sets the number of repositories written to the database in parallel.
+     */
+    public void setPersistThreads(int persistThreads) {
+        this.persistThreads = persistThreads;
+    }
+
+    /**
+     * Sets the number of repositories waiting for each stage at most. As every waiting repository is kept on the
+     * disk, and analyzed ones in memory, this limits the disk and heap usage of the waiting repositories.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Limits the size of the repositories cloned at the same time, estimated from the size reported by GitHub.
+     * A repository larger than the budget is only cloned while no other repository is on the disk.
+     *
+     * @param diskBudgetKb The budget in KB.
+     */
+    public void setDiskBudget(long diskBudgetKb) {
+        this.diskBudgetKb = diskBudgetKb;
+    }
+
+    /**
+     * Sets the time after which the lease on a repository in progress expires if this miner stops renewing it,
+     * e.g. because it crashed. Another miner claims the repository again afterward.
+     */
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * Enables or disables sparse clones, which only download the Java sources, build files and library jars of a
+     * repository instead of all of its files. Enabled by default.
+     */
+    public void setSparseCloneEnabled(boolean sparseCloneEnabled) {
+        this.sparseCloneEnabled = sparseCloneEnabled;
+    }
+
+    /**
+     * Mines repositories from the database up to the specified limit. The repositories pass through the stages
+     * claim, clone, analyze, persist and cleanup, each with its own threads, so one repository is cloned while
+     * another one is analyzed and a third one is written to the database.
+     * <p>
+     * Each claimed repository is leased to this miner until its result is in the database, so multiple miners can
+     * share the database, also on different machines, without mining a repository twice.
      *
      * @param limit The maximum number of repositories to mine. Use -1 for no limit.
      */
     public void mine(int limit) {
-        int minedRepos = 0;
+        try {
+            mineRepositories(limit);
+        } catch (InterruptedException e) {
+            logger.error("Mining was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            gradleDaemonPool.close();
+        }
+    }
 
+    private void mineRepositories(int limit) throws InterruptedException {
         if (!Files.isDirectory(mappingPath)) {
             logger.error("No mapping dir found");
             return;
         }
 
-        while (limit == -1 || minedRepos < limit) {
-            var repo = Database.getRepository();
+        var run = new MiningRun(limit);
+        var start = System.nanoTime();
+        logger.info("Mining as worker: " + workerId);
 
-            if (repo == null) break;
+        var heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var interval = Math.max(1, leaseDuration.toMillis() / HEARTBEATS_PER_LEASE);
+        heartbeat.scheduleAtFixedRate(run::renewLeases, interval, interval, TimeUnit.MILLISECONDS);
 
-            Path repoPath = null;
-            try {
-                logger.info("Cloning: " + repo.getUrl());
-                repoPath = repo.cloneRepo(clonePath);
-                logger.info("Done");
-            } catch (Exception e) {
-                addFailedRepoMining(repo, "cloning failed");
-                logger.error("Cloning failed: ", e);
-                continue;
-            }
+        try {
+            new StagedPipeline<MiningJob>()
+                    .stage("clone", cloneThreads, queueCapacity, job -> cloneRepo(job, run))
+                    .stage("analyze", analysisThreads, queueCapacity, job -> analyzeRepo(job, run))
+                    .stage("persist", persistThreads, queueCapacity, job -> persistRepo(job, run))
+                    .stage("cleanup", 1, queueCapacity, job -> cleanupRepo(job, run))
+                    .run(run::claimRepository);
+        } finally {
+            heartbeat.shutdownNow();
+        }
 
-            if (isAndroidProject(repoPath)) {
-                logger.info("Android project detected, skipping...");
-                addFailedRepoMining(repo, "android project");
-                deleteRepo(repo);
-                continue;
-            }
+        var minutes = Math.max(1, (System.nanoTime() - start) / 1_000_000) / 60_000.0;
+        logger.info(String.format("Mined %d of %d claimed repositories in %.1f min (%.1f per hour)",
+                run.mined.get(), run.claimed, minutes, run.mined.get() * 60 / minutes));
+    }
 
-            JavaProject project = null;
-            try {
-                logger.info("Extracting features...");
-                project = analyzeRepo(repoPath);
-                minedRepos++;
-                logger.info("Done");
-            } catch (Exception e) {
-                logger.error("Feature extraction failed: ", e);
-                addFailedRepoMining(repo, "feature extraction failed");
-                deleteRepo(repo);
-                continue;
-            }
+    /**
+     * Clones a repository and checks whether it is an Android project.
+     *
+     * @return True if the repository can be analyzed
+     */
+    private boolean cloneRepo(MiningJob job, MiningRun run) {
+        var repo = job.repo;
 
-            if (project == null) {
-                logger.error("Feature extraction failed");
-                addFailedRepoMining(repo, "feature extraction failed");
-                deleteRepo(repo);
-                continue;
-            }
+        try {
+            logger.info("Cloning: " + repo.getUrl());
+            job.repoPath = repo.cloneRepo(clonePath, sparseCloneEnabled);
+            logger.info("Done cloning: " + repo.getUrl());
+        } catch (Exception e) {
+            logger.error("Cloning failed: ", e);
+            recordFailure(job, run, "cloning failed");
+            return false;
+        }
 
-            int featuresFound = 0;
-            int missingBindings = 0;
-            for (var pf : project.getParsedFiles()) {
-                featuresFound += pf.getApiCalls().size();
-                missingBindings += pf.getMissingBindings().size();
-            }
+        // Index the files once, the index is shared by the Android check and the feature extraction
+        job.index = ProjectIndex.build(job.repoPath.toAbsolutePath());
 
-            addMinedRepo(repo, project, null);
-            logger.info("Java version: " + project.getJavaSourceVersion() + " | Build successful: " + project.isBuildSuccess());
-            logger.info("Features found: " + featuresFound);
-            logger.info("Missing bindings: " + missingBindings);
+        if (job.index.hasAndroidManifest()) {
+            logger.info("Android project detected, skipping: " + repo.getUrl());
+            recordFailure(job, run, "android project");
+            return false;
+        }
+
+        return true;
+    }
 
-            new LocCalculator(project);
-            deleteRepo(repo);
+    /**
+     * Extracts the features of a cloned repository.
+     *
+     * @return True if the features were extracted
+     */
+    private boolean analyzeRepo(MiningJob job, MiningRun run) {
+        var repo = job.repo;
+
+        try {
+            logger.info("Extracting features: " + repo.getUrl());
+            job.project = analyzeRepo(job.repoPath, job.index);
+        } catch (Exception e) {
+            logger.error("Feature extraction failed: ", e);
+            recordFailure(job, run, "feature extraction failed");
+            return false;
         }
+
+        if (job.project == null) {
+            logger.error("Feature extraction failed: " + repo.getUrl());
+            recordFailure(job, run, "feature extraction failed");
+            return false;
+        }
+
+        logger.info("Done extracting features: " + repo.getUrl());
+        return true;
+    }
+
+    /**
+     * Writes the features of an analyzed repository to the database, unless its lease expired and another miner
+     * claimed it in the meantime. The repository counts as mined once its features are written.
+     *
+     * @return True if the features were written
+     */
+    private boolean persistRepo(MiningJob job, MiningRun run) {
+        var project = job.project;
+
+        if (!run.holdsLease(job)) {
+            logger.warn("Lost the lease, skipping: " + job.repo.getUrl());
+            job.project = null;
+            return false;
+        }
+
+        int featuresFound = 0;
+        int missingBindings = 0;
+        for (var pf : project.getParsedFiles()) {
+            featuresFound += pf.getApiCalls().size();
+            missingBindings += pf.getMissingBindings().size();
+        }
+
+        var persisted = addMinedRepo(job.repo, project, null);
+
+        // The parsed files are not needed anymore, don't keep them until the repository is deleted
+        job.project = null;
+        if (!persisted) {
+            recordFailure(job, run, "persisting failed");
+            return false;
+        }
+
+        // Only repositories in the database count towards the limit, failed ones are released in the cleanup
+        run.markMined(job);
+        logger.info("Repository: " + job.repo.getUrl() + " | Java version: " + project.getJavaSourceVersion()
+                + " | Build successful: " + project.isBuildSuccess());
+        logger.info("Features found: " + featuresFound);
+        logger.info("Missing bindings: " + missingBindings);
+        return true;
+    }
+
+    /**
+     * Records the failure of a repository, unless its lease expired and another miner claimed it in the meantime.
+     *
+     * @return True if the failure or an earlier result of the repository is in the database
+     */
+    private boolean recordFailure(MiningJob job, MiningRun run, String note) {
+        if (!run.holdsLease(job)) {
+            logger.warn("Lost the lease, not recording the failure: " + job.repo.getUrl());
+            return false;
+        }
+
+        job.recorded = addFailedRepoMining(job.repo, note);
+        return job.recorded;
+    }
+
+    /**
+     * Deletes a repository that was mined or failed, frees its share of the disk budget and releases its lease once
+     * its result or failure is recorded.
+     *
+     * @return True
+     */
+    private boolean cleanupRepo(MiningJob job, MiningRun run) {
+        deleteRepo(job.repo);
+        run.release(job);
+        return true;
     }
 
     /**
@@ -133,33 +335,23 @@ public class SecurityFeatureMiner {
         }
     }
 
-    /**
-     * Determines whether a repository is an Android project by checking for an `AndroidManifest.xml` file.
-     *
-     * @param repoPath The path to the cloned repository.
-     * @return True if the repository is an Android project, otherwise false.
-     */
-    private boolean isAndroidProject(Path repoPath) {
-        var androidManifestFilter = FileFilterUtils.nameFileFilter("AndroidManifest.xml");
-        Collection<File> files = FileUtils.listFiles(repoPath.toFile(), androidManifestFilter, TrueFileFilter.TRUE);
-
-        return !files.isEmpty();
-    }
-
     /**
      * Analyzes a repository to extract security features and metrics.
      *
      * @param repoPath The path to the cloned repository.
+     * @param index    The index of the repository files.
      * @return A {@link JavaProject} representing the analyzed repository.
      * @throws Exception If the analysis fails or times out.
      */
-    private JavaProject analyzeRepo(Path repoPath) throws Exception {
+    private JavaProject analyzeRepo(Path repoPath, ProjectIndex index) throws Exception {
         ExecutorService executor = Executors.newSingleThreadExecutor();
 
         Future<JavaProject> future = executor.submit(() -> {
             try {
                 var featureLocator = new SecurityFeatureLocator(mappingPath);
-                return featureLocator.locateFeatures(repoPath.toAbsolutePath().toString(), false);
+                featureLocator.setGradleDaemonPool(gradleDaemonPool);
+                featureLocator.setParallelism(Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, analysisThreads)));
+                return featureLocator.locateFeatures(repoPath.toAbsolutePath().toString(), index, false);
             } catch (InterruptedException e) {
                 return null;
             }
@@ -175,4 +367,145 @@ public class SecurityFeatureMiner {
 
         return null;
     }
+
+    /**
+     * A repository passing through the stages of the pipeline.
+     */
+    private static final class MiningJob {
+        private final Repository repo;
+        private final int diskPermits;
+
+        private Path repoPath = null;
+        private ProjectIndex index = null;
+        private JavaProject project = null;
+        private boolean mined = false;
+
+        // Whether the result or the failure of the repository is in the database
+        private boolean recorded = false;
+
+        private MiningJob(Repository repo, int diskPermits) {
+            this.repo = repo;
+            this.diskPermits = diskPermits;
+        }
+    }
+
+    /**
+     * The state of a mining run shared by the stages: the repositories in progress, whose leases are renewed until
+     * their result is in the database, and the disk budget they use.
+     */
+    private final class MiningRun {
+        private final int limit;
+        private final Set<Long> claimedIds = new HashSet<>();
+        private final AtomicInteger mined = new AtomicInteger();
+        private final int diskBudgetPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, diskBudgetKb));
+        private final Semaphore diskBudget = new Semaphore(diskBudgetPermits);
+        private int claimed = 0;
+
+        // Claimed repositories that are neither persisted nor failed yet
+        private int pending = 0;
+
+        private MiningRun(int limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Claims the next repository once the limit and the disk budget allow it. Failed repositories don't count
+         * towards the limit, so another repository is claimed for each of them. A claim that fails, e.g. while the
+         * database is unreachable, is retried with a growing delay.
+         *
+         * @return The repository, or null if the limit is reached, no repository is left or the claim kept failing.
+         */
+        private MiningJob claimRepository() throws InterruptedException {
+            Repository repo;
+            var delay = CLAIM_RETRY_INITIAL_DELAY;
+            for (int retry = 0; ; retry++) {
+                try {
+                    synchronized (this) {
+                        while (limit != -1 && mined.get() + pending >= limit) {
+                            if (mined.get() >= limit) return null;
+                            wait();
+                        }
+
+                        repo = Database.claimRepository(workerId, leaseDuration);
+                        if (repo == null) return null;
+
+                        claimedIds.add(repo.getId());
+                        claimed++;
+                        pending++;
+                    }
+                    break;
+                } catch (SQLException e) {
+                    if (retry >= MAX_CLAIM_RETRIES) {
+                        logger.error("Failed to claim a repository in " + (retry + 1) + " tries, stopping: ", e);
+                        return null;
+                    }
+
+                    // Sleep without the lock, so the other stages can still finish their repositories
+                    logger.warn("Failed to claim a repository, retrying in " + delay.toSeconds() + " s: " + e.getMessage());
+                    Thread.sleep(delay.toMillis());
+                    delay = delay.multipliedBy(2);
+                    if (delay.compareTo(CLAIM_RETRY_MAX_DELAY) > 0) delay = CLAIM_RETRY_MAX_DELAY;
+                }
+            }
+
+            // The size reported by GitHub is the estimate, a repository larger than the budget uses all of it
+            var permits = Math.max(1, Math.min(repo.getSize(), diskBudgetPermits));
+            diskBudget.acquire(permits);
+            return new MiningJob(repo, permits);
+        }
+
+        private synchronized void markMined(MiningJob job) {
+            job.mined = true;
+            job.recorded = true;
+            mined.incrementAndGet();
+            pending--;
+            notifyAll();
+        }
+
+        /**
+         * Renews the leases of the repositories in progress. Called periodically by the heartbeat.
+         */
+        private void renewLeases() {
+            List<Long> ids;
+            synchronized (this) {
+                ids = List.copyOf(claimedIds);
+            }
+            if (ids.isEmpty()) return;
+
+            var renewed = Database.renewLeases(workerId, ids, leaseDuration);
+            if (renewed == null) return;
+
+            for (var id : ids) {
+                if (!renewed.contains(id)) logger.warn("Lost the lease of repository: " + id);
+            }
+        }
+
+        /**
+         * Renews the lease of a repository right before its result is written, so a repository whose lease
+         * expired, e.g. while the database was unreachable, is not written twice.
+         *
+         * @return True if the repository is still leased to this miner
+         */
+        private boolean holdsLease(MiningJob job) {
+            var renewed = Database.renewLeases(workerId, List.of(job.repo.getId()), leaseDuration);
+            return renewed != null && renewed.contains(job.repo.getId());
+        }
+
+        /**
+         * Frees the disk budget of a deleted repository and releases its lease if its result or failure is in the
+         * database, so it can't be claimed again. Otherwise, the lease is no longer renewed and expires, so another
+         * miner claims the repository again.
+         */
+        private void release(MiningJob job) {
+            diskBudget.release(job.diskPermits);
+            if (job.recorded) Database.releaseLease(workerId, job.repo.getId());
+            else logger.warn("Nothing recorded, leaving the lease to expire: " + job.repo.getUrl());
+
+            synchronized (this) {
+                claimedIds.remove(job.repo.getId());
+                if (!job.mined) pending--;
+                notifyAll();
+            }
+        }
+    }
 }
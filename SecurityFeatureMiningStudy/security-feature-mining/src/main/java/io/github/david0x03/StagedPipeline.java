@@ -0,0 +1,175 @@
+package io.github.david0x03;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pipeline of stages connected by bounded queues. Each stage has its own threads, which take the items handed
+ * over by the previous stage and pass them on to the next one. A full queue blocks the previous stage, so a slow
+ * stage throttles the stages before it instead of letting the items pile up.
+ * <p>
+ * The last stage is a final stage: items that a stage drops, or that fail with an exception, skip the remaining
+ * stages and are passed to the final stage directly, e.g. to clean up after them.
+ *
+ * @param <T> The type of the items.
+ */
+final class StagedPipeline<T> {
+
+    private static final Logger logger = LogManager.getLogger(StagedPipeline.class);
+
+    // Marks the end of the items, passed on once all threads of a stage are done
+    private static final Object END = new Object();
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * Processes an item in a stage.
+     *
+     * @param <T> The type of the items.
+     */
+    @FunctionalInterface
+    interface Task<T> {
+
+        /**
+         * @param item The item.
+         * @return True to pass the item to the next stage, false to pass it to the final stage directly.
+         * @throws Exception If processing fails, the item is passed to the final stage as well, also on an error.
+         */
+        boolean process(T item) throws Exception;
+    }
+
+    /**
+     * Produces the items of the pipeline.
+     *
+     * @param <T> The type of the items.
+     */
+    @FunctionalInterface
+    interface Source<T> {
+
+        /**
+         * @return The next item, or null if there are no more items. May block until an item is available.
+         * @throws InterruptedException If the thread was interrupted.
+         */
+        T next() throws InterruptedException;
+    }
+
+    /**
+     * Appends a stage to the pipeline. The last stage appended is the final stage.
+     *
+     * @param name          The name of the stage, used in the thread names and the log.
+     * @param threads       The number of threads processing the items in parallel.
+     * @param queueCapacity The number of items waiting for the stage at most.
+     * @param task          Processes an item.
+     * @return This pipeline.
+     */
+    StagedPipeline<T> stage(String name, int threads, int queueCapacity, Task<T> task) {
+        stages.add(new Stage(name, Math.max(1, threads), Math.max(1, queueCapacity), task));
+        return this;
+    }
+
+    /**
+     * Passes all items of a source through the stages and waits until the final stage processed all of them.
+     * The source is read on the calling thread, it is blocked while the first stage is busy.
+     *
+     * @param source The source of the items.
+     * @throws InterruptedException If the thread was interrupted, the stages are interrupted as well.
+     */
+    void run(Source<T> source) throws InterruptedException {
+        if (stages.isEmpty()) throw new IllegalStateException("The pipeline has no stages");
+
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < stages.size(); i++) {
+            var stage = stages.get(i);
+            var next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+
+            for (int t = 0; t < stage.threads; t++) {
+                var thread = new Thread(() -> stage.work(next), stage.name + "-" + t);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        try {
+            T item;
+            while ((item = source.next()) != null) stages.get(0).queue.put(item);
+            stages.get(0).queue.put(END);
+
+            for (var thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            throw e;
+        } finally {
+            for (var stage : stages) {
+                logger.info("Stage " + stage.name + ": " + stage.processed.get() + " item(s), " + stage.dropped.get()
+                        + " dropped, busy for " + stage.busyNanos.get() / 1_000_000_000 + " s on " + stage.threads + " thread(s)");
+            }
+        }
+    }
+
+    private final class Stage {
+        private final String name;
+        private final int threads;
+        private final Task<T> task;
+        private final BlockingQueue<Object> queue;
+
+        private final AtomicInteger runningThreads;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger dropped = new AtomicInteger();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        private Stage(String name, int threads, int queueCapacity, Task<T> task) {
+            this.name = name;
+            this.threads = threads;
+            this.task = task;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.runningThreads = new AtomicInteger(threads);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void work(Stage next) {
+            var finalStage = stages.get(stages.size() - 1);
+
+            try {
+                while (true) {
+                    var item = queue.take();
+
+                    if (item == END) {
+                        // The last thread of the stage passes the end on, the others stop as well
+                        if (runningThreads.decrementAndGet() == 0) {
+                            if (next != null) next.queue.put(END);
+                        } else {
+                            queue.put(END);
+                        }
+                        return;
+                    }
+
+                    var passOn = false;
+                    var start = System.nanoTime();
+                    try {
+                        passOn = task.process((T) item);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        // Errors as well, e.g. running out of memory, the thread must still pass the end on
+                        logger.error("Stage " + name + " failed: ", e);
+                    }
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                    processed.incrementAndGet();
+
+                    if (next == null) continue;
+                    if (!passOn) dropped.incrementAndGet();
+                    (passOn ? next : finalStage).queue.put(item);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}